@@ -4,6 +4,7 @@ import android.app.Application;
 import android.content.Context;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.database.FirebaseDatabase;
+import com.pdm.domohouse.data.database.retention.HistoryRetentionManager;
 
 /**
  * Clase Application principal de DomoHouse
@@ -27,6 +28,9 @@ public class DomoHouseApplication extends Application {
         } catch (Exception e) {
             // Ya está habilitada
         }
+        
+        // Programar la retención del historial local
+        HistoryRetentionManager.getInstance(this).start();
     }
     
     /**
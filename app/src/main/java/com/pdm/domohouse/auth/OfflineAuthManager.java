@@ -7,14 +7,14 @@ import androidx.annotation.NonNull;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.pdm.domohouse.concurrent.AppExecutors;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.UserProfileDao;
 import com.pdm.domohouse.data.database.entity.UserProfileEntity;
 import com.pdm.domohouse.utils.SecurePreferencesManager;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Manager para autenticación offline después de la primera sincronización
@@ -30,7 +30,7 @@ public class OfflineAuthManager {
     private final AppDatabase database;
     private final UserProfileDao userProfileDao;
     private final FirebaseAuth firebaseAuth;
-    private final ExecutorService executorService;
+    private final Executor executorService;
     
     // Estado de autenticación offline
     private boolean isOfflineAuthEnabled = false;
@@ -40,13 +40,14 @@ public class OfflineAuthManager {
     /**
      * Constructor privado para Singleton
      */
-    private OfflineAuthManager(Context context) {
+    private OfflineAuthManager(Context context, AppExecutors executors) {
         this.context = context.getApplicationContext();
         this.securePreferencesManager = SecurePreferencesManager.getInstance(context);
         this.database = AppDatabase.getDatabase(context);
         this.userProfileDao = database.userProfileDao();
         this.firebaseAuth = FirebaseAuth.getInstance();
-        this.executorService = Executors.newSingleThreadExecutor();
+        // Consultas a Room y hashes del PIN en el pool de base de datos compartido
+        this.executorService = executors.diskIO();
         
         initializeOfflineAuth();
     }
@@ -56,7 +57,7 @@ public class OfflineAuthManager {
      */
     public static synchronized OfflineAuthManager getInstance(Context context) {
         if (instance == null) {
-            instance = new OfflineAuthManager(context);
+            instance = new OfflineAuthManager(context, AppExecutors.getInstance());
         }
         return instance;
     }
@@ -152,7 +153,7 @@ public class OfflineAuthManager {
                 Log.e(TAG, "Error al habilitar autenticación offline", e);
                 return false;
             }
-        });
+        }, executorService);
     }
     
     /**
@@ -195,7 +196,7 @@ public class OfflineAuthManager {
                 Log.e(TAG, "Error en login offline", e);
                 return new OfflineAuthResult(false, "Error en login offline: " + e.getMessage(), null);
             }
-        });
+        }, executorService);
     }
     
     /**
@@ -243,7 +244,7 @@ public class OfflineAuthManager {
                 Log.e(TAG, "Error al verificar sesión offline", e);
                 return new OfflineAuthResult(false, "Error al verificar sesión: " + e.getMessage(), null);
             }
-        });
+        }, executorService);
     }
     
     /**
@@ -297,7 +298,7 @@ public class OfflineAuthManager {
                 Log.e(TAG, "Error al cambiar PIN offline", e);
                 return false;
             }
-        });
+        }, executorService);
     }
     
     /**
@@ -349,16 +350,14 @@ public class OfflineAuthManager {
                 Log.e(TAG, "Error al deshabilitar autenticación offline", e);
                 return false;
             }
-        });
+        }, executorService);
     }
     
     /**
      * Limpia recursos
      */
     public void shutdown() {
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
+        // El executor es compartido por la aplicación y no se cierra aquí
     }
     
     // Clases auxiliares
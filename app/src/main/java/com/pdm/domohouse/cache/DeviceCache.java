@@ -1,88 +1,104 @@
 package com.pdm.domohouse.cache;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
+import com.pdm.domohouse.data.cache.IntelligentCacheManager;
+import com.pdm.domohouse.data.cache.SingleFlight;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
-import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.metrics.MetricsRegistry;
+import com.pdm.domohouse.utils.SecurePreferencesManager;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Cache inteligente para dispositivos
  * Gestiona la cache en memoria y coordina con la base de datos local
+ * 
+ * Las entidades en memoria viven en IntelligentCacheManager (L1) y Room es el L2;
+ * esta clase solo agrega las LiveData y la escritura optimista
+ * 
+ * Es segura entre hilos: las entidades cacheadas nunca se modifican en sitio,
+ * cada actualización copia la entidad y la publica bajo el lock de su franja,
+ * de modo que sensores y toggles de la UI pueden escribir a la vez sin perder cambios
  */
 public class DeviceCache {
     private static final String TAG = "DeviceCache";
     
-    // Tiempo de vida del cache (15 minutos)
-    private static final long CACHE_VALIDITY_DURATION = TimeUnit.MINUTES.toMillis(15);
+    // Número de franjas de locks por dispositivo (potencia de 2)
+    private static final int LOCK_STRIPES = 16;
     
     private static DeviceCache instance;
     private final AppDatabase database;
     private final Context context;
+    private final IntensityWriteBehindQueue intensityQueue;
+    private final AppExecutors executors;
     
-    // Cache en memoria
-    private final Map<String, CachedDevice> deviceCache = new HashMap<>();
-    private final Map<String, CachedRoom> roomCache = new HashMap<>();
+    // Cache en memoria compartido (L1) y bus de invalidación
+    private final IntelligentCacheManager cacheManager;
+    private final CacheInvalidationBus invalidationBus;
     
     // LiveData para observar cambios
     private final MediatorLiveData<List<DeviceEntity>> allDevicesLiveData = new MediatorLiveData<>();
-    private final Map<String, MediatorLiveData<DeviceEntity>> deviceLiveDataMap = new HashMap<>();
+    private final Map<String, MediatorLiveData<DeviceEntity>> deviceLiveDataMap = new ConcurrentHashMap<>();
     
-    // Estado del cache
-    private long lastFullSync = 0;
-    private boolean isCacheValid = false;
+    // Las pantallas que arrancan a la vez comparten una sola pre-carga
+    private final SingleFlight<String, Void> preloadFlight = new SingleFlight<>();
     
-    /**
-     * Clase interna para almacenar dispositivos con timestamp
-     */
-    private static class CachedDevice {
-        DeviceEntity device;
-        long timestamp;
-        
-        CachedDevice(DeviceEntity device) {
-            this.device = device;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isValid() {
-            return System.currentTimeMillis() - timestamp < CACHE_VALIDITY_DURATION;
-        }
-    }
+    // Locks por franja: serializan las escrituras de un mismo dispositivo
+    private final Object[] deviceLocks = new Object[LOCK_STRIPES];
     
-    /**
-     * Clase interna para almacenar habitaciones con timestamp
-     */
-    private static class CachedRoom {
-        RoomEntity room;
-        long timestamp;
-        
-        CachedRoom(RoomEntity room) {
-            this.room = room;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        boolean isValid() {
-            return System.currentTimeMillis() - timestamp < CACHE_VALIDITY_DURATION;
-        }
-    }
+    // Estado del cache
+    private volatile long lastFullSync = 0;
+    private volatile boolean isCacheValid = false;
     
     private DeviceCache(Context context) {
         this.context = context.getApplicationContext();
         this.database = AppDatabase.getDatabase(this.context);
+        this.intensityQueue = IntensityWriteBehindQueue.getInstance(this.context);
+        this.executors = AppExecutors.getInstance();
+        this.cacheManager = IntelligentCacheManager.getInstance(this.context);
+        this.invalidationBus = CacheInvalidationBus.getInstance();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            deviceLocks[i] = new Object();
+        }
         
         // Observar cambios en la base de datos
         setupDatabaseObservers();
+        
+        // Soltar LiveData sin observadores cuando el sistema pida memoria
+        this.context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+            
+            @Override
+            public void onLowMemory() {
+                trimMemory(TRIM_MEMORY_COMPLETE);
+            }
+            
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+        });
     }
     
     /**
@@ -114,7 +130,7 @@ public class DeviceCache {
     private void updateCacheFromDatabase(List<DeviceEntity> devices) {
         if (devices != null) {
             for (DeviceEntity device : devices) {
-                deviceCache.put(device.getDeviceId(), new CachedDevice(device));
+                cacheFromDatabase(device);
             }
             lastFullSync = System.currentTimeMillis();
             isCacheValid = true;
@@ -126,30 +142,31 @@ public class DeviceCache {
      * Obtiene un dispositivo por ID (primero del cache, luego de la BD)
      */
     public LiveData<DeviceEntity> getDevice(String deviceId) {
-        // Verificar si ya tenemos LiveData para este dispositivo
-        MediatorLiveData<DeviceEntity> liveData = deviceLiveDataMap.get(deviceId);
-        if (liveData == null) {
-            liveData = new MediatorLiveData<>();
-            
-            // Primero intentar desde cache
-            CachedDevice cached = deviceCache.get(deviceId);
-            if (cached != null && cached.isValid()) {
-                liveData.setValue(cached.device);
-            }
-            
-            // Luego observar desde BD
-            LiveData<DeviceEntity> dbDevice = database.deviceDao().getDevice(deviceId);
-            MediatorLiveData<DeviceEntity> finalLiveData = liveData;
-            liveData.addSource(dbDevice, device -> {
-                if (device != null) {
-                    deviceCache.put(deviceId, new CachedDevice(device));
-                }
-                finalLiveData.setValue(device);
-            });
-            
-            deviceLiveDataMap.put(deviceId, liveData);
+        // Una sola LiveData por dispositivo aunque la pidan varios hilos a la vez
+        return deviceLiveDataMap.computeIfAbsent(deviceId, this::createDeviceLiveData);
+    }
+    
+    /**
+     * Crea la LiveData de un dispositivo: valor inicial del cache y luego la BD
+     */
+    private MediatorLiveData<DeviceEntity> createDeviceLiveData(String deviceId) {
+        MediatorLiveData<DeviceEntity> liveData = new MediatorLiveData<>();
+        
+        // Primero intentar desde cache
+        DeviceEntity cached = cacheManager.getDeviceEntity(deviceId);
+        if (cached != null) {
+            liveData.setValue(cached);
         }
         
+        // Luego observar desde BD
+        LiveData<DeviceEntity> dbDevice = database.deviceDao().getDevice(deviceId);
+        liveData.addSource(dbDevice, device -> {
+            if (device != null) {
+                cacheFromDatabase(device);
+            }
+            liveData.setValue(device);
+        });
+        
         return liveData;
     }
     
@@ -171,67 +188,47 @@ public class DeviceCache {
      * Actualiza el estado de un dispositivo (optimizado para respuesta rápida)
      */
     public void updateDeviceState(String deviceId, boolean isOn) {
+        // El timestamp se fija aquí para ordenar las escrituras de BD que lleguen desordenadas
+        long timestamp = System.currentTimeMillis();
+        
         // Actualizar cache inmediatamente
-        CachedDevice cached = deviceCache.get(deviceId);
-        if (cached != null && cached.device != null) {
-            cached.device.setOn(isOn);
-            cached.device.setLastStateChange(System.currentTimeMillis());
-            cached.device.setUpdatedAt(System.currentTimeMillis());
-            cached.device.setSynced(false);
-            cached.timestamp = System.currentTimeMillis();
-        }
+        updateCachedDevice(deviceId, device -> {
+            device.setOn(isOn);
+            device.setLastStateChange(timestamp);
+            device.setUpdatedAt(timestamp);
+            device.setSynced(false);
+        });
         
-        // Actualizar BD en background
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            long timestamp = System.currentTimeMillis();
-            database.deviceDao().updateDeviceState(deviceId, isOn, timestamp);
-            
-            // Registrar en historial
-            DeviceHistoryEntity history = new DeviceHistoryEntity();
-            history.setDeviceId(deviceId);
-            history.setAction(isOn ? "ON" : "OFF");
-            history.setOldValue(String.valueOf(!isOn));
-            history.setNewValue(String.valueOf(isOn));
-            history.setTriggeredBy("USER");
-            database.deviceHistoryDao().insert(history);
+        // Actualizar BD en la franja del dispositivo, en orden con el resto de sus escrituras
+        executors.deviceLane(deviceId).execute(() -> {
+            // Estado e historial en un solo commit, con el usuario y la hora del cambio
+            String userId = SecurePreferencesManager.getInstance(context).getCurrentUserId();
+            database.deviceDao().setDeviceStateWithHistory(deviceId, isOn, userId, timestamp);
         });
     }
     
     /**
      * Actualiza la intensidad de un dispositivo
+     * La escritura en BD pasa por la cola diferida para agrupar los movimientos del slider
      */
     public void updateDeviceIntensity(String deviceId, int intensity) {
         // Actualizar cache
-        CachedDevice cached = deviceCache.get(deviceId);
-        if (cached != null && cached.device != null) {
-            int oldIntensity = cached.device.getIntensity();
-            cached.device.setIntensity(intensity);
-            cached.device.setUpdatedAt(System.currentTimeMillis());
-            cached.device.setSynced(false);
-            cached.timestamp = System.currentTimeMillis();
+        updateCachedDevice(deviceId, device -> {
+            int oldIntensity = device.getIntensity();
+            device.setIntensity(intensity);
+            device.setUpdatedAt(System.currentTimeMillis());
+            device.setSynced(false);
             
             // Si la intensidad es 0, apagar el dispositivo
             if (intensity == 0) {
-                cached.device.setOn(false);
+                device.setOn(false);
             } else if (oldIntensity == 0) {
-                cached.device.setOn(true);
+                device.setOn(true);
             }
-        }
-        
-        // Actualizar BD
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            long timestamp = System.currentTimeMillis();
-            database.deviceDao().updateDeviceIntensity(deviceId, intensity, timestamp);
-            
-            // Registrar en historial
-            DeviceHistoryEntity history = new DeviceHistoryEntity();
-            history.setDeviceId(deviceId);
-            history.setAction("INTENSITY_CHANGE");
-            history.setOldValue(String.valueOf(cached != null ? cached.device.getIntensity() : 0));
-            history.setNewValue(String.valueOf(intensity));
-            history.setTriggeredBy("USER");
-            database.deviceHistoryDao().insert(history);
         });
+        
+        // Actualizar BD; el historial se registra una vez por gesto
+        intensityQueue.submit(deviceId, intensity, null);
     }
     
     /**
@@ -239,51 +236,70 @@ public class DeviceCache {
      */
     public void updateDeviceTemperature(String deviceId, float temperature) {
         // Actualizar cache
-        CachedDevice cached = deviceCache.get(deviceId);
-        if (cached != null && cached.device != null) {
-            cached.device.setTemperature(temperature);
-            cached.device.setUpdatedAt(System.currentTimeMillis());
-            cached.timestamp = System.currentTimeMillis();
-        }
+        updateCachedDevice(deviceId, device -> {
+            device.setTemperature(temperature);
+            device.setUpdatedAt(System.currentTimeMillis());
+        });
         
-        // Actualizar BD
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        // Actualizar BD en la franja del dispositivo
+        executors.deviceLane(deviceId).execute(() -> {
             long timestamp = System.currentTimeMillis();
             database.deviceDao().updateDeviceTemperature(deviceId, temperature, timestamp);
             
-            // Registrar en historial
-            DeviceHistoryEntity history = new DeviceHistoryEntity();
-            history.setDeviceId(deviceId);
-            history.setAction("TEMPERATURE_READING");
-            history.setNewValue(String.valueOf(temperature));
-            history.setTriggeredBy("SENSOR");
-            database.deviceHistoryDao().insert(history);
+            // Registrar la lectura numérica del sensor
+            database.sensorReadingDao().recordReading(new SensorReadingEntity(deviceId, timestamp, temperature));
         });
     }
     
     /**
-     * Obtiene una habitación por ID
+     * Aplica un cambio atómico sobre la entidad cacheada de un dispositivo
+     * Copia la entidad, la modifica y publica la copia bajo el lock de su franja,
+     * así los lectores nunca ven un estado a medio escribir y no se pierden cambios
+     * de distintos campos hechos desde hilos diferentes
      */
-    public RoomEntity getRoom(String roomId) {
-        CachedRoom cached = roomCache.get(roomId);
-        if (cached != null && cached.isValid()) {
-            return cached.room;
+    private void updateCachedDevice(String deviceId, Consumer<DeviceEntity> mutation) {
+        synchronized (lockFor(deviceId)) {
+            DeviceEntity cached = cacheManager.getDeviceEntity(deviceId);
+            if (cached == null) {
+                return;
+            }
+            DeviceEntity updated = cached.copy();
+            mutation.accept(updated);
+            cacheManager.putDeviceEntity(updated);
         }
-        
-        // Si no está en cache, buscar en BD
-        RoomEntity room = database.roomDao().getRoomSync(roomId);
-        if (room != null) {
-            roomCache.put(roomId, new CachedRoom(room));
+    }
+    
+    /**
+     * Guarda en cache una entidad leída de la BD
+     * Si el cache tiene un cambio optimista más reciente que aún no llegó a la BD, se conserva
+     */
+    private void cacheFromDatabase(DeviceEntity device) {
+        synchronized (lockFor(device.getDeviceId())) {
+            DeviceEntity cached = cacheManager.getDeviceEntity(device.getDeviceId());
+            if (cached == null || cached.getUpdatedAt() <= device.getUpdatedAt()) {
+                cacheManager.putDeviceEntity(device);
+            }
         }
-        return room;
+    }
+    
+    private Object lockFor(String deviceId) {
+        return deviceLocks[deviceId.hashCode() & (LOCK_STRIPES - 1)];
+    }
+    
+    /**
+     * Obtiene una habitación por ID
+     * Las habitaciones consultadas con frecuencia se recargan en segundo plano antes de expirar
+     */
+    public RoomEntity getRoom(String roomId) {
+        return cacheManager.getRoomEntity(roomId, () -> database.roomDao().getRoomSync(roomId));
     }
     
     /**
      * Invalida el cache completo
      */
     public void invalidateCache() {
-        deviceCache.clear();
-        roomCache.clear();
+        invalidationBus.invalidateAllDevices();
+        invalidationBus.invalidateAllRooms();
         isCacheValid = false;
         lastFullSync = 0;
         Log.d(TAG, "Cache invalidado");
@@ -293,49 +309,63 @@ public class DeviceCache {
      * Invalida un dispositivo específico del cache
      */
     public void invalidateDevice(String deviceId) {
-        deviceCache.remove(deviceId);
+        invalidationBus.invalidateDevice(deviceId);
         Log.d(TAG, "Dispositivo " + deviceId + " removido del cache");
     }
     
     /**
      * Pre-carga dispositivos en el cache
+     * Las llamadas concurrentes comparten una sola lectura de la BD
      */
-    public void preloadDevices() {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            List<DeviceEntity> devices = database.deviceDao().getAllDevices().getValue();
+    public CompletableFuture<Void> preloadDevices() {
+        return preloadFlight.executeAsync("all", () -> CompletableFuture.runAsync(() -> {
+            long startNanos = System.nanoTime();
+            List<DeviceEntity> devices = database.deviceDao().getAllDevicesSync();
+            MetricsRegistry.getInstance().recordLatency("DeviceDao.getAllDevicesSync", startNanos);
             if (devices != null) {
                 updateCacheFromDatabase(devices);
             }
             
+            startNanos = System.nanoTime();
             List<RoomEntity> rooms = database.roomDao().getAllRoomsSync();
+            MetricsRegistry.getInstance().recordLatency("RoomDao.getAllRoomsSync", startNanos);
             if (rooms != null) {
                 for (RoomEntity room : rooms) {
-                    roomCache.put(room.getRoomId(), new CachedRoom(room));
+                    cacheManager.putRoomEntity(room);
                 }
             }
-        });
+        }, executors.diskIO()));
+    }
+    
+    /**
+     * Libera las LiveData por dispositivo que ninguna pantalla observa
+     * Se recrean desde el cache y Room la próxima vez que se pidan; las entidades
+     * viven en IntelligentCacheManager, que aplica su propio recorte
+     * Debe llamarse desde el hilo principal (onTrimMemory ya llega ahí)
+     */
+    public void trimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        
+        int before = deviceLiveDataMap.size();
+        deviceLiveDataMap.values().removeIf(liveData -> !liveData.hasObservers());
+        Log.d(TAG, "LiveData de dispositivos liberadas por onTrimMemory(" + level + "): "
+                + (before - deviceLiveDataMap.size()));
     }
     
     /**
      * Obtiene estadísticas del cache
      */
     public CacheStats getCacheStats() {
-        int validDevices = 0;
-        int invalidDevices = 0;
-        
-        for (CachedDevice cached : deviceCache.values()) {
-            if (cached.isValid()) {
-                validDevices++;
-            } else {
-                invalidDevices++;
-            }
-        }
+        IntelligentCacheManager.CacheMemoryInfo memoryInfo = cacheManager.getMemoryInfo();
+        int validDevices = cacheManager.countValidDeviceEntities();
         
         return new CacheStats(
-                deviceCache.size(),
+                memoryInfo.deviceEntityEntries,
                 validDevices,
-                invalidDevices,
-                roomCache.size(),
+                memoryInfo.deviceEntityEntries - validDevices,
+                memoryInfo.roomEntityEntries,
                 lastFullSync
         );
     }
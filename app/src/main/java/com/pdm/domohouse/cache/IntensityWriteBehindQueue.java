@@ -0,0 +1,358 @@
+package com.pdm.domohouse.cache;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.database.AppDatabase;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola de escritura diferida para cambios de intensidad generados por sliders
+ * Por dispositivo conserva solo el último valor de la ventana y escribe todos los
+ * pendientes en una sola transacción. El gesto termina cuando no llegan valores durante
+ * WINDOW_MS, y entonces se registra una única entrada de historial (valor inicial → final).
+ * Si la transacción falla los valores siguen pendientes y se reintenta tras RETRY_DELAY_MS.
+ * Una escritura que fija la intensidad por otra vía (una escena) descarta con supersede los
+ * valores anteriores del slider para que no la pisen al escribirse más tarde
+ */
+public class IntensityWriteBehindQueue {
+    
+    private static final String TAG = "IntensityWriteQueue";
+    
+    // Sin nuevos valores durante esta ventana el gesto se considera terminado
+    static final long WINDOW_MS = 300;
+    
+    // Máximo tiempo que un valor puede esperar mientras el slider sigue moviéndose
+    static final long MAX_DELAY_MS = 1000;
+    
+    // Espera antes de reintentar una escritura fallida
+    static final long RETRY_DELAY_MS = 2000;
+    
+    private static IntensityWriteBehindQueue instance;
+    
+    private final AppDatabase database;
+    private final ScheduledExecutorService scheduler;
+    
+    // Las pasadas de flush se ejecutan de una en una sobre diskIO
+    private final Executor flusher;
+    
+    // Estado por dispositivo, protegido por lock
+    private final Object lock = new Object();
+    private final Map<String, PendingWrite> pending = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    
+    // Número de orden de cada submit y último número reemplazado por supersede por dispositivo
+    private long submitSequence;
+    private final Map<String, Long> supersededUpTo = new HashMap<>();
+    
+    /**
+     * Gesto en curso de un dispositivo
+     */
+    private static class PendingWrite {
+        int latestValue;
+        boolean dirty;             // Hay un valor aún no escrito en la BD
+        Integer gestureStartValue; // Intensidad anterior al gesto, leída en la primera escritura
+        long firstPendingAt;
+        long lastSubmitAt;
+        long lastSubmitSequence;
+        String userId;
+        // Resultados pendientes de los submit cuyo valor aún no se escribió
+        final List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+    }
+    
+    /**
+     * Escritura tomada de la cola para una pasada de flush
+     */
+    private static class Write {
+        final String deviceId;
+        final int value;
+        final long submittedAt;
+        final long sequence;
+        final boolean dirty;
+        final boolean gestureEnded;
+        Integer gestureStartValue;
+        final String userId;
+        final List<CompletableFuture<Boolean>> waiters;
+        
+        Write(String deviceId, PendingWrite state, boolean gestureEnded) {
+            this.deviceId = deviceId;
+            this.value = state.latestValue;
+            this.submittedAt = state.lastSubmitAt;
+            this.sequence = state.lastSubmitSequence;
+            this.dirty = state.dirty;
+            this.gestureEnded = gestureEnded;
+            this.gestureStartValue = state.gestureStartValue;
+            this.userId = state.userId;
+            this.waiters = new ArrayList<>(state.waiters);
+            state.waiters.clear();
+        }
+    }
+    
+    IntensityWriteBehindQueue(AppDatabase database, AppExecutors executors) {
+        this.database = database;
+        this.scheduler = executors.scheduler();
+        this.flusher = executors.newSerialExecutor();
+    }
+    
+    public static synchronized IntensityWriteBehindQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new IntensityWriteBehindQueue(
+                    AppDatabase.getDatabase(context.getApplicationContext()), AppExecutors.getInstance());
+        }
+        return instance;
+    }
+    
+    /**
+     * Encola un nuevo valor de intensidad; reemplaza cualquier valor pendiente del dispositivo
+     * 
+     * @return Se completa con true cuando este valor (o uno posterior del mismo dispositivo)
+     *         queda escrito, o con false si el dispositivo no existe en la BD local
+     */
+    public CompletableFuture<Boolean> submit(String deviceId, int intensity, String userId) {
+        long now = System.currentTimeMillis();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        synchronized (lock) {
+            PendingWrite state = pending.get(deviceId);
+            if (state == null) {
+                state = new PendingWrite();
+                pending.put(deviceId, state);
+            }
+            if (!state.dirty) {
+                state.dirty = true;
+                state.firstPendingAt = now;
+            }
+            state.latestValue = intensity;
+            state.lastSubmitAt = now;
+            state.lastSubmitSequence = ++submitSequence;
+            if (userId != null) {
+                state.userId = userId;
+            }
+            state.waiters.add(result);
+            scheduleFlushLocked(WINDOW_MS);
+        }
+        return result;
+    }
+    
+    /**
+     * Descarta los valores pendientes de los dispositivos indicados
+     * Debe llamarse antes de abrir la transacción que fija su intensidad: una pasada de flush
+     * que ya había empezado termina antes que esa transacción y las posteriores omiten los
+     * valores encolados hasta este momento. Los submit descartados se completan con true
+     */
+    public void supersede(Collection<String> deviceIds) {
+        List<CompletableFuture<Boolean>> waiters = new ArrayList<>();
+        synchronized (lock) {
+            for (String deviceId : deviceIds) {
+                supersededUpTo.put(deviceId, submitSequence);
+                PendingWrite state = pending.remove(deviceId);
+                if (state != null) {
+                    waiters.addAll(state.waiters);
+                }
+            }
+        }
+        for (CompletableFuture<Boolean> waiter : waiters) {
+            waiter.complete(true);
+        }
+    }
+    
+    /**
+     * Escribe de inmediato todos los valores pendientes y cierra los gestos abiertos
+     */
+    public Future<?> flush() {
+        return CompletableFuture.runAsync(() -> runFlush(true), flusher);
+    }
+    
+    /**
+     * El planificador compartido solo marca el plazo; la escritura pasa al carril de flush
+     */
+    private void scheduleFlushLocked(long delayMs) {
+        if (scheduledFlush == null || scheduledFlush.isDone()) {
+            scheduledFlush = scheduler.schedule(() -> flusher.execute(() -> runFlush(false)),
+                delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void runFlush(boolean force) {
+        long now = System.currentTimeMillis();
+        List<Write> writes = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<String, PendingWrite> entry : pending.entrySet()) {
+                PendingWrite state = entry.getValue();
+                boolean ended = force || now - state.lastSubmitAt >= WINDOW_MS;
+                boolean due = state.dirty && (ended || now - state.firstPendingAt >= MAX_DELAY_MS);
+                if (due || ended) {
+                    writes.add(new Write(entry.getKey(), state, ended));
+                }
+            }
+        }
+        
+        Set<String> missing = new HashSet<>();
+        Set<String> superseded = new HashSet<>();
+        boolean committed = true;
+        if (!writes.isEmpty()) {
+            try {
+                database.runInTransaction(() -> applyWrites(writes, missing, superseded, now));
+            } catch (Exception e) {
+                committed = false;
+                Log.e(TAG, "Error al escribir intensidades pendientes, se reintentará", e);
+            }
+        }
+        
+        synchronized (lock) {
+            if (!committed) {
+                // Nada quedó escrito: los valores siguen pendientes (dirty) y se reintentan
+                for (Write write : writes) {
+                    PendingWrite state = pending.get(write.deviceId);
+                    if (state == null) {
+                        // Reemplazado por supersede durante la escritura
+                        completeAll(write.waiters, true);
+                        continue;
+                    }
+                    state.waiters.addAll(0, write.waiters);
+                    if (state.gestureStartValue == null) {
+                        state.gestureStartValue = write.gestureStartValue;
+                    }
+                }
+                supersededUpTo.clear();
+                scheduleFlushLocked(RETRY_DELAY_MS);
+                return;
+            }
+            
+            for (Write write : writes) {
+                PendingWrite state = pending.get(write.deviceId);
+                boolean exists = !missing.contains(write.deviceId);
+                completeAll(write.waiters, exists);
+                if (state == null || superseded.contains(write.deviceId)) {
+                    // Otra escritura fijó la intensidad; un valor posterior sigue su curso
+                    continue;
+                }
+                if (!exists) {
+                    // Dispositivo inexistente: se descarta salvo que haya llegado un valor nuevo
+                    if (state.lastSubmitAt == write.submittedAt) {
+                        pending.remove(write.deviceId);
+                    }
+                    continue;
+                }
+                if (state.lastSubmitAt != write.submittedAt) {
+                    // Llegó un valor nuevo durante la escritura: se conserva el inicio del gesto
+                    if (state.gestureStartValue == null) {
+                        state.gestureStartValue = write.gestureStartValue;
+                    }
+                    continue;
+                }
+                if (write.gestureEnded) {
+                    pending.remove(write.deviceId);
+                } else {
+                    state.dirty = false;
+                    state.gestureStartValue = write.gestureStartValue;
+                }
+            }
+            
+            // Solo esta pasada podía tener valores anteriores a un supersede
+            supersededUpTo.clear();
+            
+            // Revisar de nuevo mientras queden gestos abiertos
+            if (!pending.isEmpty()) {
+                scheduleFlushLocked(nextDelayLocked(System.currentTimeMillis()));
+            }
+        }
+    }
+    
+    private static void completeAll(List<CompletableFuture<Boolean>> waiters, boolean result) {
+        for (CompletableFuture<Boolean> waiter : waiters) {
+            waiter.complete(result);
+        }
+    }
+    
+    private long nextDelayLocked(long now) {
+        long delay = WINDOW_MS;
+        for (PendingWrite state : pending.values()) {
+            delay = Math.min(delay, state.lastSubmitAt + WINDOW_MS - now);
+            if (state.dirty) {
+                delay = Math.min(delay, state.firstPendingAt + MAX_DELAY_MS - now);
+            }
+        }
+        return Math.max(1, delay);
+    }
+    
+    /**
+     * Aplica las escrituras dentro de la transacción: una lectura en bloque,
+     * un UPDATE por dispositivo y un INSERT de historial por gesto terminado
+     */
+    private void applyWrites(List<Write> writes, Set<String> missing, Set<String> superseded,
+            long timestamp) {
+        synchronized (lock) {
+            for (Write write : writes) {
+                Long upTo = supersededUpTo.get(write.deviceId);
+                if (upTo != null && write.sequence <= upTo) {
+                    superseded.add(write.deviceId);
+                }
+            }
+        }
+        
+        List<String> ids = new ArrayList<>();
+        for (Write write : writes) {
+            if (write.gestureStartValue == null && !superseded.contains(write.deviceId)) {
+                ids.add(write.deviceId);
+            }
+        }
+        Map<String, DeviceEntity> current = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (DeviceEntity device : database.deviceDao().getDevicesByIdsSync(ids)) {
+                current.put(device.getDeviceId(), device);
+            }
+        }
+        
+        List<DeviceHistoryEntity> history = new ArrayList<>();
+        for (Write write : writes) {
+            if (superseded.contains(write.deviceId)) {
+                continue;
+            }
+            if (write.gestureStartValue == null) {
+                DeviceEntity device = current.get(write.deviceId);
+                if (device == null) {
+                    // Dispositivo inexistente en la BD local: no hay nada que escribir
+                    missing.add(write.deviceId);
+                    continue;
+                }
+                write.gestureStartValue = device.getIntensity();
+            }
+            
+            if (write.dirty) {
+                database.deviceDao().updateDeviceIntensity(write.deviceId, write.value, timestamp);
+            }
+            
+            if (write.gestureEnded && write.gestureStartValue != write.value) {
+                DeviceHistoryEntity entry = new DeviceHistoryEntity();
+                entry.setDeviceId(write.deviceId);
+                entry.setAction("INTENSITY_CHANGE");
+                entry.setOldValue(String.valueOf(write.gestureStartValue));
+                entry.setNewValue(String.valueOf(write.value));
+                entry.setTriggeredBy("USER");
+                entry.setUserId(write.userId);
+                entry.setTimestamp(timestamp);
+                history.add(entry);
+            }
+        }
+        
+        if (!history.isEmpty()) {
+            database.deviceHistoryDao().insertAll(history);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.pdm.domohouse.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors compartidos por toda la aplicación
+ * Repositorios, ViewModels y managers reciben esta instancia en lugar de crear sus propios
+ * pools, de modo que el número de hilos es fijo y no depende de cuántas pantallas se abran:
+ * - diskIO: consultas y escrituras de Room
+ * - networkIO: llamadas a Firebase que bloquean el hilo
+ * - scheduler: tareas periódicas cortas que delegan el trabajo pesado a los otros pools
+ * - deviceLane: carril serie por dispositivo sobre diskIO para escrituras ordenadas
+ * - deviceLanes: escrituras de grupo ordenadas con los carriles de todos sus dispositivos
+ *
+ * Los pools viven lo mismo que el proceso: los clientes nunca deben llamar a shutdown
+ */
+public class AppExecutors {
+    
+    private static final int DISK_IO_THREADS = 3;
+    private static final int NETWORK_IO_THREADS = 3;
+    private static final int SCHEDULER_THREADS = 1;
+    
+    // En ART la prioridad 4 de Java equivale a THREAD_PRIORITY_BACKGROUND
+    private static final int BACKGROUND_PRIORITY = Thread.NORM_PRIORITY - 1;
+    
+    private static volatile AppExecutors instance;
+    
+    private final Executor diskIO;
+    private final Executor networkIO;
+    private final ScheduledExecutorService scheduler;
+    private final KeyedSerialExecutor deviceLanes;
+    
+    AppExecutors(@NonNull Executor diskIO, @NonNull Executor networkIO,
+                 @NonNull ScheduledExecutorService scheduler) {
+        this.diskIO = diskIO;
+        this.networkIO = networkIO;
+        this.scheduler = scheduler;
+        this.deviceLanes = new KeyedSerialExecutor(diskIO);
+    }
+    
+    public static AppExecutors getInstance() {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null) {
+                    instance = new AppExecutors(
+                        newFixedPool("domohouse-db", DISK_IO_THREADS, BACKGROUND_PRIORITY),
+                        newFixedPool("domohouse-net", NETWORK_IO_THREADS, BACKGROUND_PRIORITY),
+                        newScheduler());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public Executor diskIO() {
+        return diskIO;
+    }
+    
+    public Executor networkIO() {
+        return networkIO;
+    }
+    
+    /**
+     * Planificador compartido; las tareas programadas deben cancelarse con su ScheduledFuture
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+    
+    /**
+     * Carril serie de un dispositivo: sus tareas se ejecutan en orden sobre diskIO
+     */
+    public Executor deviceLane(@NonNull String deviceId) {
+        return deviceLanes.forKey(deviceId);
+    }
+    
+    /**
+     * Executor que ordena cada tarea respecto a los carriles de todos los dispositivos indicados
+     * La tarea espera a las anteriores de esos dispositivos y las posteriores esperan a ella
+     */
+    public Executor deviceLanes(@NonNull Collection<String> deviceIds) {
+        List<String> ids = new ArrayList<>(deviceIds);
+        return task -> deviceLanes.executeAll(ids, task);
+    }
+    
+    /**
+     * Nuevo executor serie sobre diskIO para componentes que dependen del orden de sus tareas
+     * No crea hilos, así que se puede crear uno por instancia sin coste
+     */
+    public Executor newSerialExecutor() {
+        return new SerialExecutor(diskIO);
+    }
+    
+    /**
+     * Hilos que pueden llegar a existir, independiente de la navegación
+     */
+    public static int getMaxThreadCount() {
+        return DISK_IO_THREADS + NETWORK_IO_THREADS + SCHEDULER_THREADS;
+    }
+    
+    private static ExecutorService newFixedPool(String name, int threads, int priority) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), namedThreads(name, priority));
+        // Los hilos ociosos se liberan; se recrean bajo demanda hasta el límite fijo
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+    
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS,
+            namedThreads("domohouse-timer", BACKGROUND_PRIORITY));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+    
+    private static ThreadFactory namedThreads(String prefix, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
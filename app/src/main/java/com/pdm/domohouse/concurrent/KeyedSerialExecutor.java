@@ -0,0 +1,173 @@
+package com.pdm.domohouse.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor con un carril serie por clave sobre un pool compartido
+ * Las tareas de una misma clave (por ejemplo un deviceId) se ejecutan en orden y nunca
+ * en paralelo; las de claves distintas avanzan en paralelo hasta el tamaño del pool.
+ * Cada carril ejecuta una tarea por turno del pool, así una clave con muchas tareas
+ * no acapara los hilos, y se descarta en cuanto queda vacío.
+ * executeAll ordena una tarea respecto a varios carriles a la vez (por ejemplo una escena)
+ */
+public class KeyedSerialExecutor {
+    
+    private final Executor backing;
+    
+    // Carriles con tareas pendientes o en ejecución, protegidos por su propio lock
+    private final Map<String, Lane> lanes = new HashMap<>();
+    
+    public KeyedSerialExecutor(@NonNull Executor backing) {
+        this.backing = backing;
+    }
+    
+    /**
+     * Encola una tarea en el carril de la clave
+     */
+    public void execute(@NonNull String key, @NonNull Runnable task) {
+        synchronized (lanes) {
+            Lane lane = lanes.get(key);
+            if (lane == null) {
+                lane = new Lane(key);
+                lanes.put(key, lane);
+            }
+            lane.tasks.offer(task);
+            if (!lane.scheduled) {
+                lane.scheduled = true;
+                schedule(lane);
+            }
+        }
+    }
+    
+    /**
+     * Encola una tarea en los carriles de todas las claves
+     * Se ejecuta una sola vez, cuando todas las tareas anteriores de esas claves terminaron,
+     * y las tareas posteriores de esas claves esperan a que termine. Los carriles esperan
+     * aparcados sin ocupar hilos del pool; como la tarea se encola en todos los carriles
+     * bajo el mismo lock, dos tareas con claves comunes quedan en el mismo orden en cada
+     * carril y no pueden bloquearse entre sí
+     */
+    public void executeAll(@NonNull Collection<String> keys, @NonNull Runnable task) {
+        Set<String> distinct = new LinkedHashSet<>(keys);
+        if (distinct.isEmpty()) {
+            backing.execute(task);
+            return;
+        }
+        
+        Barrier barrier = new Barrier(task, distinct.size());
+        synchronized (lanes) {
+            for (String key : distinct) {
+                Lane lane = lanes.get(key);
+                if (lane == null) {
+                    lane = new Lane(key);
+                    lanes.put(key, lane);
+                }
+                lane.tasks.offer(barrier);
+                if (!lane.scheduled) {
+                    lane.scheduled = true;
+                    schedule(lane);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Vista Executor del carril de una clave, para CompletableFuture y similares
+     */
+    public Executor forKey(@NonNull String key) {
+        return task -> execute(key, task);
+    }
+    
+    /**
+     * Número de carriles con trabajo pendiente
+     */
+    public int activeLanes() {
+        synchronized (lanes) {
+            return lanes.size();
+        }
+    }
+    
+    private void schedule(Lane lane) {
+        try {
+            backing.execute(() -> runNext(lane));
+        } catch (RuntimeException e) {
+            // El pool rechazó la tarea: se descarta el carril para no dejarlo bloqueado
+            lanes.remove(lane.key);
+            throw e;
+        }
+    }
+    
+    private void runNext(Lane lane) {
+        Runnable task;
+        List<Lane> released;
+        synchronized (lanes) {
+            task = lane.tasks.poll();
+            if (task instanceof Barrier) {
+                Barrier barrier = (Barrier) task;
+                barrier.parked.add(lane);
+                if (barrier.parked.size() < barrier.keyCount) {
+                    // Faltan otros carriles: este queda aparcado sin volver a programarse
+                    return;
+                }
+                released = barrier.parked;
+            } else {
+                released = Collections.singletonList(lane);
+            }
+        }
+        try {
+            if (task != null) {
+                task.run();
+            }
+        } finally {
+            synchronized (lanes) {
+                for (Lane next : released) {
+                    if (next.tasks.isEmpty()) {
+                        lanes.remove(next.key);
+                    } else {
+                        schedule(next);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tarea compartida por varios carriles; la ejecuta el último carril en llegar
+     */
+    private static final class Barrier implements Runnable {
+        final Runnable task;
+        final int keyCount;
+        final List<Lane> parked = new ArrayList<>();
+        
+        Barrier(Runnable task, int keyCount) {
+            this.task = task;
+            this.keyCount = keyCount;
+        }
+        
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+    
+    private static final class Lane {
+        final String key;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean scheduled;
+        
+        Lane(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.pdm.domohouse.concurrent;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Ejecuta las tareas de una en una y en orden de llegada sobre un executor compartido
+ * No crea hilos: mientras no tiene tareas no ocupa ningún hilo del pool
+ */
+public class SerialExecutor implements Executor {
+    
+    private final Executor backing;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+    
+    public SerialExecutor(@NonNull Executor backing) {
+        this.backing = backing;
+    }
+    
+    @Override
+    public synchronized void execute(@NonNull Runnable task) {
+        tasks.offer(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+    
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            backing.execute(active);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.pdm.domohouse.data.cache;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Bus único de invalidación para el cache de la aplicación
+ * Repositorios y managers de sincronización publican aquí cuando cambian datos
+ * y todas las capas de cache se enteran por el mismo camino. La entrega es síncrona
+ */
+public class CacheInvalidationBus {
+    
+    private static final String TAG = "CacheInvalidationBus";
+    
+    private static volatile CacheInvalidationBus instance;
+    
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Ámbito de una invalidación
+     */
+    public enum Scope {
+        USER,
+        DEVICE,
+        ROOM,
+        ALL
+    }
+    
+    /**
+     * Recibe las invalidaciones; key es null cuando aplica a todo el ámbito
+     */
+    public interface Listener {
+        void onInvalidated(@NonNull Scope scope, @Nullable String key);
+    }
+    
+    private CacheInvalidationBus() {
+    }
+    
+    public static CacheInvalidationBus getInstance() {
+        if (instance == null) {
+            synchronized (CacheInvalidationBus.class) {
+                if (instance == null) {
+                    instance = new CacheInvalidationBus();
+                }
+            }
+        }
+        return instance;
+    }
+    
+    public void register(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+    
+    public void unregister(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+    
+    public void invalidateUser(@NonNull String userId) {
+        publish(Scope.USER, userId);
+    }
+    
+    public void invalidateDevice(@NonNull String deviceId) {
+        publish(Scope.DEVICE, deviceId);
+    }
+    
+    public void invalidateAllDevices() {
+        publish(Scope.DEVICE, null);
+    }
+    
+    public void invalidateRoom(@NonNull String roomId) {
+        publish(Scope.ROOM, roomId);
+    }
+    
+    public void invalidateAllRooms() {
+        publish(Scope.ROOM, null);
+    }
+    
+    public void invalidateAll() {
+        publish(Scope.ALL, null);
+    }
+    
+    /**
+     * Notifica la invalidación a todas las capas registradas
+     */
+    public void publish(@NonNull Scope scope, @Nullable String key) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onInvalidated(scope, key);
+            } catch (Exception e) {
+                Log.e(TAG, "Error al propagar invalidación " + scope + ":" + key, e);
+            }
+        }
+    }
+}
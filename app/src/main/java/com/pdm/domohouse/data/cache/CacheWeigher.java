@@ -0,0 +1,220 @@
+package com.pdm.domohouse.data.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Calcula el tamaño retenido real de los objetos guardados en cache
+ * Recorre el grafo de cada valor con el layout de objetos de ART (cabecera de 8 bytes,
+ * referencias de 4 bytes y alineación a 8) y memoriza el layout de cada clase
+ *
+ * Los enums y las clases son compartidos por toda la app y no se cuentan
+ */
+final class CacheWeigher {
+    
+    private static final int OBJECT_HEADER = 8;
+    private static final int ARRAY_HEADER = 12; // cabecera + longitud
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+    
+    // String en ART: cabecera + count + hash, con los caracteres en línea
+    private static final int STRING_HEADER = OBJECT_HEADER + 8;
+    
+    // Integer, Float, Long, etc.: cabecera + valor (como máximo 8 bytes)
+    private static final int BOXED_SIZE = 16;
+    
+    // ArrayList: cabecera + size + modCount + referencia al arreglo
+    private static final int LIST_HEADER = align(OBJECT_HEADER + 12);
+    
+    // HashMap: cabecera + tabla, vistas, size, modCount, threshold y loadFactor
+    private static final int MAP_HEADER = align(OBJECT_HEADER + 32);
+    private static final int MAP_NODE = align(OBJECT_HEADER + 16);
+    
+    // Nodo del LinkedHashMap interno de LruCache (hash, key, value, next, before, after)
+    private static final int LRU_NODE = align(OBJECT_HEADER + 24);
+    
+    // CacheEntry: cabecera + data + timestamp + estrategia + peso
+    private static final int CACHE_ENTRY = align(OBJECT_HEADER + REFERENCE + 8 + REFERENCE + 4);
+    
+    private static final Map<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+    
+    private CacheWeigher() {
+    }
+    
+    /**
+     * Bytes que retiene una entrada de LruCache: nodo, clave, CacheEntry y el valor completo
+     */
+    static int weighEntry(String key, Object value) {
+        long size = LRU_NODE + CACHE_ENTRY + weigh(key) + weigh(value);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+    
+    /**
+     * Bytes que retiene una entrada de un HashMap o ConcurrentHashMap: nodo, clave y valor
+     */
+    static int weighMapEntry(String key, Object value) {
+        long size = MAP_NODE + weigh(key) + weigh(value);
+        return (int) Math.min(Integer.MAX_VALUE, size);
+    }
+    
+    /**
+     * Bytes retenidos por el grafo de objetos alcanzable desde el valor
+     */
+    static long weigh(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return sizeOf(value, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+    
+    private static long sizeOf(Object value, Set<Object> visited) {
+        if (value == null || value instanceof Enum || value instanceof Class || !visited.add(value)) {
+            return 0;
+        }
+        
+        if (value instanceof String) {
+            return stringSize((String) value);
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return BOXED_SIZE;
+        }
+        
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            return arraySize(value, type.getComponentType(), visited);
+        }
+        if (value instanceof Collection) {
+            // Las colecciones del JDK no se pueden inspeccionar por reflexión; se modelan como ArrayList
+            Collection<?> collection = (Collection<?>) value;
+            long size = LIST_HEADER + align(ARRAY_HEADER + (long) REFERENCE * collection.size());
+            for (Object item : collection) {
+                size += sizeOf(item, visited);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = MAP_HEADER + align(ARRAY_HEADER + (long) REFERENCE * tableSize(map.size()));
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += MAP_NODE + sizeOf(entry.getKey(), visited) + sizeOf(entry.getValue(), visited);
+            }
+            return size;
+        }
+        
+        ClassLayout layout = layoutOf(type);
+        long size = layout.shallowSize;
+        for (Field field : layout.referenceFields) {
+            try {
+                size += sizeOf(field.get(value), visited);
+            } catch (IllegalAccessException e) {
+                // Campo inaccesible: solo cuenta la referencia ya incluida en el tamaño superficial
+            }
+        }
+        return size;
+    }
+    
+    private static long stringSize(String value) {
+        // ART comprime a 1 byte por carácter las cadenas ASCII
+        boolean compressible = true;
+        for (int i = 0; i < value.length() && compressible; i++) {
+            char c = value.charAt(i);
+            compressible = c > 0 && c < 0x80;
+        }
+        long chars = compressible ? value.length() : 2L * value.length();
+        return align(STRING_HEADER + chars);
+    }
+    
+    private static long arraySize(Object array, Class<?> componentType, Set<Object> visited) {
+        int length = Array.getLength(array);
+        if (componentType.isPrimitive()) {
+            return align(ARRAY_HEADER + (long) primitiveSize(componentType) * length);
+        }
+        long size = align(ARRAY_HEADER + (long) REFERENCE * length);
+        for (int i = 0; i < length; i++) {
+            size += sizeOf(Array.get(array, i), visited);
+        }
+        return size;
+    }
+    
+    private static int tableSize(int entries) {
+        int table = 16;
+        while (table * 3 / 4 < entries) {
+            table <<= 1;
+        }
+        return table;
+    }
+    
+    private static ClassLayout layoutOf(Class<?> type) {
+        ClassLayout layout = layouts.get(type);
+        if (layout == null) {
+            layout = new ClassLayout(type);
+            layouts.put(type, layout);
+        }
+        return layout;
+    }
+    
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1; // byte, boolean
+    }
+    
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+    
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+    
+    /**
+     * Tamaño superficial de una clase y los campos de referencia que hay que recorrer
+     */
+    private static final class ClassLayout {
+        final long shallowSize;
+        final List<Field> referenceFields = new ArrayList<>();
+        
+        ClassLayout(Class<?> type) {
+            long fieldsSize = 0;
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        fieldsSize += primitiveSize(field.getType());
+                    } else {
+                        fieldsSize += REFERENCE;
+                        if (isTraversable(current)) {
+                            field.setAccessible(true);
+                            referenceFields.add(field);
+                        }
+                    }
+                }
+            }
+            this.shallowSize = align(OBJECT_HEADER + fieldsSize);
+        }
+        
+        private static boolean isTraversable(Class<?> type) {
+            // Solo se recorren las clases de la app; las del sistema no permiten reflexión profunda
+            String name = type.getName();
+            return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("android.");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.pdm.domohouse.data.cache;
+
+import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.Room;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Última vista conocida del dashboard: habitaciones, dispositivos y estadísticas
+ * Se guarda en disco para poder pintar el dashboard en un arranque en frío
+ * antes de que respondan Room y Firebase
+ */
+public class DashboardSnapshot {
+    
+    public final List<Room> rooms;
+    public final List<Device> devices;
+    
+    // Estadísticas del dashboard en el momento de guardar
+    public final int totalRooms;
+    public final int activeRooms;
+    public final int totalDevices;
+    public final int connectedDevices;
+    public final int activeDevices;
+    public final int alertsCount;
+    public final float avgTemperature;
+    
+    public final long savedAt;
+    
+    public DashboardSnapshot(List<Room> rooms, List<Device> devices, int totalRooms, int activeRooms,
+                             int totalDevices, int connectedDevices, int activeDevices, int alertsCount,
+                             float avgTemperature, long savedAt) {
+        this.rooms = Collections.unmodifiableList(rooms);
+        this.devices = Collections.unmodifiableList(devices);
+        this.totalRooms = totalRooms;
+        this.activeRooms = activeRooms;
+        this.totalDevices = totalDevices;
+        this.connectedDevices = connectedDevices;
+        this.activeDevices = activeDevices;
+        this.alertsCount = alertsCount;
+        this.avgTemperature = avgTemperature;
+        this.savedAt = savedAt;
+    }
+}
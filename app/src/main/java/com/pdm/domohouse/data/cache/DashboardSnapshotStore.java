@@ -0,0 +1,291 @@
+package com.pdm.domohouse.data.cache;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.DeviceType;
+import com.pdm.domohouse.data.model.Room;
+import com.pdm.domohouse.data.model.RoomType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistencia binaria del DashboardSnapshot para arranques en frío
+ * La lectura mapea el archivo en memoria y lo decodifica sin pasar por Room;
+ * la escritura se codifica en el hilo que llama y se guarda en segundo plano con
+ * AtomicFile, de modo que un cierre a mitad de escritura nunca deja un archivo a medias
+ *
+ * Formato: magic, versión, longitud del contenido, estadísticas, habitaciones y dispositivos
+ */
+public class DashboardSnapshotStore {
+    
+    private static final String TAG = "DashboardSnapshotStore";
+    private static final String FILE_NAME = "dashboard_snapshot.bin";
+    
+    private static final int MAGIC = 0x44485331; // "DHS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    
+    private static DashboardSnapshotStore instance;
+    
+    private final AtomicFile file;
+    // Carril serie sobre diskIO: escrituras y borrados se aplican en orden de llegada
+    private final Executor writer;
+    
+    // Último snapshot codificado pendiente de escribir; los guardados seguidos se agrupan
+    private final AtomicReference<byte[]> pendingWrite = new AtomicReference<>();
+    
+    private DashboardSnapshotStore(Context context) {
+        this.file = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        this.writer = AppExecutors.getInstance().newSerialExecutor();
+    }
+    
+    public static synchronized DashboardSnapshotStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new DashboardSnapshotStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    /**
+     * Lee el último snapshot guardado
+     * @return El snapshot, o null si no existe o no se puede decodificar
+     */
+    @Nullable
+    public DashboardSnapshot load() {
+        try (FileInputStream in = file.openRead(); FileChannel channel = in.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            DashboardSnapshot snapshot = decode(buffer);
+            if (snapshot == null) {
+                Log.w(TAG, "Snapshot del dashboard descartado por formato inválido");
+            }
+            return snapshot;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error leyendo snapshot del dashboard", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Guarda el snapshot en segundo plano
+     */
+    public void save(@NonNull DashboardSnapshot snapshot) {
+        byte[] bytes;
+        try {
+            bytes = encode(snapshot);
+        } catch (IOException e) {
+            Log.e(TAG, "Error codificando snapshot del dashboard", e);
+            return;
+        }
+        
+        // Si ya había una escritura en cola, solo se reemplaza su contenido
+        if (pendingWrite.getAndSet(bytes) == null) {
+            writer.execute(this::writePending);
+        }
+    }
+    
+    /**
+     * Borra el snapshot (por ejemplo al cerrar sesión)
+     */
+    public void clear() {
+        pendingWrite.set(null);
+        writer.execute(file::delete);
+    }
+    
+    private void writePending() {
+        byte[] bytes = pendingWrite.getAndSet(null);
+        if (bytes == null) {
+            return;
+        }
+        
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(bytes);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) {
+                file.failWrite(out);
+            }
+            Log.e(TAG, "Error guardando snapshot del dashboard", e);
+        }
+    }
+    
+    /**
+     * Codifica el snapshot al formato binario
+     */
+    static byte[] encode(@NonNull DashboardSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(body);
+        
+        out.writeLong(snapshot.savedAt);
+        out.writeInt(snapshot.totalRooms);
+        out.writeInt(snapshot.activeRooms);
+        out.writeInt(snapshot.totalDevices);
+        out.writeInt(snapshot.connectedDevices);
+        out.writeInt(snapshot.activeDevices);
+        out.writeInt(snapshot.alertsCount);
+        out.writeFloat(snapshot.avgTemperature);
+        
+        out.writeInt(snapshot.rooms.size());
+        for (Room room : snapshot.rooms) {
+            writeString(out, room.getId());
+            writeString(out, room.getName());
+            writeString(out, room.getType() != null ? room.getType().name() : null);
+            out.writeFloat(room.getPositionX());
+            out.writeFloat(room.getPositionY());
+            out.writeFloat(room.getWidth());
+            out.writeFloat(room.getHeight());
+            out.writeFloat(room.getTemperature());
+            out.writeFloat(room.getHumidity());
+            out.writeInt(room.getLightLevel());
+            out.writeInt(room.getActiveDevices());
+            out.writeInt(room.getFloor());
+        }
+        
+        out.writeInt(snapshot.devices.size());
+        for (Device device : snapshot.devices) {
+            writeString(out, device.getId());
+            writeString(out, device.getName());
+            writeString(out, device.getType() != null ? device.getType().name() : null);
+            writeString(out, device.getRoomId());
+            out.writeBoolean(device.isEnabled());
+            out.writeBoolean(device.isConnected());
+            out.writeFloat(device.getMinValue());
+            out.writeFloat(device.getMaxValue());
+            out.writeFloat(device.getCurrentValue());
+            out.writeInt(device.getBatteryLevel());
+            out.writeInt(device.getSignalStrength());
+        }
+        out.flush();
+        
+        ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE + body.size());
+        result.putInt(MAGIC);
+        result.putInt(VERSION);
+        result.putInt(body.size());
+        result.put(body.toByteArray());
+        return result.array();
+    }
+    
+    /**
+     * Decodifica un snapshot; cualquier inconsistencia descarta el snapshot completo
+     */
+    @Nullable
+    static DashboardSnapshot decode(@NonNull ByteBuffer buffer) {
+        try {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            if (buffer.getInt() != buffer.remaining()) {
+                return null;
+            }
+            
+            long savedAt = buffer.getLong();
+            int totalRooms = buffer.getInt();
+            int activeRooms = buffer.getInt();
+            int totalDevices = buffer.getInt();
+            int connectedDevices = buffer.getInt();
+            int activeDevices = buffer.getInt();
+            int alertsCount = buffer.getInt();
+            float avgTemperature = buffer.getFloat();
+            
+            int roomCount = readCount(buffer);
+            List<Room> rooms = new ArrayList<>(roomCount);
+            for (int i = 0; i < roomCount; i++) {
+                String id = readString(buffer);
+                String name = readString(buffer);
+                String type = readString(buffer);
+                Room room = new Room(id, name, type != null ? RoomType.valueOf(type) : null,
+                    buffer.getFloat(), buffer.getFloat(), buffer.getFloat(), buffer.getFloat());
+                room.setTemperature(buffer.getFloat());
+                room.setHumidity(buffer.getFloat());
+                room.setLightLevel(buffer.getInt());
+                room.setActiveDevices(buffer.getInt());
+                room.setFloor(buffer.getInt());
+                rooms.add(room);
+            }
+            
+            int deviceCount = readCount(buffer);
+            List<Device> devices = new ArrayList<>(deviceCount);
+            for (int i = 0; i < deviceCount; i++) {
+                String id = readString(buffer);
+                String name = readString(buffer);
+                String type = readString(buffer);
+                String roomId = readString(buffer);
+                Device device = new Device(id, name, type != null ? DeviceType.valueOf(type) : null, roomId);
+                device.setEnabled(buffer.get() != 0);
+                device.setConnected(buffer.get() != 0);
+                device.setMinValue(buffer.getFloat());
+                device.setMaxValue(buffer.getFloat());
+                device.setCurrentValue(buffer.getFloat());
+                device.setBatteryLevel(buffer.getInt());
+                device.setSignalStrength(buffer.getInt());
+                devices.add(device);
+            }
+            
+            if (buffer.hasRemaining()) {
+                return null;
+            }
+            return new DashboardSnapshot(rooms, devices, totalRooms, activeRooms, totalDevices,
+                connectedDevices, activeDevices, alertsCount, avgTemperature, savedAt);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Archivo truncado o enum que ya no existe en esta versión de la app
+            return null;
+        }
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static int readCount(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        // Cada elemento ocupa al menos un byte: evita reservar listas enormes con un archivo corrupto
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IllegalArgumentException("Conteo inválido: " + count);
+        }
+        return count;
+    }
+}
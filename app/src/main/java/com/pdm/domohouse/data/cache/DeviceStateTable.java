@@ -0,0 +1,187 @@
+package com.pdm.domohouse.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla del estado en tiempo real de los dispositivos sobre arreglos primitivos
+ * Cada dispositivo recibe un índice fijo y su estado vive en arreglos paralelos
+ * (encendido, intensidad, temperatura y timestamp) que se actualizan en sitio:
+ * una actualización de un dispositivo ya conocido no reserva memoria
+ *
+ * La temperatura ausente se guarda como NaN. Los índices liberados se reutilizan
+ */
+public class DeviceStateTable {
+    
+    // Valor devuelto por getTimestamp cuando el dispositivo no está en la tabla
+    public static final long NOT_FOUND = -1;
+    
+    private static final int INITIAL_CAPACITY = 32;
+    
+    /**
+     * Recibe una fila de la tabla; se invoca bajo el lock, no debe bloquear
+     */
+    public interface RowReader<R> {
+        R read(boolean isOn, int intensity, float temperature, long timestamp);
+    }
+    
+    private final Object lock = new Object();
+    private final Map<String, Integer> slots = new HashMap<>();
+    
+    private String[] deviceIds;
+    private boolean[] on;
+    private int[] intensity;
+    private float[] temperature;
+    private long[] timestamp;
+    
+    // Pila de índices liberados y siguiente índice nunca usado
+    private int[] freeSlots;
+    private int freeCount;
+    private int nextSlot;
+    
+    public DeviceStateTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+    
+    /**
+     * Escribe el estado de un dispositivo en su fila
+     * @param temperature Temperatura, o NaN si el dispositivo no la reporta
+     */
+    public void update(@NonNull String deviceId, boolean isOn, int intensity, float temperature, long timestamp) {
+        synchronized (lock) {
+            int slot = slotFor(deviceId);
+            this.on[slot] = isOn;
+            this.intensity[slot] = intensity;
+            this.temperature[slot] = temperature;
+            this.timestamp[slot] = timestamp;
+        }
+    }
+    
+    /**
+     * Lee la fila de un dispositivo
+     * @return Lo que devuelva el reader, o null si el dispositivo no está en la tabla
+     */
+    public <R> R read(@NonNull String deviceId, @NonNull RowReader<R> reader) {
+        synchronized (lock) {
+            Integer slot = slots.get(deviceId);
+            if (slot == null) {
+                return null;
+            }
+            int i = slot;
+            return reader.read(on[i], intensity[i], temperature[i], timestamp[i]);
+        }
+    }
+    
+    /**
+     * Timestamp de la última actualización, o NOT_FOUND
+     */
+    public long getTimestamp(@NonNull String deviceId) {
+        synchronized (lock) {
+            Integer slot = slots.get(deviceId);
+            return slot != null ? timestamp[slot] : NOT_FOUND;
+        }
+    }
+    
+    /**
+     * Elimina la fila de un dispositivo
+     */
+    public boolean remove(@NonNull String deviceId) {
+        synchronized (lock) {
+            Integer slot = slots.remove(deviceId);
+            if (slot == null) {
+                return false;
+            }
+            release(slot);
+            return true;
+        }
+    }
+    
+    /**
+     * Elimina la fila solo si no se actualizó después del timestamp indicado
+     * Evita borrar un estado renovado entre la lectura del plazo y el borrado
+     */
+    public boolean removeIfNotUpdatedSince(@NonNull String deviceId, long expectedTimestamp) {
+        synchronized (lock) {
+            Integer slot = slots.get(deviceId);
+            if (slot == null || timestamp[slot] != expectedTimestamp) {
+                return false;
+            }
+            slots.remove(deviceId);
+            release(slot);
+            return true;
+        }
+    }
+    
+    /**
+     * Vacía la tabla y vuelve a la capacidad inicial
+     */
+    public void clear() {
+        synchronized (lock) {
+            slots.clear();
+            allocate(INITIAL_CAPACITY);
+        }
+    }
+    
+    public int size() {
+        synchronized (lock) {
+            return slots.size();
+        }
+    }
+    
+    /**
+     * Bytes retenidos por los arreglos, el índice y los ids
+     */
+    public long retainedBytes() {
+        synchronized (lock) {
+            return CacheWeigher.weigh(this);
+        }
+    }
+    
+    private int slotFor(String deviceId) {
+        Integer existing = slots.get(deviceId);
+        if (existing != null) {
+            return existing;
+        }
+        
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = nextSlot++;
+            if (slot == deviceIds.length) {
+                grow(deviceIds.length * 2);
+            }
+        }
+        slots.put(deviceId, slot);
+        deviceIds[slot] = deviceId;
+        return slot;
+    }
+    
+    private void release(int slot) {
+        deviceIds[slot] = null;
+        freeSlots[freeCount++] = slot;
+    }
+    
+    private void allocate(int capacity) {
+        deviceIds = new String[capacity];
+        on = new boolean[capacity];
+        intensity = new int[capacity];
+        temperature = new float[capacity];
+        timestamp = new long[capacity];
+        freeSlots = new int[capacity];
+        freeCount = 0;
+        nextSlot = 0;
+    }
+    
+    private void grow(int capacity) {
+        deviceIds = Arrays.copyOf(deviceIds, capacity);
+        on = Arrays.copyOf(on, capacity);
+        intensity = Arrays.copyOf(intensity, capacity);
+        temperature = Arrays.copyOf(temperature, capacity);
+        timestamp = Arrays.copyOf(timestamp, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+}
@@ -0,0 +1,160 @@
+package com.pdm.domohouse.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola de expiración basada en un min-heap de plazos
+ * El temporizador duerme hasta el plazo más cercano y solo procesa las claves vencidas;
+ * si no hay claves pendientes no queda ninguna tarea programada
+ *
+ * Cada clave tiene como máximo un nodo en el heap. Al vencer, el Handler consulta el
+ * plazo real de la entrada: si se renovó mientras tanto se reprograma, así las
+ * renovaciones frecuentes (accesos, lecturas de sensores) no tocan el heap
+ */
+public class ExpiryQueue {
+    
+    // Valor que devuelve el Handler cuando la entrada ya fue eliminada
+    public static final long EXPIRED = -1;
+    
+    // Los plazos se redondean al segundo para agrupar vencimientos cercanos en un solo despertar
+    private static final long TIMER_SLACK_MS = 1000;
+    
+    /**
+     * Decide qué hacer con una clave cuyo plazo venció
+     */
+    public interface Handler {
+        /**
+         * @return Nuevo plazo si la entrada sigue viva, o EXPIRED si se eliminó
+         */
+        long onDue(@NonNull String key, long now);
+    }
+    
+    private final ScheduledExecutorService timer;
+    private final Handler handler;
+    
+    private final PriorityQueue<Node> heap = new PriorityQueue<>();
+    private final Map<String, Node> nodes = new HashMap<>();
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAt = Long.MAX_VALUE;
+    
+    public ExpiryQueue(@NonNull ScheduledExecutorService timer, @NonNull Handler handler) {
+        this.timer = timer;
+        this.handler = handler;
+    }
+    
+    /**
+     * Empieza a vigilar una clave; si ya estaba vigilada conserva su plazo actual
+     */
+    public synchronized void track(@NonNull String key, long deadline) {
+        if (nodes.containsKey(key)) {
+            return;
+        }
+        Node node = new Node(key, deadline);
+        nodes.put(key, node);
+        heap.add(node);
+        armFor(deadline);
+    }
+    
+    /**
+     * Olvida todas las claves y cancela el despertar pendiente
+     */
+    public synchronized void clear() {
+        heap.clear();
+        nodes.clear();
+        cancelWakeup();
+    }
+    
+    /**
+     * Número de claves vigiladas
+     */
+    public synchronized int size() {
+        return nodes.size();
+    }
+    
+    /**
+     * Indica si hay un despertar programado del temporizador
+     */
+    public synchronized boolean hasPendingWakeup() {
+        return wakeup != null;
+    }
+    
+    private void drain() {
+        List<Node> due = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            wakeup = null;
+            wakeupAt = Long.MAX_VALUE;
+            while (!heap.isEmpty() && heap.peek().deadline <= now) {
+                Node node = heap.poll();
+                nodes.remove(node.key);
+                due.add(node);
+            }
+        }
+        
+        // El Handler se ejecuta fuera del lock: puede tocar los mapas del cache
+        for (Node node : due) {
+            long next = handler.onDue(node.key, now);
+            if (next != EXPIRED) {
+                track(node.key, Math.max(next, now + 1));
+            }
+        }
+        
+        synchronized (this) {
+            if (!heap.isEmpty()) {
+                armFor(heap.peek().deadline);
+            }
+        }
+    }
+    
+    private void armFor(long deadline) {
+        long fireAt = roundUp(deadline);
+        if (fireAt >= wakeupAt) {
+            return;
+        }
+        cancelWakeup();
+        try {
+            long delay = Math.max(0, fireAt - System.currentTimeMillis());
+            wakeup = timer.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+            wakeupAt = fireAt;
+        } catch (RejectedExecutionException e) {
+            // Temporizador detenido: las entradas expiran de forma perezosa al leerse
+        }
+    }
+    
+    private void cancelWakeup() {
+        if (wakeup != null) {
+            wakeup.cancel(false);
+            wakeup = null;
+        }
+        wakeupAt = Long.MAX_VALUE;
+    }
+    
+    private static long roundUp(long deadline) {
+        return ((deadline + TIMER_SLACK_MS - 1) / TIMER_SLACK_MS) * TIMER_SLACK_MS;
+    }
+    
+    private static final class Node implements Comparable<Node> {
+        final String key;
+        final long deadline;
+        
+        Node(String key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+        
+        @Override
+        public int compareTo(Node other) {
+            return Long.compare(deadline, other.deadline);
+        }
+    }
+}
@@ -1,28 +1,53 @@
 package com.pdm.domohouse.data.cache;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.util.Log;
 import android.util.LruCache;
 
 import androidx.annotation.NonNull;
 
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.metrics.MetricsRegistry;
 import com.pdm.domohouse.data.model.Device;
 import com.pdm.domohouse.data.model.Room;
 import com.pdm.domohouse.data.model.UserPreferences;
 import com.pdm.domohouse.data.model.UserProfile;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
 
 /**
  * Sistema de cache inteligente para optimizar rendimiento y reducir consultas
  * Implementa múltiples estrategias de cache con gestión automática de memoria
+ * 
+ * Es el nivel L1 (memoria) del cache de la aplicación; Room es el nivel L2.
+ * DeviceCache guarda aquí sus entidades y todas las invalidaciones llegan
+ * por CacheInvalidationBus, de modo que no hay copias paralelas de los mismos datos
+ * 
+ * Todas las entradas se pesan en bytes retenidos reales con CacheWeigher al guardarse,
+ * y la suma de los presupuestos de los LruCache no supera MAX_MEMORY_CACHE_SIZE.
+ * Las listas se guardan como instantáneas inmutables que se comparten sin copiar
+ * 
+ * Cada entrada lleva su CacheStrategy (TTL propio). Las lecturas con Loader aplican
+ * refresh-ahead y stale-while-revalidate: una clave leída cerca de expirar se recarga
+ * en segundo plano y, si ya expiró, el lector recibe el valor viejo mientras corre
+ * una única recarga; solo un fallo en frío bloquea al lector, y los fallos en frío
+ * concurrentes de una misma clave comparten una sola carga (SingleFlight)
+ * 
+ * El presupuesto se ajusta a la clase de memoria del dispositivo y el cache se reduce
+ * con onTrimMemory: primero se sueltan listas y modelos derivados, y las entidades
+ * que alimentan el dashboard solo se recortan bajo presión severa
  */
 public class IntelligentCacheManager {
     
@@ -30,40 +55,103 @@ public class IntelligentCacheManager {
     
     // Configuración de cache
     private static final int MAX_MEMORY_CACHE_SIZE = 1024 * 1024 * 4; // 4MB
+    private static final int MIN_MEMORY_CACHE_SIZE = 1024 * 1024; // 1MB en dispositivos de poca RAM
+    private static final int MEMORY_CLASS_DIVISOR = 32; // Como máximo 1/32 del heap de la app
+    private static final int LRU_CACHE_COUNT = 8; // Caches que comparten el presupuesto
     private static final long DEFAULT_CACHE_VALIDITY_MS = 15 * 60 * 1000; // 15 minutos
     private static final long DEVICE_STATE_CACHE_VALIDITY_MS = 5 * 60 * 1000; // 5 minutos para estados
     private static final long USER_DATA_CACHE_VALIDITY_MS = 60 * 60 * 1000; // 1 hora para datos de usuario
-    private static final long CLEANUP_INTERVAL_MS = 5 * 60 * 1000; // Cleanup cada 5 minutos
+    private static final long VOLATILE_CACHE_VALIDITY_MS = 60 * 1000; // 1 minuto para datos volátiles
+    private static final long ACCESS_RETENTION_MS = 24 * 60 * 60 * 1000; // Tiempos de acceso se olvidan tras 24 horas
     
     private static IntelligentCacheManager instance;
     private final Context context;
     
     // Caches especializados
-    private final LruCache<String, CacheEntry<UserProfile>> userProfileCache;
-    private final LruCache<String, CacheEntry<UserPreferences>> userPreferencesCache;
-    private final LruCache<String, CacheEntry<List<Device>>> deviceListCache;
-    private final LruCache<String, CacheEntry<Device>> deviceCache;
-    private final LruCache<String, CacheEntry<List<Room>>> roomListCache;
-    private final LruCache<String, CacheEntry<Room>> roomCache;
-    
-    // Cache de estado en tiempo real
-    private final Map<String, DeviceStateEntry> deviceStateCache;
+    private final WeighedCache<UserProfile> userProfileCache;
+    private final WeighedCache<UserPreferences> userPreferencesCache;
+    private final WeighedCache<List<Device>> deviceListCache;
+    private final WeighedCache<Device> deviceCache;
+    private final WeighedCache<List<Room>> roomListCache;
+    private final WeighedCache<Room> roomCache;
+    
+    // Entidades de Room usadas por DeviceCache
+    private final WeighedCache<DeviceEntity> deviceEntityCache;
+    private final WeighedCache<RoomEntity> roomEntityCache;
+    
+    // Estado en tiempo real en arreglos primitivos: actualizar no reserva memoria
+    private final DeviceStateTable deviceStateTable;
     private final Map<String, Long> lastAccessTimes;
     
     // Estadísticas de cache
     private final CacheStats stats;
     
-    // Scheduler para limpieza automática
-    private final ScheduledExecutorService cleanupScheduler;
+    // Expiración por plazos sobre el planificador compartido: solo despierta cuando vence una entrada
+    private final ExpiryQueue deviceStateExpiry;
+    private final ExpiryQueue lastAccessExpiry;
+    
+    // Causa de las expulsiones que hace el hilo actual al vaciar o recortar un cache
+    private static final ThreadLocal<MetricsRegistry.EvictionCause> removalCause = new ThreadLocal<>();
+    
+    // Bus de invalidación compartido
+    private final CacheInvalidationBus invalidationBus;
+    
+    // Recargas en segundo plano sobre diskIO: una sola en vuelo por clave
+    private final Executor refreshExecutor;
+    private final Set<String> refreshesInFlight = ConcurrentHashMap.newKeySet();
+    
+    // Fallos en frío concurrentes de la misma clave comparten una sola carga
+    private final SingleFlight<String, Object> coldLoads = new SingleFlight<>();
+    
+    // Sellos de invalidación por clave y por cache: una carga iniciada antes del último sello
+    // de su clave no debe resucitar datos invalidados, pero las invalidaciones de otras claves
+    // no la afectan. Las claves son IDs de usuario, dispositivo o habitación, así que el mapa
+    // queda acotado por el número de entidades
+    private final Object invalidationLock = new Object();
+    private long invalidationClock = 0;
+    private long allInvalidatedAt = 0;
+    private final Map<String, Long> cacheInvalidatedAt = new HashMap<>();
+    private final Map<String, Long> keyInvalidatedAt = new HashMap<>();
+    
+    /**
+     * Carga un valor desde la fuente de verdad (Room o Firebase) cuando el cache no lo tiene
+     */
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
     
     /**
      * Configuración de cache por tipo de dato
      */
     public enum CacheStrategy {
-        MEMORY_ONLY,        // Solo en memoria
-        PERSISTENT,         // Cache persistente
-        VOLATILE,           // Cache volátil (se limpia frecuentemente)
-        REALTIME            // Cache en tiempo real (alta frecuencia de actualización)
+        MEMORY_ONLY(DEFAULT_CACHE_VALIDITY_MS),         // Solo en memoria
+        PERSISTENT(USER_DATA_CACHE_VALIDITY_MS),        // Cache persistente
+        VOLATILE(VOLATILE_CACHE_VALIDITY_MS),           // Cache volátil (se limpia frecuentemente)
+        REALTIME(DEVICE_STATE_CACHE_VALIDITY_MS);       // Cache en tiempo real (alta frecuencia de actualización)
+        
+        private final long ttlMs;
+        
+        CacheStrategy(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+        
+        public long getTtlMs() {
+            return ttlMs;
+        }
+        
+        /**
+         * Edad a partir de la cual una lectura dispara la recarga anticipada (75% del TTL)
+         */
+        public long getRefreshAfterMs() {
+            return ttlMs - ttlMs / 4;
+        }
+        
+        /**
+         * Tiempo tras expirar durante el que aún se sirve el valor viejo mientras se recarga
+         */
+        public long getStaleGraceMs() {
+            return ttlMs;
+        }
     }
     
     /**
@@ -72,61 +160,134 @@ public class IntelligentCacheManager {
     private IntelligentCacheManager(Context context) {
         this.context = context.getApplicationContext();
         
-        // Inicializar caches con tamaños calculados
-        int cacheSize = MAX_MEMORY_CACHE_SIZE / 6; // Dividir memoria entre los caches
+        // Inicializar caches con presupuesto en bytes; la suma no excede MAX_MEMORY_CACHE_SIZE
+        int cacheSize = computeMemoryBudget(this.context) / LRU_CACHE_COUNT;
+        
+        this.userProfileCache = new WeighedCache<>("userProfile", cacheSize);
+        this.userPreferencesCache = new WeighedCache<>("userPreferences", cacheSize);
+        this.deviceListCache = new WeighedCache<>("deviceList", cacheSize);
+        this.deviceCache = new WeighedCache<>("device", cacheSize);
+        this.roomListCache = new WeighedCache<>("roomList", cacheSize);
+        this.roomCache = new WeighedCache<>("room", cacheSize);
+        this.deviceEntityCache = new WeighedCache<>("deviceEntity", cacheSize);
+        this.roomEntityCache = new WeighedCache<>("roomEntity", cacheSize);
+        
+        // Cache de estado en tiempo real
+        this.deviceStateTable = new DeviceStateTable();
+        this.lastAccessTimes = new ConcurrentHashMap<>();
+        
+        // Estadísticas
+        this.stats = new CacheStats();
+        
+        // Expiración dirigida por plazos en lugar de un barrido periódico
+        AppExecutors executors = AppExecutors.getInstance();
+        this.deviceStateExpiry = new ExpiryQueue(executors.scheduler(), this::onDeviceStateDue);
+        this.lastAccessExpiry = new ExpiryQueue(executors.scheduler(), this::onLastAccessDue);
+        
+        // Recargas anticipadas en segundo plano (los loaders leen de Room)
+        this.refreshExecutor = executors.diskIO();
         
-        this.userProfileCache = new LruCache<String, CacheEntry<UserProfile>>(cacheSize) {
+        // Escuchar invalidaciones de repositorios y sincronización
+        this.invalidationBus = CacheInvalidationBus.getInstance();
+        invalidationBus.register(this::onInvalidated);
+        
+        // Reducir el cache cuando el sistema lo pida
+        this.context.registerComponentCallbacks(new ComponentCallbacks2() {
             @Override
-            protected int sizeOf(String key, CacheEntry<UserProfile> entry) {
-                return estimateUserProfileSize(entry.getData());
+            public void onTrimMemory(int level) {
+                trimMemory(level);
             }
             
             @Override
-            protected void entryRemoved(boolean evicted, String key, 
-                    CacheEntry<UserProfile> oldValue, CacheEntry<UserProfile> newValue) {
-                if (evicted) {
-                    Log.d(TAG, "Perfil de usuario evicted del cache: " + key);
-                    stats.incrementEvictions();
-                }
+            public void onLowMemory() {
+                trimMemory(TRIM_MEMORY_COMPLETE);
             }
-        };
-        
-        this.userPreferencesCache = new LruCache<String, CacheEntry<UserPreferences>>(cacheSize) {
+            
             @Override
-            protected int sizeOf(String key, CacheEntry<UserPreferences> entry) {
-                return estimateUserPreferencesSize(entry.getData());
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
             }
-        };
+        });
         
-        this.deviceListCache = new LruCache<String, CacheEntry<List<Device>>>(cacheSize) {
-            @Override
-            protected int sizeOf(String key, CacheEntry<List<Device>> entry) {
-                return estimateDeviceListSize(entry.getData());
-            }
-        };
+        Log.d(TAG, "Cache inteligente inicializado con " + (cacheSize * LRU_CACHE_COUNT / 1024) + "KB de memoria");
+    }
+    
+    /**
+     * Presupuesto total según la memoria disponible para la app
+     * Un dispositivo de poca RAM recibe la mitad; nunca se supera MAX_MEMORY_CACHE_SIZE
+     */
+    private static int computeMemoryBudget(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null) {
+            return MAX_MEMORY_CACHE_SIZE;
+        }
+        long budget = (long) activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+        if (activityManager.isLowRamDevice()) {
+            budget /= 2;
+        }
+        return (int) Math.max(MIN_MEMORY_CACHE_SIZE, Math.min(MAX_MEMORY_CACHE_SIZE, budget));
+    }
+    
+    /**
+     * LruCache cuyo tamaño se mide en bytes retenidos, con sus propias métricas
+     * El peso se calcula una sola vez al crear la entrada, así LruCache ve siempre el mismo valor
+     */
+    private final class WeighedCache<T> extends LruCache<String, CacheEntry<T>> {
+        final String name;
+        final MetricsRegistry.CacheMetrics metrics;
         
-        this.deviceCache = new LruCache<String, CacheEntry<Device>>(cacheSize) {
-            @Override
-            protected int sizeOf(String key, CacheEntry<Device> entry) {
-                return estimateDeviceSize(entry.getData());
-            }
-        };
+        WeighedCache(String name, int maxBytes) {
+            super(maxBytes);
+            this.name = name;
+            this.metrics = MetricsRegistry.getInstance().cache("IntelligentCacheManager." + name);
+            metrics.bindSize(this::size, maxBytes);
+        }
         
-        this.roomListCache = new LruCache<String, CacheEntry<List<Room>>>(cacheSize);
-        this.roomCache = new LruCache<String, CacheEntry<Room>>(cacheSize);
+        /**
+         * Vacía el cache por una invalidación
+         */
+        void invalidateAll() {
+            trimTo(-1, MetricsRegistry.EvictionCause.INVALIDATED);
+        }
         
-        // Cache de estado en tiempo real
-        this.deviceStateCache = new ConcurrentHashMap<>();
-        this.lastAccessTimes = new ConcurrentHashMap<>();
+        /**
+         * Reduce el cache a una fracción de su tamaño actual por presión de memoria
+         */
+        void trimToFraction(float fraction) {
+            trimTo(fraction <= 0 ? -1 : (int) (size() * fraction), MetricsRegistry.EvictionCause.TRIMMED);
+        }
         
-        // Estadísticas
-        this.stats = new CacheStats();
+        private void trimTo(int maxBytes, MetricsRegistry.EvictionCause cause) {
+            removalCause.set(cause);
+            try {
+                trimToSize(maxBytes);
+            } finally {
+                removalCause.remove();
+            }
+        }
         
-        // Scheduler para limpieza
-        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
-        startCleanupScheduler();
+        @Override
+        protected int sizeOf(String key, CacheEntry<T> entry) {
+            return entry.getWeight();
+        }
         
-        Log.d(TAG, "Cache inteligente inicializado con " + (MAX_MEMORY_CACHE_SIZE / 1024) + "KB de memoria");
+        @Override
+        protected void entryRemoved(boolean evicted, String key, 
+                CacheEntry<T> oldValue, CacheEntry<T> newValue) {
+            MetricsRegistry.EvictionCause cause = removalCause.get();
+            if (evicted && cause != null) {
+                // Vaciado o recorte explícito, no expulsión por presupuesto
+                metrics.recordEviction(cause);
+            } else if (evicted) {
+                Log.d(TAG, "Entrada evicted del cache: " + key);
+                stats.incrementEvictions();
+                metrics.recordEviction(MetricsRegistry.EvictionCause.SIZE);
+            } else if (newValue == null) {
+                // Borrado explícito: al leer una entrada vencida o por invalidación
+                metrics.recordEviction(oldValue.isExpired()
+                    ? MetricsRegistry.EvictionCause.EXPIRED
+                    : MetricsRegistry.EvictionCause.INVALIDATED);
+            }
+        }
     }
     
     /**
@@ -142,10 +303,10 @@ public class IntelligentCacheManager {
     // Métodos para UserProfile
     
     public void putUserProfile(@NonNull String userId, @NonNull UserProfile profile) {
-        CacheEntry<UserProfile> entry = new CacheEntry<>(profile, USER_DATA_CACHE_VALIDITY_MS);
+        CacheEntry<UserProfile> entry = new CacheEntry<>(userId, profile, CacheStrategy.PERSISTENT);
         userProfileCache.put(userId, entry);
         updateLastAccess(userId);
-        stats.incrementWrites();
+        recordWrite(userProfileCache);
         Log.d(TAG, "Perfil de usuario cacheado: " + userId);
     }
     
@@ -155,7 +316,7 @@ public class IntelligentCacheManager {
         
         if (entry != null) {
             if (!entry.isExpired()) {
-                stats.incrementHits();
+                recordHit(userProfileCache);
                 Log.d(TAG, "Cache hit para perfil de usuario: " + userId);
                 return entry.getData();
             } else {
@@ -165,17 +326,17 @@ public class IntelligentCacheManager {
             }
         }
         
-        stats.incrementMisses();
+        recordMiss(userProfileCache);
         return null;
     }
     
     // Métodos para UserPreferences
     
     public void putUserPreferences(@NonNull String userId, @NonNull UserPreferences preferences) {
-        CacheEntry<UserPreferences> entry = new CacheEntry<>(preferences, USER_DATA_CACHE_VALIDITY_MS);
+        CacheEntry<UserPreferences> entry = new CacheEntry<>(userId, preferences, CacheStrategy.PERSISTENT);
         userPreferencesCache.put(userId, entry);
         updateLastAccess(userId);
-        stats.incrementWrites();
+        recordWrite(userPreferencesCache);
         Log.d(TAG, "Preferencias de usuario cacheadas: " + userId);
     }
     
@@ -184,48 +345,70 @@ public class IntelligentCacheManager {
         CacheEntry<UserPreferences> entry = userPreferencesCache.get(userId);
         
         if (entry != null && !entry.isExpired()) {
-            stats.incrementHits();
+            recordHit(userPreferencesCache);
             return entry.getData();
         } else if (entry != null) {
             userPreferencesCache.remove(userId);
             stats.incrementExpired();
         }
         
-        stats.incrementMisses();
+        recordMiss(userPreferencesCache);
         return null;
     }
     
     // Métodos para Devices
     
     public void putDeviceList(@NonNull String cacheKey, @NonNull List<Device> devices) {
-        CacheEntry<List<Device>> entry = new CacheEntry<>(new ArrayList<>(devices), DEFAULT_CACHE_VALIDITY_MS);
+        putDeviceList(cacheKey, devices, CacheStrategy.MEMORY_ONLY);
+    }
+    
+    /**
+     * Guarda una lista de dispositivos con el TTL de la estrategia indicada
+     */
+    public void putDeviceList(@NonNull String cacheKey, @NonNull List<Device> devices, 
+            @NonNull CacheStrategy strategy) {
+        CacheEntry<List<Device>> entry = new CacheEntry<>(cacheKey, snapshotOf(devices), strategy);
         deviceListCache.put(cacheKey, entry);
         updateLastAccess(cacheKey);
-        stats.incrementWrites();
+        recordWrite(deviceListCache);
         Log.d(TAG, "Lista de dispositivos cacheada: " + cacheKey + " (" + devices.size() + " dispositivos)");
     }
     
+    /**
+     * Devuelve la instancia inmutable compartida; no se copia en cada lectura
+     */
     public List<Device> getDeviceList(@NonNull String cacheKey) {
         updateLastAccess(cacheKey);
         CacheEntry<List<Device>> entry = deviceListCache.get(cacheKey);
         
         if (entry != null && !entry.isExpired()) {
-            stats.incrementHits();
-            return new ArrayList<>(entry.getData());
+            recordHit(deviceListCache);
+            return entry.getData();
         } else if (entry != null) {
             deviceListCache.remove(cacheKey);
             stats.incrementExpired();
         }
         
-        stats.incrementMisses();
+        recordMiss(deviceListCache);
         return null;
     }
     
+    /**
+     * Lee una lista de dispositivos con refresh-ahead y stale-while-revalidate
+     * Solo bloquea si la clave no está en cache o su valor viejo ya no puede servirse
+     */
+    public List<Device> getDeviceList(@NonNull String cacheKey, @NonNull CacheStrategy strategy,
+            @NonNull Loader<List<Device>> loader) {
+        updateLastAccess(cacheKey);
+        return readThrough(deviceListCache, "deviceList", cacheKey, strategy,
+            () -> snapshotOf(loader.load()));
+    }
+    
     public void putDevice(@NonNull String deviceId, @NonNull Device device) {
-        CacheEntry<Device> entry = new CacheEntry<>(device, DEFAULT_CACHE_VALIDITY_MS);
+        CacheEntry<Device> entry = new CacheEntry<>(deviceId, device, CacheStrategy.MEMORY_ONLY);
         deviceCache.put(deviceId, entry);
         updateLastAccess(deviceId);
-        stats.incrementWrites();
+        recordWrite(deviceCache);
         
         // También actualizar cache de estado en tiempo real
         updateDeviceState(deviceId, device.isOn(), (int)device.getIntensity(), device.getTemperature());
@@ -236,11 +419,11 @@ public class IntelligentCacheManager {
         CacheEntry<Device> entry = deviceCache.get(deviceId);
         
         if (entry != null && !entry.isExpired()) {
-            stats.incrementHits();
+            recordHit(deviceCache);
             
             // Fusionar con estado en tiempo real si existe
             Device cachedDevice = entry.getData();
-            DeviceStateEntry stateEntry = deviceStateCache.get(deviceId);
+            DeviceStateEntry stateEntry = deviceStateTable.read(deviceId, DeviceStateEntry::new);
             if (stateEntry != null && !stateEntry.isExpired()) {
                 cachedDevice.setOn(stateEntry.isOn);
                 cachedDevice.setIntensity(stateEntry.intensity);
@@ -256,16 +439,25 @@ public class IntelligentCacheManager {
             stats.incrementExpired();
         }
         
-        stats.incrementMisses();
+        recordMiss(deviceCache);
         return null;
     }
     
     // Métodos para estado de dispositivos en tiempo real
     
     public void updateDeviceState(@NonNull String deviceId, boolean isOn, int intensity, Float temperature) {
-        DeviceStateEntry stateEntry = new DeviceStateEntry(isOn, intensity, temperature);
-        deviceStateCache.put(deviceId, stateEntry);
-        updateLastAccess(deviceId);
+        updateDeviceState(deviceId, isOn, intensity, temperature != null ? temperature : Float.NaN);
+    }
+    
+    /**
+     * Actualiza el estado en tiempo real sin reservar memoria para dispositivos ya conocidos
+     * Se llama en cada lectura de sensor, por eso no registra acceso ni escribe en el log
+     * @param temperature Temperatura, o NaN si el dispositivo no la reporta
+     */
+    public void updateDeviceState(@NonNull String deviceId, boolean isOn, int intensity, float temperature) {
+        long now = System.currentTimeMillis();
+        deviceStateTable.update(deviceId, isOn, intensity, temperature, now);
+        deviceStateExpiry.track(deviceId, now + CacheStrategy.REALTIME.getTtlMs());
         
         // También actualizar el device cache si existe
         CacheEntry<Device> deviceEntry = deviceCache.get(deviceId);
@@ -273,23 +465,24 @@ public class IntelligentCacheManager {
             Device device = deviceEntry.getData();
             device.setOn(isOn);
             device.setIntensity(intensity);
-            if (temperature != null) {
+            if (!Float.isNaN(temperature)) {
                 device.setTemperature(temperature);
             }
-            device.setLastStateChange(System.currentTimeMillis());
+            device.setLastStateChange(now);
         }
-        
-        Log.d(TAG, "Estado de dispositivo actualizado en cache: " + deviceId);
     }
     
+    /**
+     * Copia del estado en tiempo real; el objeto se crea solo al leer
+     */
     public DeviceStateEntry getDeviceState(@NonNull String deviceId) {
         updateLastAccess(deviceId);
-        DeviceStateEntry entry = deviceStateCache.get(deviceId);
+        DeviceStateEntry entry = deviceStateTable.read(deviceId, DeviceStateEntry::new);
         
         if (entry != null && !entry.isExpired()) {
             return entry;
         } else if (entry != null) {
-            deviceStateCache.remove(deviceId);
+            deviceStateTable.removeIfNotUpdatedSince(deviceId, entry.timestamp);
         }
         
         return null;
@@ -298,34 +491,47 @@ public class IntelligentCacheManager {
     // Métodos para Rooms
     
     public void putRoomList(@NonNull String cacheKey, @NonNull List<Room> rooms) {
-        CacheEntry<List<Room>> entry = new CacheEntry<>(new ArrayList<>(rooms), DEFAULT_CACHE_VALIDITY_MS);
+        CacheEntry<List<Room>> entry = new CacheEntry<>(cacheKey, snapshotOf(rooms), CacheStrategy.MEMORY_ONLY);
         roomListCache.put(cacheKey, entry);
         updateLastAccess(cacheKey);
-        stats.incrementWrites();
+        recordWrite(roomListCache);
         Log.d(TAG, "Lista de habitaciones cacheada: " + cacheKey + " (" + rooms.size() + " habitaciones)");
     }
     
+    /**
+     * Devuelve la instancia inmutable compartida; no se copia en cada lectura
+     */
     public List<Room> getRoomList(@NonNull String cacheKey) {
         updateLastAccess(cacheKey);
         CacheEntry<List<Room>> entry = roomListCache.get(cacheKey);
         
         if (entry != null && !entry.isExpired()) {
-            stats.incrementHits();
-            return new ArrayList<>(entry.getData());
+            recordHit(roomListCache);
+            return entry.getData();
         } else if (entry != null) {
             roomListCache.remove(cacheKey);
             stats.incrementExpired();
         }
         
-        stats.incrementMisses();
+        recordMiss(roomListCache);
         return null;
     }
     
+    /**
+     * Lee una lista de habitaciones con refresh-ahead y stale-while-revalidate
+     */
+    public List<Room> getRoomList(@NonNull String cacheKey, @NonNull CacheStrategy strategy,
+            @NonNull Loader<List<Room>> loader) {
+        updateLastAccess(cacheKey);
+        return readThrough(roomListCache, "roomList", cacheKey, strategy,
+            () -> snapshotOf(loader.load()));
+    }
+    
     public void putRoom(@NonNull String roomId, @NonNull Room room) {
-        CacheEntry<Room> entry = new CacheEntry<>(room, DEFAULT_CACHE_VALIDITY_MS);
+        CacheEntry<Room> entry = new CacheEntry<>(roomId, room, CacheStrategy.MEMORY_ONLY);
         roomCache.put(roomId, entry);
         updateLastAccess(roomId);
-        stats.incrementWrites();
+        recordWrite(roomCache);
     }
     
     public Room getRoom(@NonNull String roomId) {
@@ -333,79 +539,395 @@ public class IntelligentCacheManager {
         CacheEntry<Room> entry = roomCache.get(roomId);
         
         if (entry != null && !entry.isExpired()) {
-            stats.incrementHits();
+            recordHit(roomCache);
             return entry.getData();
         } else if (entry != null) {
             roomCache.remove(roomId);
             stats.incrementExpired();
         }
         
-        stats.incrementMisses();
+        recordMiss(roomCache);
+        return null;
+    }
+    
+    // Métodos para entidades de Room (usados por DeviceCache)
+    
+    public void putDeviceEntity(@NonNull DeviceEntity device) {
+        CacheEntry<DeviceEntity> entry = new CacheEntry<>(device.getDeviceId(), device, CacheStrategy.MEMORY_ONLY);
+        deviceEntityCache.put(device.getDeviceId(), entry);
+        recordWrite(deviceEntityCache);
+    }
+    
+    public DeviceEntity getDeviceEntity(@NonNull String deviceId) {
+        CacheEntry<DeviceEntity> entry = deviceEntityCache.get(deviceId);
+        
+        if (entry != null && !entry.isExpired()) {
+            recordHit(deviceEntityCache);
+            return entry.getData();
+        } else if (entry != null) {
+            deviceEntityCache.remove(deviceId);
+            stats.incrementExpired();
+        }
+        
+        recordMiss(deviceEntityCache);
+        return null;
+    }
+    
+    /**
+     * Cuenta las entidades de dispositivo cacheadas que aún no expiraron
+     */
+    public int countValidDeviceEntities() {
+        int valid = 0;
+        for (CacheEntry<DeviceEntity> entry : deviceEntityCache.snapshot().values()) {
+            if (!entry.isExpired()) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+    
+    public void putRoomEntity(@NonNull RoomEntity room) {
+        CacheEntry<RoomEntity> entry = new CacheEntry<>(room.getRoomId(), room, CacheStrategy.MEMORY_ONLY);
+        roomEntityCache.put(room.getRoomId(), entry);
+        recordWrite(roomEntityCache);
+    }
+    
+    public RoomEntity getRoomEntity(@NonNull String roomId) {
+        CacheEntry<RoomEntity> entry = roomEntityCache.get(roomId);
+        
+        if (entry != null && !entry.isExpired()) {
+            recordHit(roomEntityCache);
+            return entry.getData();
+        } else if (entry != null) {
+            roomEntityCache.remove(roomId);
+            stats.incrementExpired();
+        }
+        
+        recordMiss(roomEntityCache);
         return null;
     }
     
+    /**
+     * Lee una habitación con refresh-ahead y stale-while-revalidate
+     */
+    public RoomEntity getRoomEntity(@NonNull String roomId, @NonNull Loader<RoomEntity> loader) {
+        return readThrough(roomEntityCache, "roomEntity", roomId, CacheStrategy.MEMORY_ONLY, loader);
+    }
+    
+    // Lectura con recarga anticipada
+    
+    /**
+     * Devuelve el valor cacheado y programa su recarga cuando se acerca a expirar
+     * Un valor expirado pero dentro del margen se sirve de inmediato mientras se revalida;
+     * solo un fallo en frío ejecuta el loader en el hilo del lector
+     */
+    private <T> T readThrough(WeighedCache<T> cache, String namespace, String key,
+            CacheStrategy strategy, Loader<T> loader) {
+        CacheEntry<T> entry = cache.get(key);
+        
+        if (entry != null && !entry.isExpired()) {
+            recordHit(cache);
+            if (entry.needsRefresh()) {
+                scheduleRefresh(cache, namespace, key, strategy, loader);
+            }
+            return entry.getData();
+        }
+        
+        if (entry != null && entry.isServable()) {
+            // Valor viejo: se entrega ya y se revalida en segundo plano
+            recordStaleHit(cache);
+            scheduleRefresh(cache, namespace, key, strategy, loader);
+            return entry.getData();
+        } else if (entry != null) {
+            cache.remove(key);
+            stats.incrementExpired();
+        }
+        
+        recordMiss(cache);
+        long generation = currentInvalidationStamp();
+        try {
+            // Si otra pantalla ya está cargando esta clave, se espera su resultado
+            @SuppressWarnings("unchecked")
+            T value = (T) coldLoads.execute(namespace + ":" + key,
+                () -> loadInto(cache, key, strategy, loader, generation));
+            return value;
+        } catch (Exception e) {
+            Log.e(TAG, "Error cargando entrada de cache: " + key, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Programa una recarga en segundo plano; como máximo una en vuelo por clave
+     */
+    private <T> void scheduleRefresh(WeighedCache<T> cache, String namespace, String key,
+            CacheStrategy strategy, Loader<T> loader) {
+        String flightKey = namespace + ":" + key;
+        if (!refreshesInFlight.add(flightKey)) {
+            return;
+        }
+        
+        long generation = currentInvalidationStamp();
+        refreshExecutor.execute(() -> {
+            try {
+                if (loadInto(cache, key, strategy, loader, generation) != null) {
+                    stats.incrementRefreshes();
+                }
+            } finally {
+                refreshesInFlight.remove(flightKey);
+            }
+        });
+    }
+    
+    /**
+     * Ejecuta el loader y guarda el resultado si su clave no se invalidó mientras cargaba
+     */
+    private <T> T loadInto(WeighedCache<T> cache, String key, CacheStrategy strategy,
+            Loader<T> loader, long generation) {
+        try {
+            long startNanos = System.nanoTime();
+            T value = loader.load();
+            cache.metrics.recordLoad(System.nanoTime() - startNanos);
+            if (value != null) {
+                // Comprobar y guardar bajo el mismo lock que sella las invalidaciones
+                synchronized (invalidationLock) {
+                    if (!invalidatedSince(cache, key, generation)) {
+                        cache.put(key, new CacheEntry<>(key, value, strategy));
+                        recordWrite(cache);
+                    }
+                }
+            }
+            return value;
+        } catch (Exception e) {
+            Log.e(TAG, "Error cargando entrada de cache: " + key, e);
+            return null;
+        }
+    }
+    
+    private long currentInvalidationStamp() {
+        synchronized (invalidationLock) {
+            return invalidationClock;
+        }
+    }
+    
+    private boolean invalidatedSince(WeighedCache<?> cache, String key, long since) {
+        Long cacheStamp = cacheInvalidatedAt.get(cache.name);
+        Long keyStamp = keyInvalidatedAt.get(cache.name + ":" + key);
+        return allInvalidatedAt > since
+            || (cacheStamp != null && cacheStamp > since)
+            || (keyStamp != null && keyStamp > since);
+    }
+    
+    /**
+     * Sella las claves o caches afectados por una invalidación antes de vaciarlos
+     */
+    private void stampInvalidation(@NonNull CacheInvalidationBus.Scope scope, String key) {
+        synchronized (invalidationLock) {
+            long stamp = ++invalidationClock;
+            switch (scope) {
+                case USER:
+                    stamp(stamp, key, userProfileCache, userPreferencesCache);
+                    break;
+                case DEVICE:
+                    stamp(stamp, key, deviceCache, deviceEntityCache);
+                    cacheInvalidatedAt.put(deviceListCache.name, stamp);
+                    break;
+                case ROOM:
+                    stamp(stamp, key, roomCache, roomEntityCache);
+                    cacheInvalidatedAt.put(roomListCache.name, stamp);
+                    break;
+                case ALL:
+                    allInvalidatedAt = stamp;
+                    cacheInvalidatedAt.clear();
+                    keyInvalidatedAt.clear();
+                    break;
+            }
+        }
+    }
+    
+    private void stamp(long stamp, String key, WeighedCache<?>... caches) {
+        for (WeighedCache<?> cache : caches) {
+            if (key != null) {
+                keyInvalidatedAt.put(cache.name + ":" + key, stamp);
+            } else {
+                cacheInvalidatedAt.put(cache.name, stamp);
+            }
+        }
+    }
+    
+    private void recordHit(WeighedCache<?> cache) {
+        stats.incrementHits();
+        cache.metrics.recordHit();
+    }
+    
+    private void recordStaleHit(WeighedCache<?> cache) {
+        stats.incrementStaleHits();
+        cache.metrics.recordStaleHit();
+    }
+    
+    private void recordMiss(WeighedCache<?> cache) {
+        stats.incrementMisses();
+        cache.metrics.recordMiss();
+    }
+    
+    private void recordWrite(WeighedCache<?> cache) {
+        stats.incrementWrites();
+        cache.metrics.recordWrite();
+    }
+    
+    private static <T> List<T> snapshotOf(List<T> items) {
+        return items != null ? Collections.unmodifiableList(new ArrayList<>(items)) : null;
+    }
+    
     // Métodos de gestión de cache
     
     /**
      * Invalida el cache de un usuario específico
      */
     public void invalidateUserCache(@NonNull String userId) {
-        userProfileCache.remove(userId);
-        userPreferencesCache.remove(userId);
-        lastAccessTimes.remove(userId);
-        Log.d(TAG, "Cache de usuario invalidado: " + userId);
+        invalidationBus.invalidateUser(userId);
     }
     
     /**
      * Invalida el cache de un dispositivo específico
+     * También invalida listas que puedan contener este dispositivo
      */
     public void invalidateDeviceCache(@NonNull String deviceId) {
-        deviceCache.remove(deviceId);
-        deviceStateCache.remove(deviceId);
-        lastAccessTimes.remove(deviceId);
-        
-        // También invalida listas que puedan contener este dispositivo
-        invalidateDeviceListCaches();
-        
-        Log.d(TAG, "Cache de dispositivo invalidado: " + deviceId);
+        invalidationBus.invalidateDevice(deviceId);
     }
     
     /**
      * Invalida todas las listas de dispositivos
      */
     public void invalidateDeviceListCaches() {
-        deviceListCache.evictAll();
+        deviceListCache.invalidateAll();
         Log.d(TAG, "Cache de listas de dispositivos invalidado");
     }
     
     /**
      * Invalida el cache de una habitación específica
+     * También invalida listas que puedan contener esta habitación
      */
     public void invalidateRoomCache(@NonNull String roomId) {
-        roomCache.remove(roomId);
-        lastAccessTimes.remove(roomId);
-        
-        // También invalida listas que puedan contener esta habitación
-        roomListCache.evictAll();
-        
-        Log.d(TAG, "Cache de habitación invalidado: " + roomId);
+        invalidationBus.invalidateRoom(roomId);
     }
     
     /**
      * Limpia todo el cache
      */
     public void clearAllCache() {
-        userProfileCache.evictAll();
-        userPreferencesCache.evictAll();
-        deviceListCache.evictAll();
-        deviceCache.evictAll();
-        roomListCache.evictAll();
-        roomCache.evictAll();
-        deviceStateCache.clear();
-        lastAccessTimes.clear();
-        
+        invalidationBus.invalidateAll();
         stats.reset();
-        Log.d(TAG, "Todo el cache limpiado");
+    }
+    
+    /**
+     * Aplica una invalidación recibida por el bus
+     */
+    private void onInvalidated(@NonNull CacheInvalidationBus.Scope scope, String key) {
+        stampInvalidation(scope, key);
+        switch (scope) {
+            case USER:
+                if (key != null) {
+                    userProfileCache.remove(key);
+                    userPreferencesCache.remove(key);
+                    lastAccessTimes.remove(key);
+                } else {
+                    userProfileCache.invalidateAll();
+                    userPreferencesCache.invalidateAll();
+                }
+                Log.d(TAG, "Cache de usuario invalidado: " + key);
+                break;
+                
+            case DEVICE:
+                if (key != null) {
+                    deviceCache.remove(key);
+                    deviceEntityCache.remove(key);
+                    deviceStateTable.remove(key);
+                    lastAccessTimes.remove(key);
+                } else {
+                    deviceCache.invalidateAll();
+                    deviceEntityCache.invalidateAll();
+                    deviceStateTable.clear();
+                }
+                invalidateDeviceListCaches();
+                Log.d(TAG, "Cache de dispositivo invalidado: " + key);
+                break;
+                
+            case ROOM:
+                if (key != null) {
+                    roomCache.remove(key);
+                    roomEntityCache.remove(key);
+                    lastAccessTimes.remove(key);
+                } else {
+                    roomCache.invalidateAll();
+                    roomEntityCache.invalidateAll();
+                }
+                roomListCache.invalidateAll();
+                Log.d(TAG, "Cache de habitación invalidado: " + key);
+                break;
+                
+            case ALL:
+                userProfileCache.invalidateAll();
+                userPreferencesCache.invalidateAll();
+                deviceListCache.invalidateAll();
+                deviceCache.invalidateAll();
+                deviceEntityCache.invalidateAll();
+                roomListCache.invalidateAll();
+                roomCache.invalidateAll();
+                roomEntityCache.invalidateAll();
+                deviceStateTable.clear();
+                lastAccessTimes.clear();
+                deviceStateExpiry.clear();
+                lastAccessExpiry.clear();
+                Log.d(TAG, "Todo el cache limpiado");
+                break;
+        }
+    }
+    
+    /**
+     * Reduce el cache según el nivel recibido en onTrimMemory
+     * Listas y modelos derivados se reconstruyen baratos desde Room y se sueltan primero;
+     * las entidades, el perfil y el estado en tiempo real (del tamaño del snapshot del
+     * dashboard) se conservan salvo con la app en segundo plano bajo presión severa
+     */
+    public void trimMemory(int level) {
+        WeighedCache<?>[] derivedCaches = {deviceListCache, roomListCache, deviceCache, roomCache};
+        WeighedCache<?>[] entityCaches = {deviceEntityCache, roomEntityCache};
+        
+        float derivedFraction;
+        float entityFraction;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            derivedFraction = 0f;
+            entityFraction = 0.25f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            derivedFraction = 0f;
+            entityFraction = 0.5f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            derivedFraction = 0f;
+            entityFraction = 1f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // RUNNING_LOW y UI_HIDDEN
+            derivedFraction = 0.5f;
+            entityFraction = 1f;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            derivedFraction = 0.75f;
+            entityFraction = 1f;
+        } else {
+            return;
+        }
+        
+        long before = getMemoryInfo().usedBytes;
+        for (WeighedCache<?> cache : derivedCaches) {
+            cache.trimToFraction(derivedFraction);
+        }
+        if (entityFraction < 1f) {
+            for (WeighedCache<?> cache : entityCaches) {
+                cache.trimToFraction(entityFraction);
+            }
+        }
+        Log.d(TAG, "Cache reducido por onTrimMemory(" + level + "): " + before + " -> "
+            + getMemoryInfo().usedBytes + " bytes");
     }
     
     /**
@@ -417,83 +939,83 @@ public class IntelligentCacheManager {
     
     /**
      * Obtiene información de memoria del cache
+     * Las entradas se cuentan por cache y los bytes son los retenidos reales de todas ellas
      */
     public CacheMemoryInfo getMemoryInfo() {
-        int userProfileSize = userProfileCache.size();
-        int userPreferencesSize = userPreferencesCache.size();
-        int deviceListSize = deviceListCache.size();
-        int deviceSize = deviceCache.size();
-        int roomListSize = roomListCache.size();
-        int roomSize = roomCache.size();
-        int deviceStateSize = deviceStateCache.size();
+        LruCache<?, ?>[] caches = {userProfileCache, userPreferencesCache, deviceListCache,
+            deviceCache, roomListCache, roomCache, deviceEntityCache, roomEntityCache};
+        long usedBytes = 0;
+        long maxBytes = 0;
+        for (LruCache<?, ?> cache : caches) {
+            usedBytes += cache.size();
+            maxBytes += cache.maxSize();
+        }
+        
+        // El estado en tiempo real no pasa por LruCache: se cuentan sus arreglos e índice
+        int deviceStateSize = deviceStateTable.size();
+        usedBytes += deviceStateTable.retainedBytes();
         
-        return new CacheMemoryInfo(userProfileSize, userPreferencesSize, deviceListSize, 
-            deviceSize, roomListSize, roomSize, deviceStateSize);
+        return new CacheMemoryInfo(userProfileCache.snapshot().size(), userPreferencesCache.snapshot().size(),
+            deviceListCache.snapshot().size(), deviceCache.snapshot().size(), roomListCache.snapshot().size(),
+            roomCache.snapshot().size(), deviceStateSize,
+            deviceEntityCache.snapshot().size(), roomEntityCache.snapshot().size(),
+            usedBytes, maxBytes);
     }
     
     // Métodos privados
     
     private void updateLastAccess(@NonNull String key) {
-        lastAccessTimes.put(key, System.currentTimeMillis());
-    }
-    
-    private void startCleanupScheduler() {
-        cleanupScheduler.scheduleAtFixedRate(this::performCleanup, 
-            CLEANUP_INTERVAL_MS, CLEANUP_INTERVAL_MS, TimeUnit.MILLISECONDS);
-    }
-    
-    private void performCleanup() {
-        try {
-            long currentTime = System.currentTimeMillis();
-            
-            // Limpiar entradas expiradas en cache de estado
-            deviceStateCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-            
-            // Limpiar tiempos de acceso antiguos
-            lastAccessTimes.entrySet().removeIf(entry -> 
-                currentTime - entry.getValue() > 24 * 60 * 60 * 1000); // 24 horas
-            
-            Log.d(TAG, "Cleanup automático completado");
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error en cleanup automático", e);
+        long now = System.currentTimeMillis();
+        // Solo el primer acceso programa el plazo; los siguientes se ven al vencer
+        if (lastAccessTimes.put(key, now) == null) {
+            lastAccessExpiry.track(key, now + ACCESS_RETENTION_MS);
         }
     }
     
-    // Métodos de estimación de tamaño
-    
-    private int estimateUserProfileSize(UserProfile profile) {
-        if (profile == null) return 0;
-        int size = 100; // Base size
-        if (profile.getName() != null) size += profile.getName().length() * 2;
-        if (profile.getEmail() != null) size += profile.getEmail().length() * 2;
-        if (profile.getPhotoUrl() != null) size += profile.getPhotoUrl().length() * 2;
-        return size;
-    }
-    
-    private int estimateUserPreferencesSize(UserPreferences preferences) {
-        return preferences != null ? 200 : 0; // Estimated size
-    }
-    
-    private int estimateDeviceListSize(List<Device> devices) {
-        if (devices == null) return 0;
-        return devices.size() * 150; // Estimated size per device
+    /**
+     * Vencimiento de un estado en tiempo real: se elimina si no fue renovado
+     */
+    private long onDeviceStateDue(@NonNull String deviceId, long now) {
+        while (true) {
+            long timestamp = deviceStateTable.getTimestamp(deviceId);
+            if (timestamp == DeviceStateTable.NOT_FOUND) {
+                return ExpiryQueue.EXPIRED;
+            }
+            long deadline = timestamp + CacheStrategy.REALTIME.getTtlMs();
+            if (deadline > now) {
+                return deadline;
+            }
+            // Si otro hilo lo renovó entre la lectura y el borrado se vuelve a evaluar
+            if (deviceStateTable.removeIfNotUpdatedSince(deviceId, timestamp)) {
+                return ExpiryQueue.EXPIRED;
+            }
+        }
     }
     
-    private int estimateDeviceSize(Device device) {
-        if (device == null) return 0;
-        int size = 100; // Base size
-        if (device.getName() != null) size += device.getName().length() * 2;
-        return size;
+    /**
+     * Vencimiento de un tiempo de acceso: se olvida si no hubo accesos en 24 horas
+     */
+    private long onLastAccessDue(@NonNull String key, long now) {
+        while (true) {
+            Long lastAccess = lastAccessTimes.get(key);
+            if (lastAccess == null) {
+                return ExpiryQueue.EXPIRED;
+            }
+            long deadline = lastAccess + ACCESS_RETENTION_MS;
+            if (deadline > now) {
+                return deadline;
+            }
+            if (lastAccessTimes.remove(key, lastAccess)) {
+                return ExpiryQueue.EXPIRED;
+            }
+        }
     }
     
     /**
      * Detiene el cache manager y libera recursos
+     * Los pools son compartidos: solo se cancelan los despertares de expiración pendientes
      */
     public void shutdown() {
-        if (cleanupScheduler != null && !cleanupScheduler.isShutdown()) {
-            cleanupScheduler.shutdown();
-        }
         clearAllCache();
         Log.d(TAG, "Cache manager detenido");
     }
@@ -501,23 +1023,43 @@ public class IntelligentCacheManager {
     // Clases auxiliares
     
     /**
-     * Entrada de cache con timestamp y validez
+     * Entrada de cache con timestamp, validez y peso en bytes
      */
     private static class CacheEntry<T> {
         private final T data;
         private final long timestamp;
-        private final long validityDuration;
+        private final CacheStrategy strategy;
+        private final int weight;
         
-        public CacheEntry(T data, long validityDuration) {
+        public CacheEntry(String key, T data, CacheStrategy strategy) {
             this.data = data;
             this.timestamp = System.currentTimeMillis();
-            this.validityDuration = validityDuration;
+            this.strategy = strategy;
+            this.weight = Math.max(1, CacheWeigher.weighEntry(key, data));
         }
         
         public T getData() { return data; }
         
+        public int getWeight() { return weight; }
+        
+        public CacheStrategy getStrategy() { return strategy; }
+        
         public boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > validityDuration;
+            return System.currentTimeMillis() - timestamp > strategy.getTtlMs();
+        }
+        
+        /**
+         * Indica si conviene recargar la entrada en segundo plano
+         */
+        public boolean needsRefresh() {
+            return System.currentTimeMillis() - timestamp > strategy.getRefreshAfterMs();
+        }
+        
+        /**
+         * Indica si el valor aún puede servirse (fresco o viejo dentro del margen)
+         */
+        public boolean isServable() {
+            return System.currentTimeMillis() - timestamp <= strategy.getTtlMs() + strategy.getStaleGraceMs();
         }
     }
     
@@ -537,8 +1079,16 @@ public class IntelligentCacheManager {
             this.timestamp = System.currentTimeMillis();
         }
         
+        // Vista de una fila de DeviceStateTable; NaN indica que no hay temperatura
+        DeviceStateEntry(boolean isOn, int intensity, float temperature, long timestamp) {
+            this.isOn = isOn;
+            this.intensity = intensity;
+            this.temperature = Float.isNaN(temperature) ? null : temperature;
+            this.timestamp = timestamp;
+        }
+        
         public boolean isExpired() {
-            return System.currentTimeMillis() - timestamp > DEVICE_STATE_CACHE_VALIDITY_MS;
+            return System.currentTimeMillis() - timestamp > CacheStrategy.REALTIME.getTtlMs();
         }
     }
     
@@ -551,26 +1101,35 @@ public class IntelligentCacheManager {
         private long writes = 0;
         private long evictions = 0;
         private long expired = 0;
+        private long staleHits = 0;
+        private long refreshes = 0;
         
         public synchronized void incrementHits() { hits++; }
         public synchronized void incrementMisses() { misses++; }
         public synchronized void incrementWrites() { writes++; }
         public synchronized void incrementEvictions() { evictions++; }
         public synchronized void incrementExpired() { expired++; }
+        public synchronized void incrementStaleHits() { staleHits++; }
+        public synchronized void incrementRefreshes() { refreshes++; }
         
         public synchronized long getHits() { return hits; }
         public synchronized long getMisses() { return misses; }
         public synchronized long getWrites() { return writes; }
         public synchronized long getEvictions() { return evictions; }
         public synchronized long getExpired() { return expired; }
+        public synchronized long getStaleHits() { return staleHits; }
+        public synchronized long getRefreshes() { return refreshes; }
         
+        /**
+         * Los valores viejos servidos cuentan como aciertos: el lector no esperó
+         */
         public synchronized double getHitRatio() {
-            long total = hits + misses;
-            return total > 0 ? (double) hits / total : 0.0;
+            long total = hits + staleHits + misses;
+            return total > 0 ? (double) (hits + staleHits) / total : 0.0;
         }
         
         public synchronized void reset() {
-            hits = misses = writes = evictions = expired = 0;
+            hits = misses = writes = evictions = expired = staleHits = refreshes = 0;
         }
         
         public synchronized CacheStats copy() {
@@ -580,6 +1139,8 @@ public class IntelligentCacheManager {
             copy.writes = this.writes;
             copy.evictions = this.evictions;
             copy.expired = this.expired;
+            copy.staleHits = this.staleHits;
+            copy.refreshes = this.refreshes;
             return copy;
         }
     }
@@ -595,10 +1156,15 @@ public class IntelligentCacheManager {
         public final int roomListEntries;
         public final int roomEntries;
         public final int deviceStateEntries;
+        public final int deviceEntityEntries;
+        public final int roomEntityEntries;
+        public final long usedBytes;
+        public final long maxBytes;
         
         public CacheMemoryInfo(int userProfileEntries, int userPreferencesEntries, 
                 int deviceListEntries, int deviceEntries, int roomListEntries, 
-                int roomEntries, int deviceStateEntries) {
+                int roomEntries, int deviceStateEntries, int deviceEntityEntries,
+                int roomEntityEntries, long usedBytes, long maxBytes) {
             this.userProfileEntries = userProfileEntries;
             this.userPreferencesEntries = userPreferencesEntries;
             this.deviceListEntries = deviceListEntries;
@@ -606,11 +1172,16 @@ public class IntelligentCacheManager {
             this.roomListEntries = roomListEntries;
             this.roomEntries = roomEntries;
             this.deviceStateEntries = deviceStateEntries;
+            this.deviceEntityEntries = deviceEntityEntries;
+            this.roomEntityEntries = roomEntityEntries;
+            this.usedBytes = usedBytes;
+            this.maxBytes = maxBytes;
         }
         
         public int getTotalEntries() {
             return userProfileEntries + userPreferencesEntries + deviceListEntries + 
-                   deviceEntries + roomListEntries + roomEntries + deviceStateEntries;
+                   deviceEntries + roomListEntries + roomEntries + deviceStateEntries +
+                   deviceEntityEntries + roomEntityEntries;
         }
     }
 }
\ No newline at end of file
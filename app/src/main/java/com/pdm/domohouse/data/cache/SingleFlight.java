@@ -0,0 +1,95 @@
+package com.pdm.domohouse.data.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa cargas concurrentes de la misma clave en una sola ejecución
+ * Mientras una carga está en vuelo, los demás solicitantes esperan su resultado
+ * en lugar de lanzar otra consulta a Room o Firebase; al terminar la clave se libera
+ *
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del valor cargado
+ */
+public class SingleFlight<K, V> {
+    
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * Carga bloqueante: el primer hilo ejecuta el loader y el resto espera su resultado
+     * Los errores del loader se propagan a todos los que esperaban
+     */
+    public V execute(@NonNull K key, @NonNull IntelligentCacheManager.Loader<V> loader) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+        
+        try {
+            V value = loader.load();
+            mine.complete(value);
+            return value;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+    
+    /**
+     * Carga asíncrona: devuelve el futuro en vuelo para la clave o inicia uno nuevo
+     * Pensado para fuentes con callbacks como Firebase
+     */
+    public CompletableFuture<V> executeAsync(@NonNull K key, @NonNull Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing;
+        }
+        
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(e);
+        }
+        
+        // La clave se libera antes de notificar, así un reintento desde el callback inicia otra carga
+        load.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return mine;
+    }
+    
+    /**
+     * Número de claves con una carga en vuelo
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+    
+    private static <V> V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.pdm.domohouse.data.database;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
@@ -10,20 +13,26 @@ import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.pdm.domohouse.concurrent.AppExecutors;
 import com.pdm.domohouse.data.database.converter.DateConverter;
 import com.pdm.domohouse.data.database.dao.DeviceDao;
 import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
 import com.pdm.domohouse.data.database.dao.RoomDao;
+import com.pdm.domohouse.data.database.dao.SensorReadingDao;
+import com.pdm.domohouse.data.database.dao.SensorRollupDao;
+import com.pdm.domohouse.data.database.dao.SyncWatermarkDao;
 import com.pdm.domohouse.data.database.dao.UserPreferencesDao;
 import com.pdm.domohouse.data.database.dao.UserProfileDao;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
 import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.database.entity.SensorRollupEntity;
+import com.pdm.domohouse.data.database.entity.SyncWatermarkEntity;
 import com.pdm.domohouse.data.database.entity.UserPreferencesEntity;
 import com.pdm.domohouse.data.database.entity.UserProfileEntity;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Base de datos principal de la aplicación DomoHouse
@@ -34,25 +43,34 @@ import java.util.concurrent.Executors;
         UserPreferencesEntity.class,
         RoomEntity.class,
         DeviceEntity.class,
-        DeviceHistoryEntity.class
-}, version = 1, exportSchema = false)
+        DeviceHistoryEntity.class,
+        SyncWatermarkEntity.class,
+        SensorReadingEntity.class,
+        SensorRollupEntity.class
+}, version = 2, exportSchema = false)
 @TypeConverters({DateConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     
+    private static final String TAG = "AppDatabase";
+    
+    // Valor de PRAGMA auto_vacuum para el modo incremental
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    
     // DAOs
     public abstract UserProfileDao userProfileDao();
     public abstract UserPreferencesDao userPreferencesDao();
     public abstract RoomDao roomDao();
     public abstract DeviceDao deviceDao();
     public abstract DeviceHistoryDao deviceHistoryDao();
+    public abstract SyncWatermarkDao syncWatermarkDao();
+    public abstract SensorReadingDao sensorReadingDao();
+    public abstract SensorRollupDao sensorRollupDao();
     
     // Singleton
     private static volatile AppDatabase INSTANCE;
-    private static final int NUMBER_OF_THREADS = 4;
     
-    // Executor para operaciones de base de datos
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    // Executor para operaciones de base de datos: el pool diskIO compartido de AppExecutors
+    public static final Executor databaseWriteExecutor = AppExecutors.getInstance().diskIO();
     
     /**
      * Obtiene la instancia única de la base de datos
@@ -65,6 +83,8 @@ public abstract class AppDatabase extends RoomDatabase {
                                     AppDatabase.class, "domohouse_database")
                             .addCallback(sRoomDatabaseCallback)
                             .addMigrations(MIGRATION_1_2) // Preparado para futuras migraciones
+                            // Las consultas observables de Room usan el mismo pool en vez del suyo
+                            .setQueryExecutor(databaseWriteExecutor)
                             .build();
                 }
             }
@@ -83,6 +103,7 @@ public abstract class AppDatabase extends RoomDatabase {
      * Callback para inicializar la base de datos con datos por defecto si es necesario
      */
     private static RoomDatabase.Callback sRoomDatabaseCallback = new RoomDatabase.Callback() {
+        
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
@@ -134,16 +155,108 @@ public abstract class AppDatabase extends RoomDatabase {
                 roomDao.insert(bathroom);
             });
         }
+        
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            super.onOpen(db);
+            enableIncrementalVacuum(db);
+        }
+        
+        /**
+         * Pasa la base a auto_vacuum INCREMENTAL si aún no lo está
+         * El modo solo cambia con un VACUUM completo, que no puede ir dentro de la transacción
+         * de creación o de migración; onOpen ya corre fuera de ellas. Ocurre una sola vez:
+         * en una base recién creada es inmediato y en una actualizada desde la versión 1
+         * reescribe el archivo tras la migración. Si falla (p. ej. sin espacio) se reintenta
+         * en la siguiente apertura y mientras tanto la retención no hace VACUUM incremental
+         */
+        private void enableIncrementalVacuum(SupportSQLiteDatabase db) {
+            try (Cursor cursor = db.query("PRAGMA auto_vacuum")) {
+                if (cursor.moveToFirst() && cursor.getInt(0) == AUTO_VACUUM_INCREMENTAL) {
+                    return;
+                }
+            }
+            
+            try {
+                db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                db.execSQL("VACUUM");
+            } catch (SQLException e) {
+                Log.w(TAG, "No se pudo activar auto_vacuum incremental", e);
+            }
+        }
     };
     
     /**
-     * Migración de ejemplo para futuras versiones
+     * Migración a la versión 2
+     * Agrega la tabla de marcas de agua para sincronización incremental,
+     * los índices compuestos de device_history y las tablas sensor_readings y sensor_rollups
+     * 
+     * Las lecturas de temperatura pasan del historial a sensor_readings y dejan de
+     * subirse a Firebase con la sincronización del historial: son solo locales
      */
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
-            // Ejemplo de migración para agregar una nueva columna en el futuro
-            // database.execSQL("ALTER TABLE devices ADD COLUMN new_column TEXT");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `sync_watermarks` (" +
+                    "`table_name` TEXT NOT NULL, " +
+                    "`watermark` INTEGER NOT NULL, " +
+                    "`updated_at` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`table_name`))");
+            
+            // El índice simple de device_id queda cubierto por (device_id, timestamp)
+            database.execSQL("DROP INDEX IF EXISTS `index_device_history_device_id`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_device_history_device_id_timestamp` " +
+                    "ON `device_history` (`device_id`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_device_history_device_id_action_timestamp` " +
+                    "ON `device_history` (`device_id`, `action`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_device_history_is_synced_timestamp` " +
+                    "ON `device_history` (`is_synced`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_device_history_user_id_timestamp` " +
+                    "ON `device_history` (`user_id`, `timestamp`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_device_history_action_timestamp` " +
+                    "ON `device_history` (`action`, `timestamp`)");
+            
+            // Lecturas de sensores con valor numérico REAL
+            database.execSQL("CREATE TABLE IF NOT EXISTS `sensor_readings` (" +
+                    "`reading_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`device_id` TEXT NOT NULL, " +
+                    "`ts` INTEGER NOT NULL, " +
+                    "`value` REAL NOT NULL, " +
+                    "FOREIGN KEY(`device_id`) REFERENCES `devices`(`device_id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_sensor_readings_device_id_ts` " +
+                    "ON `sensor_readings` (`device_id`, `ts`)");
+            
+            // Mover las lecturas de temperatura guardadas como texto en el historial;
+            // se borran todas, también las que no tenían valor, para no dejar duplicados
+            database.execSQL("INSERT INTO `sensor_readings` (`device_id`, `ts`, `value`) " +
+                    "SELECT `device_id`, `timestamp`, CAST(`new_value` AS REAL) FROM `device_history` " +
+                    "WHERE `action` = 'TEMPERATURE_READING' AND `new_value` IS NOT NULL AND `new_value` != 'null'");
+            database.execSQL("DELETE FROM `device_history` WHERE `action` = 'TEMPERATURE_READING'");
+            
+            // Agregados por bucket de las lecturas
+            database.execSQL("CREATE TABLE IF NOT EXISTS `sensor_rollups` (" +
+                    "`device_id` TEXT NOT NULL, " +
+                    "`bucket_size` INTEGER NOT NULL, " +
+                    "`bucket_start` INTEGER NOT NULL, " +
+                    "`min_value` REAL NOT NULL, " +
+                    "`max_value` REAL NOT NULL, " +
+                    "`sum_value` REAL NOT NULL, " +
+                    "`value_count` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`device_id`, `bucket_size`, `bucket_start`), " +
+                    "FOREIGN KEY(`device_id`) REFERENCES `devices`(`device_id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_sensor_rollups_bucket_size_bucket_start` " +
+                    "ON `sensor_rollups` (`bucket_size`, `bucket_start`)");
+            
+            // Construir los rollups de las lecturas copiadas
+            // Tamaños de bucket fijos de la versión 2 (minuto, hora, día): la migración no debe
+            // cambiar si RollupResolution cambia más adelante
+            for (long size : new long[] {60_000L, 3_600_000L, 86_400_000L}) {
+                database.execSQL("INSERT INTO `sensor_rollups` (`device_id`, `bucket_size`, `bucket_start`, " +
+                        "`min_value`, `max_value`, `sum_value`, `value_count`) " +
+                        "SELECT `device_id`, " + size + ", (`ts` / " + size + ") * " + size + ", " +
+                        "MIN(`value`), MAX(`value`), SUM(`value`), COUNT(*) FROM `sensor_readings` " +
+                        "GROUP BY `device_id`, `ts` / " + size);
+            }
         }
     };
     
@@ -153,6 +266,9 @@ public abstract class AppDatabase extends RoomDatabase {
     public void clearAllTables() {
         databaseWriteExecutor.execute(() -> {
             deviceHistoryDao().deleteAll();
+            sensorReadingDao().deleteAll();
+            sensorRollupDao().deleteAll();
+            syncWatermarkDao().deleteAll();
             deviceDao().deleteAll();
             roomDao().deleteAll();
             userPreferencesDao().delete(getCurrentUserId());
@@ -10,8 +10,14 @@ import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+import com.pdm.domohouse.data.model.DeviceCommand;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
 
 /**
  * DAO para operaciones de base de datos relacionadas con dispositivos
@@ -20,6 +26,9 @@ import java.util.List;
 @Dao
 public interface DeviceDao {
     
+    // Máximo de ids por cláusula IN (SQLite limita a 999 variables por sentencia)
+    int MAX_IN_CLAUSE_SIZE = 900;
+    
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(DeviceEntity device);
     
@@ -29,6 +38,9 @@ public interface DeviceDao {
     @Update
     void update(DeviceEntity device);
     
+    @Update
+    void updateAll(List<DeviceEntity> devices);
+    
     @Delete
     void delete(DeviceEntity device);
     
@@ -38,6 +50,9 @@ public interface DeviceDao {
     @Query("SELECT * FROM devices WHERE device_id = :deviceId")
     DeviceEntity getDeviceSync(String deviceId);
     
+    @Query("SELECT * FROM devices WHERE device_id IN (:deviceIds)")
+    List<DeviceEntity> getDevicesByIdsSync(List<String> deviceIds);
+    
     @Query("SELECT * FROM devices WHERE room_id = :roomId ORDER BY name")
     LiveData<List<DeviceEntity>> getDevicesByRoom(String roomId);
     
@@ -47,6 +62,9 @@ public interface DeviceDao {
     @Query("SELECT * FROM devices ORDER BY room_id, name")
     LiveData<List<DeviceEntity>> getAllDevices();
     
+    @Query("SELECT * FROM devices ORDER BY room_id, name")
+    List<DeviceEntity> getAllDevicesSync();
+    
     @Query("SELECT * FROM devices WHERE device_type = :type ORDER BY name")
     LiveData<List<DeviceEntity>> getDevicesByType(String type);
     
@@ -62,9 +80,170 @@ public interface DeviceDao {
     @Query("UPDATE devices SET is_synced = 1, last_sync = :timestamp WHERE device_id = :deviceId")
     void markAsSynced(String deviceId, long timestamp);
     
+    @Query("UPDATE devices SET is_synced = 1, last_sync = :timestamp WHERE device_id IN (:deviceIds)")
+    void markAllAsSynced(List<String> deviceIds, long timestamp);
+    
     @Query("UPDATE devices SET is_on = :isOn, last_state_change = :timestamp, updated_at = :timestamp WHERE device_id = :deviceId")
     void updateDeviceState(String deviceId, boolean isOn, long timestamp);
     
+    /**
+     * Aplica un cambio de estado solo si no hay uno posterior ya escrito
+     * Evita que escrituras en segundo plano que llegan desordenadas reviertan un toggle
+     * 
+     * @return Filas actualizadas (0 si el cambio quedó obsoleto)
+     */
+    @Query("UPDATE devices SET is_on = :isOn, last_state_change = :timestamp, updated_at = MAX(updated_at, :timestamp), is_synced = 0 " +
+           "WHERE device_id = :deviceId AND last_state_change <= :timestamp")
+    int updateDeviceStateIfNewer(String deviceId, boolean isOn, long timestamp);
+    
+    /**
+     * Invierte is_on en la propia sentencia, sin leer antes el valor actual
+     * 
+     * @return Filas actualizadas (0 si el dispositivo no existe)
+     */
+    @Query("UPDATE devices SET is_on = NOT is_on, last_state_change = :timestamp, updated_at = :timestamp, is_synced = 0 " +
+           "WHERE device_id = :deviceId")
+    int flipDeviceState(String deviceId, long timestamp);
+    
+    @Query("SELECT is_on FROM devices WHERE device_id = :deviceId")
+    boolean isDeviceOn(String deviceId);
+    
+    @Insert
+    void insertHistory(DeviceHistoryEntity history);
+    
+    @Insert
+    void insertHistory(List<DeviceHistoryEntity> historyList);
+    
+    /**
+     * Cambia el estado de un dispositivo y registra su historial en una sola transacción
+     * El estado se invierte en SQLite y se lee después dentro de la misma transacción,
+     * así dos toques seguidos producen dos cambios y nunca se pierde uno
+     * 
+     * @return Nuevo estado, o null si el dispositivo no existe
+     */
+    @Transaction
+    default Boolean toggleDeviceStateWithHistory(String deviceId, String userId, long timestamp) {
+        if (flipDeviceState(deviceId, timestamp) == 0) {
+            return null;
+        }
+        boolean isOn = isDeviceOn(deviceId);
+        
+        DeviceHistoryEntity history = new DeviceHistoryEntity();
+        history.setDeviceId(deviceId);
+        history.setAction(isOn ? "ON" : "OFF");
+        history.setOldValue(String.valueOf(!isOn));
+        history.setNewValue(String.valueOf(isOn));
+        history.setTriggeredBy("USER");
+        history.setUserId(userId);
+        history.setTimestamp(timestamp);
+        history.setSynced(false);
+        insertHistory(history);
+        return isOn;
+    }
+    
+    /**
+     * Fija el estado de un dispositivo y registra su historial en una sola transacción
+     * Solo escribe si el cambio no es más antiguo que el último aplicado,
+     * así una escritura que llega tarde no pisa el estado ni deja historial
+     * 
+     * @return true si el cambio se aplicó
+     */
+    @Transaction
+    default boolean setDeviceStateWithHistory(String deviceId, boolean isOn, String userId, long timestamp) {
+        if (updateDeviceStateIfNewer(deviceId, isOn, timestamp) == 0) {
+            return false;
+        }
+        
+        DeviceHistoryEntity history = new DeviceHistoryEntity();
+        history.setDeviceId(deviceId);
+        history.setAction(isOn ? "ON" : "OFF");
+        history.setOldValue(String.valueOf(!isOn));
+        history.setNewValue(String.valueOf(isOn));
+        history.setTriggeredBy("USER");
+        history.setUserId(userId);
+        history.setTimestamp(timestamp);
+        history.setSynced(false);
+        insertHistory(history);
+        return true;
+    }
+    
+    /**
+     * Aplica una escena completa en una sola transacción
+     * Carga los dispositivos con consultas IN, escribe los cambios con un único UPDATE por lotes
+     * y registra el historial de cada dispositivo en el mismo commit: o se aplica todo o nada
+     * 
+     * @param commands Órdenes ya validadas, como mucho una por dispositivo
+     * @return Dispositivos modificados con su estado nuevo; los inexistentes o sin cambios se omiten
+     */
+    @Transaction
+    default List<DeviceEntity> applySceneWithHistory(List<DeviceCommand> commands, String userId, long timestamp) {
+        List<DeviceEntity> changed = new ArrayList<>();
+        if (commands == null || commands.isEmpty()) {
+            return changed;
+        }
+        
+        List<String> ids = new ArrayList<>();
+        for (DeviceCommand command : commands) {
+            ids.add(command.getDeviceId());
+        }
+        Map<String, DeviceEntity> devicesById = new HashMap<>();
+        for (int start = 0; start < ids.size(); start += MAX_IN_CLAUSE_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + MAX_IN_CLAUSE_SIZE, ids.size()));
+            for (DeviceEntity device : getDevicesByIdsSync(chunk)) {
+                devicesById.put(device.getDeviceId(), device);
+            }
+        }
+        
+        List<DeviceHistoryEntity> historyList = new ArrayList<>();
+        for (DeviceCommand command : commands) {
+            DeviceEntity device = devicesById.get(command.getDeviceId());
+            if (device == null) {
+                continue;
+            }
+            boolean wasOn = device.isOn();
+            int oldIntensity = device.getIntensity();
+            int newIntensity = command.keepsIntensity() ? oldIntensity : command.getIntensity();
+            if (wasOn == command.isOn() && oldIntensity == newIntensity) {
+                continue;
+            }
+            
+            if (wasOn != command.isOn()) {
+                device.setOn(command.isOn());
+                device.setLastStateChange(timestamp);
+                historyList.add(newSceneHistory(device.getDeviceId(), command.isOn() ? "ON" : "OFF",
+                        String.valueOf(wasOn), String.valueOf(command.isOn()), userId, timestamp));
+            }
+            if (oldIntensity != newIntensity) {
+                device.setIntensity(newIntensity);
+                historyList.add(newSceneHistory(device.getDeviceId(), "INTENSITY_CHANGE",
+                        String.valueOf(oldIntensity), String.valueOf(newIntensity), userId, timestamp));
+            }
+            device.setUpdatedAt(timestamp);
+            device.setSynced(false);
+            changed.add(device);
+        }
+        
+        if (!changed.isEmpty()) {
+            updateAll(changed);
+            insertHistory(historyList);
+        }
+        return changed;
+    }
+    
+    static DeviceHistoryEntity newSceneHistory(String deviceId, String action, String oldValue,
+            String newValue, String userId, long timestamp) {
+        DeviceHistoryEntity history = new DeviceHistoryEntity();
+        history.setDeviceId(deviceId);
+        history.setAction(action);
+        history.setOldValue(oldValue);
+        history.setNewValue(newValue);
+        history.setTriggeredBy("SCENE");
+        history.setUserId(userId);
+        history.setTimestamp(timestamp);
+        history.setSynced(false);
+        return history;
+    }
+    
     @Query("UPDATE devices SET intensity = :intensity, updated_at = :timestamp WHERE device_id = :deviceId")
     void updateDeviceIntensity(String deviceId, int intensity, long timestamp);
     
@@ -89,4 +268,64 @@ public interface DeviceDao {
     
     @Query("DELETE FROM devices WHERE room_id = :roomId")
     void deleteDevicesByRoom(String roomId);
+    
+    /**
+     * Fusiona en una sola transacción los dispositivos descargados de Firebase
+     * Carga los locales con consultas IN, resuelve conflictos en memoria y escribe todo
+     * en un único commit, de modo que los observadores reciben una sola invalidación
+     * 
+     * @param remoteDevices Dispositivos remotos a aplicar
+     * @param resolver Devuelve la versión ganadora entre (local, remoto)
+     * @param syncTimestamp Momento de la sincronización para los dispositivos nuevos
+     * @return Dispositivos remotos que quedaron aplicados localmente
+     */
+    @Transaction
+    default List<DeviceEntity> mergeRemoteDevices(List<DeviceEntity> remoteDevices,
+            BinaryOperator<DeviceEntity> resolver, long syncTimestamp) {
+        List<DeviceEntity> applied = new ArrayList<>();
+        if (remoteDevices == null || remoteDevices.isEmpty()) {
+            return applied;
+        }
+        
+        // Cargar los dispositivos locales por bloques para no exceder el límite de variables de SQLite
+        List<String> ids = new ArrayList<>();
+        for (DeviceEntity remote : remoteDevices) {
+            ids.add(remote.getDeviceId());
+        }
+        Map<String, DeviceEntity> localById = new HashMap<>();
+        for (int start = 0; start < ids.size(); start += MAX_IN_CLAUSE_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + MAX_IN_CLAUSE_SIZE, ids.size()));
+            for (DeviceEntity local : getDevicesByIdsSync(chunk)) {
+                localById.put(local.getDeviceId(), local);
+            }
+        }
+        
+        List<DeviceEntity> toInsert = new ArrayList<>();
+        List<DeviceEntity> toUpdate = new ArrayList<>();
+        for (DeviceEntity remote : remoteDevices) {
+            DeviceEntity local = localById.get(remote.getDeviceId());
+            if (local == null) {
+                remote.setSynced(true);
+                remote.setLastSync(syncTimestamp);
+                toInsert.add(remote);
+                applied.add(remote);
+            } else {
+                DeviceEntity resolved = resolver.apply(local, remote);
+                if (resolved != local) {
+                    // Si gana el local no hay nada que escribir
+                    toUpdate.add(resolved);
+                    applied.add(resolved);
+                }
+            }
+        }
+        
+        if (!toInsert.isEmpty()) {
+            insertAll(toInsert);
+        }
+        if (!toUpdate.isEmpty()) {
+            updateAll(toUpdate);
+        }
+        return applied;
+    }
+    
 }
\ No newline at end of file
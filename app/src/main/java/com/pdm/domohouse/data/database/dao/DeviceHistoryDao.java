@@ -32,6 +32,17 @@ public interface DeviceHistoryDao {
     @Query("SELECT * FROM device_history WHERE timestamp >= :startTime ORDER BY timestamp DESC")
     LiveData<List<DeviceHistoryEntity>> getRecentHistory(long startTime);
     
+    // Consulta paginada por cursor (timestamp, history_id): cada página continúa
+    // justo después de la última fila de la anterior sin usar OFFSET.
+    // El límite explícito sobre timestamp permite a SQLite acotar el rango del índice
+    @Query("SELECT * FROM device_history WHERE is_synced = 0 " +
+            "AND timestamp >= :cursorTimestamp AND (timestamp > :cursorTimestamp OR history_id > :cursorId) " +
+            "ORDER BY timestamp, history_id LIMIT :pageSize")
+    List<DeviceHistoryEntity> getUnsyncedHistoryPage(long cursorTimestamp, long cursorId, int pageSize);
+    
+    @Query("SELECT COUNT(*) FROM device_history WHERE is_synced = 0")
+    int getUnsyncedHistoryCount();
+    
     @Query("SELECT * FROM device_history WHERE action = :action ORDER BY timestamp DESC LIMIT :limit")
     LiveData<List<DeviceHistoryEntity>> getHistoryByAction(String action, int limit);
     
@@ -47,12 +58,14 @@ public interface DeviceHistoryDao {
     @Query("DELETE FROM device_history WHERE timestamp < :timestamp")
     void deleteOldHistory(long timestamp);
     
+    // Borrado acotado para la retención: solo filas ya sincronizadas, un lote por transacción
+    @Query("DELETE FROM device_history WHERE history_id IN (SELECT history_id FROM device_history " +
+            "WHERE is_synced = 1 AND timestamp < :timestamp ORDER BY timestamp LIMIT :batchSize)")
+    int deleteSyncedHistoryBatch(long timestamp, int batchSize);
+    
     @Query("SELECT COUNT(*) FROM device_history WHERE device_id = :deviceId AND action = :action AND timestamp >= :startTime")
     int getActionCount(String deviceId, String action, long startTime);
     
-    @Query("SELECT AVG(CAST(new_value AS FLOAT)) FROM device_history WHERE device_id = :deviceId AND action = 'TEMPERATURE_READING' AND timestamp >= :startTime")
-    Float getAverageTemperature(String deviceId, long startTime);
-    
     @Query("DELETE FROM device_history")
     void deleteAll();
 }
\ No newline at end of file
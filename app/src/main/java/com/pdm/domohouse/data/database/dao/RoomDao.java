@@ -6,11 +6,16 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.pdm.domohouse.data.database.entity.RoomEntity;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BinaryOperator;
 
 /**
  * DAO para operaciones de base de datos relacionadas con habitaciones
@@ -25,9 +30,15 @@ public interface RoomDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<RoomEntity> rooms);
     
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void insertAllIfAbsent(List<RoomEntity> rooms);
+    
     @Update
     void update(RoomEntity room);
     
+    @Update
+    void updateAll(List<RoomEntity> rooms);
+    
     @Delete
     void delete(RoomEntity room);
     
@@ -37,6 +48,9 @@ public interface RoomDao {
     @Query("SELECT * FROM rooms WHERE room_id = :roomId")
     RoomEntity getRoomSync(String roomId);
     
+    @Query("SELECT * FROM rooms WHERE room_id IN (:roomIds)")
+    List<RoomEntity> getRoomsByIdsSync(List<String> roomIds);
+    
     @Query("SELECT * FROM rooms ORDER BY floor, name")
     LiveData<List<RoomEntity>> getAllRooms();
     
@@ -63,4 +77,61 @@ public interface RoomDao {
     
     @Query("DELETE FROM rooms")
     void deleteAll();
+    
+    /**
+     * Fusiona en una sola transacción las habitaciones descargadas de Firebase
+     * Las existentes se actualizan en lugar de reemplazarse, para que el borrado
+     * en cascada de la clave foránea no elimine sus dispositivos
+     * 
+     * @param remoteRooms Habitaciones remotas a aplicar
+     * @param resolver Devuelve la versión ganadora entre (local, remota)
+     * @param syncTimestamp Momento de la sincronización para las habitaciones nuevas
+     * @return Habitaciones remotas que quedaron aplicadas localmente
+     */
+    @Transaction
+    default List<RoomEntity> mergeRemoteRooms(List<RoomEntity> remoteRooms,
+            BinaryOperator<RoomEntity> resolver, long syncTimestamp) {
+        List<RoomEntity> applied = new ArrayList<>();
+        if (remoteRooms == null || remoteRooms.isEmpty()) {
+            return applied;
+        }
+        
+        List<String> ids = new ArrayList<>();
+        for (RoomEntity remote : remoteRooms) {
+            ids.add(remote.getRoomId());
+        }
+        Map<String, RoomEntity> localById = new HashMap<>();
+        for (int start = 0; start < ids.size(); start += DeviceDao.MAX_IN_CLAUSE_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + DeviceDao.MAX_IN_CLAUSE_SIZE, ids.size()));
+            for (RoomEntity local : getRoomsByIdsSync(chunk)) {
+                localById.put(local.getRoomId(), local);
+            }
+        }
+        
+        List<RoomEntity> toInsert = new ArrayList<>();
+        List<RoomEntity> toUpdate = new ArrayList<>();
+        for (RoomEntity remote : remoteRooms) {
+            RoomEntity local = localById.get(remote.getRoomId());
+            if (local == null) {
+                remote.setSynced(true);
+                remote.setLastSync(syncTimestamp);
+                toInsert.add(remote);
+                applied.add(remote);
+            } else {
+                RoomEntity resolved = resolver.apply(local, remote);
+                if (resolved != local) {
+                    toUpdate.add(resolved);
+                    applied.add(resolved);
+                }
+            }
+        }
+        
+        if (!toInsert.isEmpty()) {
+            insertAllIfAbsent(toInsert);
+        }
+        if (!toUpdate.isEmpty()) {
+            updateAll(toUpdate);
+        }
+        return applied;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.pdm.domohouse.data.database.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.database.rollup.RollupResolution;
+
+import java.util.List;
+
+/**
+ * DAO para lecturas numéricas de sensores
+ * Los agregados operan directamente sobre la columna REAL value y cada lectura
+ * registrada con recordReading actualiza también sus buckets en sensor_rollups
+ */
+@Dao
+public interface SensorReadingDao {
+    
+    @Insert
+    long insert(SensorReadingEntity reading);
+    
+    @Insert
+    void insertAll(List<SensorReadingEntity> readings);
+    
+    @Query("SELECT * FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime AND ts <= :endTime ORDER BY ts")
+    LiveData<List<SensorReadingEntity>> getReadings(String deviceId, long startTime, long endTime);
+    
+    @Query("SELECT * FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime AND ts <= :endTime ORDER BY ts")
+    List<SensorReadingEntity> getReadingsSync(String deviceId, long startTime, long endTime);
+    
+    @Query("SELECT * FROM sensor_readings WHERE device_id = :deviceId ORDER BY ts DESC LIMIT 1")
+    SensorReadingEntity getLatestReading(String deviceId);
+    
+    @Query("SELECT AVG(value) FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime")
+    Double getAverageValue(String deviceId, long startTime);
+    
+    @Query("SELECT MIN(value) FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime")
+    Double getMinValue(String deviceId, long startTime);
+    
+    @Query("SELECT MAX(value) FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime")
+    Double getMaxValue(String deviceId, long startTime);
+    
+    @Query("SELECT COUNT(*) FROM sensor_readings WHERE device_id = :deviceId AND ts >= :startTime")
+    int getReadingCount(String deviceId, long startTime);
+    
+    @Query("DELETE FROM sensor_readings WHERE ts < :timestamp")
+    void deleteOldReadings(long timestamp);
+    
+    // Las lecturas se insertan en orden de tiempo, así que las más antiguas tienen los reading_id menores
+    @Query("DELETE FROM sensor_readings WHERE reading_id IN (SELECT reading_id FROM sensor_readings " +
+            "WHERE ts < :timestamp ORDER BY reading_id LIMIT :batchSize)")
+    int deleteOldReadingsBatch(long timestamp, int batchSize);
+    
+    @Query("DELETE FROM sensor_readings")
+    void deleteAll();
+    
+    // Escritura incremental de rollups: se crea el bucket vacío si no existe y luego se acumula
+    
+    @Query("INSERT OR IGNORE INTO sensor_rollups (device_id, bucket_size, bucket_start, min_value, max_value, sum_value, value_count) " +
+            "VALUES (:deviceId, :bucketSize, :bucketStart, :value, :value, 0, 0)")
+    void insertEmptyRollup(String deviceId, long bucketSize, long bucketStart, double value);
+    
+    @Query("UPDATE sensor_rollups SET min_value = MIN(min_value, :value), max_value = MAX(max_value, :value), " +
+            "sum_value = sum_value + :value, value_count = value_count + 1 " +
+            "WHERE device_id = :deviceId AND bucket_size = :bucketSize AND bucket_start = :bucketStart")
+    void accumulateRollup(String deviceId, long bucketSize, long bucketStart, double value);
+    
+    /**
+     * Inserta la lectura y actualiza sus buckets de 1 minuto, 1 hora y 1 día
+     * en una sola transacción
+     */
+    @Transaction
+    default long recordReading(SensorReadingEntity reading) {
+        long readingId = insert(reading);
+        for (RollupResolution resolution : RollupResolution.values()) {
+            long bucketStart = resolution.bucketStart(reading.getTs());
+            insertEmptyRollup(reading.getDeviceId(), resolution.getBucketSizeMs(), bucketStart, reading.getValue());
+            accumulateRollup(reading.getDeviceId(), resolution.getBucketSizeMs(), bucketStart, reading.getValue());
+        }
+        return readingId;
+    }
+}
@@ -0,0 +1,38 @@
+package com.pdm.domohouse.data.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.pdm.domohouse.data.database.rollup.SensorRollupPoint;
+
+import java.util.List;
+
+/**
+ * DAO de lectura de los agregados por bucket de los sensores
+ * Las consultas devuelven a lo sumo un punto por bucket, sin importar cuántas lecturas haya
+ */
+@Dao
+public interface SensorRollupDao {
+    
+    @Query("SELECT bucket_start, min_value, max_value, sum_value, value_count FROM sensor_rollups " +
+            "WHERE device_id = :deviceId AND bucket_size = :bucketSize AND bucket_start >= :startTime " +
+            "ORDER BY bucket_start")
+    List<SensorRollupPoint> getDeviceRollups(String deviceId, long bucketSize, long startTime);
+    
+    // Combina todos los sensores en un solo punto por bucket
+    @Query("SELECT bucket_start, MIN(min_value) AS min_value, MAX(max_value) AS max_value, " +
+            "SUM(sum_value) AS sum_value, SUM(value_count) AS value_count FROM sensor_rollups " +
+            "WHERE bucket_size = :bucketSize AND bucket_start >= :startTime " +
+            "GROUP BY bucket_start ORDER BY bucket_start")
+    List<SensorRollupPoint> getCombinedRollups(long bucketSize, long startTime);
+    
+    @Query("DELETE FROM sensor_rollups WHERE bucket_size = :bucketSize AND bucket_start < :timestamp")
+    void deleteOldRollups(long bucketSize, long timestamp);
+    
+    @Query("DELETE FROM sensor_rollups WHERE rowid IN (SELECT rowid FROM sensor_rollups " +
+            "WHERE bucket_size = :bucketSize AND bucket_start < :timestamp LIMIT :batchSize)")
+    int deleteOldRollupsBatch(long bucketSize, long timestamp, int batchSize);
+    
+    @Query("DELETE FROM sensor_rollups")
+    void deleteAll();
+}
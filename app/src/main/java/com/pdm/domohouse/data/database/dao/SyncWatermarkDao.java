@@ -0,0 +1,25 @@
+package com.pdm.domohouse.data.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.pdm.domohouse.data.database.entity.SyncWatermarkEntity;
+
+/**
+ * DAO para las marcas de agua de sincronización incremental
+ * Cada tabla sincronizada guarda hasta dónde se descargaron cambios remotos
+ */
+@Dao
+public interface SyncWatermarkDao {
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(SyncWatermarkEntity watermark);
+    
+    @Query("SELECT watermark FROM sync_watermarks WHERE table_name = :tableName")
+    Long getWatermark(String tableName);
+    
+    @Query("DELETE FROM sync_watermarks")
+    void deleteAll();
+}
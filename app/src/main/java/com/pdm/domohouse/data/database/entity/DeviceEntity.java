@@ -200,4 +200,28 @@ public class DeviceEntity {
     public void setPinNumber(Integer pinNumber) {
         this.pinNumber = pinNumber;
     }
+    
+    /**
+     * Crea una copia independiente de la entidad
+     * Permite modificar el estado en cache sin tocar instancias compartidas con la UI
+     */
+    public DeviceEntity copy() {
+        DeviceEntity copy = new DeviceEntity();
+        copy.deviceId = deviceId;
+        copy.roomId = roomId;
+        copy.name = name;
+        copy.deviceType = deviceType;
+        copy.isOn = isOn;
+        copy.intensity = intensity;
+        copy.temperature = temperature;
+        copy.isOnline = isOnline;
+        copy.lastStateChange = lastStateChange;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.lastSync = lastSync;
+        copy.isSynced = isSynced;
+        copy.hardwareId = hardwareId;
+        copy.pinNumber = pinNumber;
+        return copy;
+    }
 }
\ No newline at end of file
@@ -10,6 +10,11 @@ import androidx.room.PrimaryKey;
 /**
  * Entidad de Room para almacenar el historial de cambios de estado de dispositivos
  * Útil para reportes y análisis de uso
+ * 
+ * Los índices compuestos siguen los patrones de acceso de DeviceHistoryDao:
+ * (device_id, timestamp) historial por dispositivo, (device_id, action, timestamp)
+ * conteos y promedios, (is_synced, timestamp) pendientes de sincronizar,
+ * (user_id, timestamp) y (action, timestamp) consultas por usuario y acción
  */
 @Entity(tableName = "device_history",
         foreignKeys = @ForeignKey(
@@ -18,7 +23,14 @@ import androidx.room.PrimaryKey;
                 childColumns = "device_id",
                 onDelete = ForeignKey.CASCADE
         ),
-        indices = {@Index("device_id"), @Index("timestamp")})
+        indices = {
+                @Index(value = {"device_id", "timestamp"}),
+                @Index(value = {"device_id", "action", "timestamp"}),
+                @Index("timestamp"),
+                @Index(value = {"is_synced", "timestamp"}),
+                @Index(value = {"user_id", "timestamp"}),
+                @Index(value = {"action", "timestamp"})
+        })
 public class DeviceHistoryEntity {
     @PrimaryKey(autoGenerate = true)
     @ColumnInfo(name = "history_id")
@@ -29,7 +41,7 @@ public class DeviceHistoryEntity {
     private String deviceId;
     
     @ColumnInfo(name = "action")
-    private String action; // ON, OFF, INTENSITY_CHANGE, TEMPERATURE_READING, etc.
+    private String action; // ON, OFF, INTENSITY_CHANGE, etc. (las lecturas van a sensor_readings)
     
     @ColumnInfo(name = "old_value")
     private String oldValue;
@@ -41,7 +53,7 @@ public class DeviceHistoryEntity {
     private long timestamp;
     
     @ColumnInfo(name = "triggered_by")
-    private String triggeredBy; // USER, SCHEDULE, AUTOMATION, SENSOR
+    private String triggeredBy; // USER, SCENE, SCHEDULE, AUTOMATION, SENSOR
     
     @ColumnInfo(name = "user_id")
     private String userId; // ID del usuario que realizó la acción (si aplica)
@@ -0,0 +1,82 @@
+package com.pdm.domohouse.data.database.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entidad de Room para lecturas numéricas de sensores (temperatura, humedad, etc.)
+ * Guarda el valor como REAL para que los agregados no conviertan texto fila por fila
+ */
+@Entity(tableName = "sensor_readings",
+        foreignKeys = @ForeignKey(
+                entity = DeviceEntity.class,
+                parentColumns = "device_id",
+                childColumns = "device_id",
+                onDelete = ForeignKey.CASCADE
+        ),
+        indices = {@Index(value = {"device_id", "ts"})})
+public class SensorReadingEntity {
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "reading_id")
+    private long readingId;
+    
+    @NonNull
+    @ColumnInfo(name = "device_id")
+    private String deviceId;
+    
+    @ColumnInfo(name = "ts")
+    private long ts;
+    
+    @ColumnInfo(name = "value")
+    private double value;
+    
+    // Constructor
+    public SensorReadingEntity() {
+        this.deviceId = "";
+        this.ts = System.currentTimeMillis();
+    }
+    
+    public SensorReadingEntity(@NonNull String deviceId, long ts, double value) {
+        this.deviceId = deviceId;
+        this.ts = ts;
+        this.value = value;
+    }
+    
+    // Getters y Setters
+    public long getReadingId() {
+        return readingId;
+    }
+    
+    public void setReadingId(long readingId) {
+        this.readingId = readingId;
+    }
+    
+    @NonNull
+    public String getDeviceId() {
+        return deviceId;
+    }
+    
+    public void setDeviceId(@NonNull String deviceId) {
+        this.deviceId = deviceId;
+    }
+    
+    public long getTs() {
+        return ts;
+    }
+    
+    public void setTs(long ts) {
+        this.ts = ts;
+    }
+    
+    public double getValue() {
+        return value;
+    }
+    
+    public void setValue(double value) {
+        this.value = value;
+    }
+}
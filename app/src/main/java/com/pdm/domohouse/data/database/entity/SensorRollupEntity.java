@@ -0,0 +1,108 @@
+package com.pdm.domohouse.data.database.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Entidad de Room con agregados por bucket de tiempo de las lecturas de sensores
+ * Cada fila acumula min, max, suma y conteo de un dispositivo en un bucket de
+ * 1 minuto, 1 hora o 1 día, y se actualiza de forma incremental con cada lectura
+ */
+@Entity(tableName = "sensor_rollups",
+        primaryKeys = {"device_id", "bucket_size", "bucket_start"},
+        foreignKeys = @ForeignKey(
+                entity = DeviceEntity.class,
+                parentColumns = "device_id",
+                childColumns = "device_id",
+                onDelete = ForeignKey.CASCADE
+        ),
+        indices = {@Index(value = {"bucket_size", "bucket_start"})})
+public class SensorRollupEntity {
+    @NonNull
+    @ColumnInfo(name = "device_id")
+    private String deviceId;
+    
+    @ColumnInfo(name = "bucket_size")
+    private long bucketSize; // Duración del bucket en milisegundos
+    
+    @ColumnInfo(name = "bucket_start")
+    private long bucketStart;
+    
+    @ColumnInfo(name = "min_value")
+    private double minValue;
+    
+    @ColumnInfo(name = "max_value")
+    private double maxValue;
+    
+    @ColumnInfo(name = "sum_value")
+    private double sumValue;
+    
+    @ColumnInfo(name = "value_count")
+    private long valueCount;
+    
+    // Constructor
+    public SensorRollupEntity() {
+        this.deviceId = "";
+    }
+    
+    // Getters y Setters
+    @NonNull
+    public String getDeviceId() {
+        return deviceId;
+    }
+    
+    public void setDeviceId(@NonNull String deviceId) {
+        this.deviceId = deviceId;
+    }
+    
+    public long getBucketSize() {
+        return bucketSize;
+    }
+    
+    public void setBucketSize(long bucketSize) {
+        this.bucketSize = bucketSize;
+    }
+    
+    public long getBucketStart() {
+        return bucketStart;
+    }
+    
+    public void setBucketStart(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+    
+    public double getMinValue() {
+        return minValue;
+    }
+    
+    public void setMinValue(double minValue) {
+        this.minValue = minValue;
+    }
+    
+    public double getMaxValue() {
+        return maxValue;
+    }
+    
+    public void setMaxValue(double maxValue) {
+        this.maxValue = maxValue;
+    }
+    
+    public double getSumValue() {
+        return sumValue;
+    }
+    
+    public void setSumValue(double sumValue) {
+        this.sumValue = sumValue;
+    }
+    
+    public long getValueCount() {
+        return valueCount;
+    }
+    
+    public void setValueCount(long valueCount) {
+        this.valueCount = valueCount;
+    }
+}
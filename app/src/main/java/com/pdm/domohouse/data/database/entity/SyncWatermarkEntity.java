@@ -0,0 +1,57 @@
+package com.pdm.domohouse.data.database.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entidad de Room para guardar la marca de agua de sincronización por tabla
+ * Registra el mayor updatedAt remoto descargado para hacer descargas incrementales
+ */
+@Entity(tableName = "sync_watermarks")
+public class SyncWatermarkEntity {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "table_name")
+    private String tableName; // rooms, devices, etc.
+    
+    @ColumnInfo(name = "watermark")
+    private long watermark; // Mayor updatedAt remoto ya aplicado localmente
+    
+    @ColumnInfo(name = "updated_at")
+    private long updatedAt;
+    
+    // Constructor
+    public SyncWatermarkEntity() {
+        this.tableName = "";
+        this.watermark = 0;
+        this.updatedAt = System.currentTimeMillis();
+    }
+    
+    // Getters y Setters
+    @NonNull
+    public String getTableName() {
+        return tableName;
+    }
+    
+    public void setTableName(@NonNull String tableName) {
+        this.tableName = tableName;
+    }
+    
+    public long getWatermark() {
+        return watermark;
+    }
+    
+    public void setWatermark(long watermark) {
+        this.watermark = watermark;
+    }
+    
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
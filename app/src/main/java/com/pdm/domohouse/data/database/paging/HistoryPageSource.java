@@ -0,0 +1,122 @@
+package com.pdm.domohouse.data.database.paging;
+
+import androidx.annotation.NonNull;
+
+import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Fuente paginada del historial de dispositivos basada en cursor (timestamp, history_id)
+ * Carga una página a la vez, por lo que la memoria usada no depende del tamaño del historial.
+ * No es thread-safe: cada consumidor debe usar su propia instancia
+ * y llamarla desde un hilo de fondo.
+ */
+public class HistoryPageSource implements Iterable<List<DeviceHistoryEntity>> {
+    
+    /**
+     * Carga una página a partir del cursor dado
+     */
+    public interface PageLoader {
+        List<DeviceHistoryEntity> load(long cursorTimestamp, long cursorId, int pageSize);
+    }
+    
+    private final PageLoader loader;
+    private final int pageSize;
+    
+    // Posición actual del cursor
+    private long cursorTimestamp;
+    private long cursorId;
+    private boolean exhausted;
+    
+    private HistoryPageSource(PageLoader loader, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("El tamaño de página debe ser positivo");
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+        reset();
+    }
+    
+    /**
+     * Historial pendiente de sincronizar, del más antiguo al más nuevo
+     */
+    public static HistoryPageSource unsynced(@NonNull DeviceHistoryDao dao, int pageSize) {
+        return new HistoryPageSource(dao::getUnsyncedHistoryPage, pageSize);
+    }
+    
+    /**
+     * Carga la siguiente página y avanza el cursor
+     * @return La página cargada, o una lista vacía si no quedan filas
+     */
+    public List<DeviceHistoryEntity> loadNextPage() {
+        if (exhausted) {
+            return Collections.emptyList();
+        }
+        
+        List<DeviceHistoryEntity> page = loader.load(cursorTimestamp, cursorId, pageSize);
+        if (page == null || page.isEmpty()) {
+            exhausted = true;
+            return Collections.emptyList();
+        }
+        
+        DeviceHistoryEntity last = page.get(page.size() - 1);
+        cursorTimestamp = last.getTimestamp();
+        cursorId = last.getHistoryId();
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+        return page;
+    }
+    
+    /**
+     * Indica si podrían quedar más páginas
+     */
+    public boolean hasMore() {
+        return !exhausted;
+    }
+    
+    /**
+     * Vuelve el cursor al inicio
+     */
+    public void reset() {
+        cursorTimestamp = Long.MIN_VALUE;
+        cursorId = Long.MIN_VALUE;
+        exhausted = false;
+    }
+    
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    @NonNull
+    @Override
+    public Iterator<List<DeviceHistoryEntity>> iterator() {
+        return new Iterator<List<DeviceHistoryEntity>>() {
+            private List<DeviceHistoryEntity> next;
+            
+            @Override
+            public boolean hasNext() {
+                if (next == null && hasMore()) {
+                    List<DeviceHistoryEntity> page = loadNextPage();
+                    next = page.isEmpty() ? null : page;
+                }
+                return next != null;
+            }
+            
+            @Override
+            public List<DeviceHistoryEntity> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<DeviceHistoryEntity> page = next;
+                next = null;
+                return page;
+            }
+        };
+    }
+}
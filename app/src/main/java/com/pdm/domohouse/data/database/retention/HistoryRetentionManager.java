@@ -0,0 +1,221 @@
+package com.pdm.domohouse.data.database.retention;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.database.AppDatabase;
+import com.pdm.domohouse.data.database.rollup.RollupResolution;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Motor de retención del historial local
+ * Borra en lotes acotados el historial ya sincronizado, las lecturas crudas cuyo valor
+ * ya quedó agregado en sensor_rollups y los buckets finos antiguos; al final devuelve
+ * al sistema las páginas libres con VACUUM incremental si la base está en ese modo
+ */
+public class HistoryRetentionManager {
+    
+    private static final String TAG = "HistoryRetentionManager";
+    private static final long RETENTION_INTERVAL_HOURS = 6;
+    private static final long INITIAL_DELAY_MINUTES = 5;
+    
+    // Páginas liberadas por cada VACUUM incremental
+    private static final int VACUUM_PAGES = 1000;
+    
+    // Valor de PRAGMA auto_vacuum para el modo incremental
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+    
+    private static HistoryRetentionManager instance;
+    
+    private final AppDatabase database;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile RetentionPolicy policy = new RetentionPolicy();
+    private ScheduledFuture<?> scheduledRun;
+    
+    /**
+     * Resultado de una pasada de retención
+     */
+    public static class Result {
+        public int historyDeleted;
+        public int readingsDeleted;
+        public int rollupsDeleted;
+        public int batches;
+        public long durationMs;
+        
+        @Override
+        public String toString() {
+            return "Result{history=" + historyDeleted +
+                    ", readings=" + readingsDeleted +
+                    ", rollups=" + rollupsDeleted +
+                    ", batches=" + batches +
+                    ", durationMs=" + durationMs + "}";
+        }
+    }
+    
+    HistoryRetentionManager(AppDatabase database) {
+        this.database = database;
+    }
+    
+    public static synchronized HistoryRetentionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new HistoryRetentionManager(AppDatabase.getDatabase(context));
+        }
+        return instance;
+    }
+    
+    public RetentionPolicy getPolicy() {
+        return policy;
+    }
+    
+    public void setPolicy(RetentionPolicy policy) {
+        this.policy = policy != null ? policy : new RetentionPolicy();
+    }
+    
+    /**
+     * Programa la retención periódica en segundo plano
+     * El planificador compartido solo dispara la pasada; los borrados corren en diskIO
+     */
+    public synchronized void start() {
+        if (scheduledRun == null || scheduledRun.isDone()) {
+            AppExecutors executors = AppExecutors.getInstance();
+            scheduledRun = executors.scheduler().scheduleWithFixedDelay(
+                    () -> executors.diskIO().execute(this::runSafely),
+                    INITIAL_DELAY_MINUTES,
+                    TimeUnit.HOURS.toMinutes(RETENTION_INTERVAL_HOURS),
+                    TimeUnit.MINUTES
+            );
+            Log.d(TAG, "Retención programada cada " + RETENTION_INTERVAL_HOURS + " horas");
+        }
+    }
+    
+    /**
+     * Detiene la retención periódica; una pasada ya en curso termina normalmente
+     */
+    public synchronized void stop() {
+        if (scheduledRun != null) {
+            scheduledRun.cancel(false);
+            scheduledRun = null;
+        }
+    }
+    
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (Exception e) {
+            Log.e(TAG, "Error en la retención del historial", e);
+        }
+    }
+    
+    /**
+     * Ejecuta una pasada completa de retención; debe llamarse desde un hilo de fondo
+     * 
+     * @return Resultado de la pasada, o null si ya había otra en curso
+     */
+    public Result runOnce() {
+        return runOnce(System.currentTimeMillis());
+    }
+    
+    Result runOnce(long now) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        
+        long startTime = System.currentTimeMillis();
+        Result result = new Result();
+        RetentionPolicy current = policy;
+        int batchSize = current.getBatchSize();
+        try {
+            // Historial de acciones: solo lo ya subido a Firebase
+            long historyCutoff = cutoff(now, current.getHistoryDays());
+            if (historyCutoff > 0) {
+                int deleted;
+                do {
+                    deleted = database.deviceHistoryDao().deleteSyncedHistoryBatch(historyCutoff, batchSize);
+                    result.historyDeleted += deleted;
+                    result.batches++;
+                } while (deleted == batchSize);
+            }
+            
+            // Lecturas crudas: sus valores ya están acumulados en los rollups
+            long readingCutoff = cutoff(now, current.getRawReadingDays());
+            if (readingCutoff > 0) {
+                int deleted;
+                do {
+                    deleted = database.sensorReadingDao().deleteOldReadingsBatch(readingCutoff, batchSize);
+                    result.readingsDeleted += deleted;
+                    result.batches++;
+                } while (deleted == batchSize);
+            }
+            
+            // Buckets antiguos: se conservan solo los de resolución más gruesa
+            result.rollupsDeleted += deleteRollups(RollupResolution.MINUTE,
+                    cutoff(now, current.getMinuteRollupDays()), batchSize, result);
+            result.rollupsDeleted += deleteRollups(RollupResolution.HOUR,
+                    cutoff(now, current.getHourRollupDays()), batchSize, result);
+            result.rollupsDeleted += deleteRollups(RollupResolution.DAY,
+                    cutoff(now, current.getDayRollupDays()), batchSize, result);
+            
+            if (result.historyDeleted + result.readingsDeleted + result.rollupsDeleted > 0) {
+                reclaimSpace();
+            }
+            
+            result.durationMs = System.currentTimeMillis() - startTime;
+            Log.d(TAG, "Retención completada: " + result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+    
+    private int deleteRollups(RollupResolution resolution, long cutoff, int batchSize, Result result) {
+        if (cutoff <= 0) {
+            return 0;
+        }
+        int total = 0;
+        int deleted;
+        do {
+            deleted = database.sensorRollupDao().deleteOldRollupsBatch(
+                    resolution.getBucketSizeMs(), cutoff, batchSize);
+            total += deleted;
+            result.batches++;
+        } while (deleted == batchSize);
+        return total;
+    }
+    
+    /**
+     * Devuelve al sistema las páginas libres del archivo de base de datos
+     * Solo si la base está en auto_vacuum INCREMENTAL, que AppDatabase activa al abrirla
+     * (también en las bases actualizadas); si ese VACUUM aún no se completó, las páginas
+     * libres se reutilizan y aquí no se hace nada
+     */
+    private void reclaimSpace() {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        int autoVacuum = 0;
+        try (Cursor cursor = db.query("PRAGMA auto_vacuum")) {
+            if (cursor.moveToFirst()) {
+                autoVacuum = cursor.getInt(0);
+            }
+        }
+        
+        if (autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            return;
+        }
+        
+        try (Cursor cursor = db.query("PRAGMA incremental_vacuum(" + VACUUM_PAGES + ")")) {
+            while (cursor.moveToNext()) {
+                // Cada paso libera una página
+            }
+        }
+    }
+    
+    private static long cutoff(long now, int days) {
+        return days > 0 ? now - TimeUnit.DAYS.toMillis(days) : 0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.pdm.domohouse.data.database.retention;
+
+/**
+ * Configuración de retención de los datos históricos locales
+ * Los períodos se expresan en días; un valor de 0 o menor desactiva el borrado de esa categoría
+ */
+public class RetentionPolicy {
+    
+    // Valores por defecto
+    public static final int DEFAULT_HISTORY_DAYS = 30;
+    public static final int DEFAULT_RAW_READING_DAYS = 7;
+    public static final int DEFAULT_MINUTE_ROLLUP_DAYS = 7;
+    public static final int DEFAULT_HOUR_ROLLUP_DAYS = 90;
+    public static final int DEFAULT_DAY_ROLLUP_DAYS = 0; // Los buckets diarios se conservan siempre
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    
+    private int historyDays = DEFAULT_HISTORY_DAYS;
+    private int rawReadingDays = DEFAULT_RAW_READING_DAYS;
+    private int minuteRollupDays = DEFAULT_MINUTE_ROLLUP_DAYS;
+    private int hourRollupDays = DEFAULT_HOUR_ROLLUP_DAYS;
+    private int dayRollupDays = DEFAULT_DAY_ROLLUP_DAYS;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    
+    // Getters y Setters
+    public int getHistoryDays() {
+        return historyDays;
+    }
+    
+    public void setHistoryDays(int historyDays) {
+        this.historyDays = historyDays;
+    }
+    
+    public int getRawReadingDays() {
+        return rawReadingDays;
+    }
+    
+    public void setRawReadingDays(int rawReadingDays) {
+        this.rawReadingDays = rawReadingDays;
+    }
+    
+    public int getMinuteRollupDays() {
+        return minuteRollupDays;
+    }
+    
+    public void setMinuteRollupDays(int minuteRollupDays) {
+        this.minuteRollupDays = minuteRollupDays;
+    }
+    
+    public int getHourRollupDays() {
+        return hourRollupDays;
+    }
+    
+    public void setHourRollupDays(int hourRollupDays) {
+        this.hourRollupDays = hourRollupDays;
+    }
+    
+    public int getDayRollupDays() {
+        return dayRollupDays;
+    }
+    
+    public void setDayRollupDays(int dayRollupDays) {
+        this.dayRollupDays = dayRollupDays;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+}
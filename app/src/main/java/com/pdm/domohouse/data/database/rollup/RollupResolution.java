@@ -0,0 +1,44 @@
+package com.pdm.domohouse.data.database.rollup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resoluciones de los buckets de agregación de lecturas de sensores
+ * Los buckets se alinean a la época Unix (UTC)
+ */
+public enum RollupResolution {
+    MINUTE(TimeUnit.MINUTES.toMillis(1)),
+    HOUR(TimeUnit.HOURS.toMillis(1)),
+    DAY(TimeUnit.DAYS.toMillis(1));
+    
+    private final long bucketSizeMs;
+    
+    RollupResolution(long bucketSizeMs) {
+        this.bucketSizeMs = bucketSizeMs;
+    }
+    
+    public long getBucketSizeMs() {
+        return bucketSizeMs;
+    }
+    
+    /**
+     * Calcula el inicio del bucket que contiene el instante dado
+     */
+    public long bucketStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, bucketSizeMs);
+    }
+    
+    /**
+     * Elige la resolución más gruesa que aún entrega al menos minPoints buckets
+     * para el intervalo dado, de modo que el número de puntos quede acotado
+     */
+    public static RollupResolution forSpan(long spanMs, int minPoints) {
+        RollupResolution[] resolutions = values();
+        for (int i = resolutions.length - 1; i >= 0; i--) {
+            if (spanMs / resolutions[i].bucketSizeMs >= minPoints) {
+                return resolutions[i];
+            }
+        }
+        return MINUTE;
+    }
+}
@@ -0,0 +1,72 @@
+package com.pdm.domohouse.data.database.rollup;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Punto agregado de un bucket de lecturas, listo para graficar
+ * Puede representar un solo sensor o la combinación de varios
+ */
+public class SensorRollupPoint {
+    @ColumnInfo(name = "bucket_start")
+    private long bucketStart;
+    
+    @ColumnInfo(name = "min_value")
+    private double minValue;
+    
+    @ColumnInfo(name = "max_value")
+    private double maxValue;
+    
+    @ColumnInfo(name = "sum_value")
+    private double sumValue;
+    
+    @ColumnInfo(name = "value_count")
+    private long valueCount;
+    
+    /**
+     * Promedio del bucket calculado a partir de la suma y el conteo
+     */
+    public double getAverage() {
+        return valueCount > 0 ? sumValue / valueCount : 0;
+    }
+    
+    // Getters y Setters
+    public long getBucketStart() {
+        return bucketStart;
+    }
+    
+    public void setBucketStart(long bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+    
+    public double getMinValue() {
+        return minValue;
+    }
+    
+    public void setMinValue(double minValue) {
+        this.minValue = minValue;
+    }
+    
+    public double getMaxValue() {
+        return maxValue;
+    }
+    
+    public void setMaxValue(double maxValue) {
+        this.maxValue = maxValue;
+    }
+    
+    public double getSumValue() {
+        return sumValue;
+    }
+    
+    public void setSumValue(double sumValue) {
+        this.sumValue = sumValue;
+    }
+    
+    public long getValueCount() {
+        return valueCount;
+    }
+    
+    public void setValueCount(long valueCount) {
+        this.valueCount = valueCount;
+    }
+}
@@ -7,6 +7,7 @@ import com.pdm.domohouse.data.model.DeviceType;
 import com.pdm.domohouse.data.model.Room;
 import com.pdm.domohouse.data.model.RoomStatus;
 import com.pdm.domohouse.data.model.RoomType;
+import com.pdm.domohouse.data.repository.DeviceGraph;
 import com.pdm.domohouse.data.repository.DeviceRepository;
 import com.pdm.domohouse.data.repository.RoomRepository;
 
@@ -27,6 +28,12 @@ public class RoomSystemManager {
     private final RoomRepository roomRepository;
     private final DeviceRepository deviceRepository;
     
+    // Grafo compartido de dispositivos: una sola consulta para todas las habitaciones
+    private final DeviceGraph deviceGraph;
+    
+    // Evita crear el sistema por defecto más de una vez mientras Room inserta las habitaciones
+    private boolean defaultSystemRequested = false;
+    
     // LiveData para observar cambios
     private final MutableLiveData<Boolean> esp32Connected = new MutableLiveData<>(true);
     private final MutableLiveData<String> esp32Status = new MutableLiveData<>("Conectado - 3/3 Arduinos Activos");
@@ -46,6 +53,7 @@ public class RoomSystemManager {
     private RoomSystemManager(RoomRepository roomRepository, DeviceRepository deviceRepository) {
         this.roomRepository = roomRepository;
         this.deviceRepository = deviceRepository;
+        this.deviceGraph = deviceRepository.getDeviceGraph();
         initializeRoomSystem();
     }
     
@@ -59,16 +67,12 @@ public class RoomSystemManager {
     
     /**
      * Inicializa el sistema de habitaciones si no existe
+     * Registra un único observador de habitaciones y uno del grafo de dispositivos
+     * para toda la vida del proceso
      */
     private void initializeRoomSystem() {
-        // Verificar si las habitaciones ya existen
-        roomRepository.getRoom(ROOM_1_ID).observeForever(room -> {
-            if (room == null) {
-                createDefaultRoomSystem();
-            } else {
-                loadExistingRoomSystem();
-            }
-        });
+        roomRepository.getAllRooms().observeForever(this::onRoomsChanged);
+        deviceGraph.getDevicesByRoom().observeForever(this::onDevicesChanged);
     }
     
     /**
@@ -158,12 +162,9 @@ public class RoomSystemManager {
                 break;
         }
         
-        // Guardar dispositivos
+        // Guardar dispositivos; el grafo se actualiza solo cuando Room los inserta
         for (Device device : devices) {
-            deviceRepository.addDevice(device).thenAccept(success -> {
-                // Actualizar la lista de dispositivos por habitación
-                updateRoomDevicesMap();
-            });
+            deviceRepository.addDevice(device);
         }
     }
     
@@ -218,44 +219,46 @@ public class RoomSystemManager {
     }
     
     /**
-     * Carga el sistema de habitaciones existente
+     * Carga las habitaciones del sistema cada vez que cambian en Room
+     * Si la habitación 1 aún no existe se crea el sistema por defecto
      */
-    private void loadExistingRoomSystem() {
-        roomRepository.getAllRooms().observeForever(roomList -> {
-            if (roomList != null) {
-                // Filtrar solo las 3 habitaciones del sistema Arduino
-                List<Room> systemRooms = new ArrayList<>();
-                for (Room room : roomList) {
-                    if (room.getId().equals(ROOM_1_ID) || 
-                        room.getId().equals(ROOM_2_ID) || 
-                        room.getId().equals(ROOM_3_ID)) {
-                        systemRooms.add(room);
-                    }
-                }
-                rooms.setValue(systemRooms);
-                updateRoomDevicesMap();
+    private void onRoomsChanged(List<Room> roomList) {
+        if (roomList == null) {
+            return;
+        }
+        
+        // Filtrar solo las 3 habitaciones del sistema Arduino
+        List<Room> systemRooms = new ArrayList<>();
+        boolean hasFirstRoom = false;
+        for (Room room : roomList) {
+            if (room.getId().equals(ROOM_1_ID) || 
+                room.getId().equals(ROOM_2_ID) || 
+                room.getId().equals(ROOM_3_ID)) {
+                systemRooms.add(room);
+                hasFirstRoom |= room.getId().equals(ROOM_1_ID);
+            }
+        }
+        
+        if (!hasFirstRoom) {
+            if (!defaultSystemRequested) {
+                defaultSystemRequested = true;
+                createDefaultRoomSystem();
             }
-        });
+            return;
+        }
+        rooms.setValue(systemRooms);
     }
     
     /**
-     * Actualiza el mapa de dispositivos por habitación
+     * Actualiza el mapa de dispositivos por habitación a partir del grafo compartido
      */
-    private void updateRoomDevicesMap() {
+    private void onDevicesChanged(Map<String, List<Device>> devicesByRoom) {
         Map<String, List<Device>> deviceMap = new HashMap<>();
-        
-        deviceRepository.getDevicesByRoom(ROOM_1_ID).observeForever(devices -> {
-            deviceMap.put(ROOM_1_ID, devices != null ? devices : new ArrayList<>());
-            
-            deviceRepository.getDevicesByRoom(ROOM_2_ID).observeForever(devices2 -> {
-                deviceMap.put(ROOM_2_ID, devices2 != null ? devices2 : new ArrayList<>());
-                
-                deviceRepository.getDevicesByRoom(ROOM_3_ID).observeForever(devices3 -> {
-                    deviceMap.put(ROOM_3_ID, devices3 != null ? devices3 : new ArrayList<>());
-                    roomDevices.setValue(deviceMap);
-                });
-            });
-        });
+        for (String roomId : new String[]{ROOM_1_ID, ROOM_2_ID, ROOM_3_ID}) {
+            List<Device> devices = devicesByRoom != null ? devicesByRoom.get(roomId) : null;
+            deviceMap.put(roomId, devices != null ? devices : new ArrayList<>());
+        }
+        roomDevices.setValue(deviceMap);
     }
     
     /**
@@ -337,6 +340,13 @@ public class RoomSystemManager {
     public LiveData<List<Room>> getRooms() { return rooms; }
     public LiveData<Map<String, List<Device>>> getRoomDevices() { return roomDevices; }
     
+    /**
+     * Flujo de los dispositivos de una habitación, derivado del grafo compartido
+     */
+    public LiveData<List<Device>> getRoomDevices(String roomId) {
+        return deviceGraph.getRoomDevices(roomId);
+    }
+    
     /**
      * Actualiza el estado de una habitación específica
      */
@@ -385,9 +395,9 @@ public class RoomSystemManager {
     
     /**
      * Fuerza la actualización de todos los datos
+     * Habitaciones y dispositivos ya se observan en vivo, solo se recalcula el estado del ESP32
      */
     public void refreshAllData() {
-        loadExistingRoomSystem();
         updateESP32Status();
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.pdm.domohouse.data.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias con cubetas fijas en escala aproximadamente logarítmica
+ * Registrar una muestra no reserva memoria ni bloquea; los percentiles son aproximados
+ * (límite superior de la cubeta que contiene el percentil)
+ */
+public class LatencyHistogram {
+    
+    // Límite superior de cada cubeta en microsegundos; la última cubeta recoge el resto
+    static final long[] BOUNDS_US = {
+        50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+        100_000, 250_000, 500_000, 1_000_000
+    };
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_US.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    /**
+     * Registra una duración en nanosegundos
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1_000;
+        int bucket = 0;
+        while (bucket < BOUNDS_US.length && micros > BOUNDS_US[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+    
+    public long getCount() {
+        return count.get();
+    }
+    
+    public long getMeanMicros() {
+        long samples = count.get();
+        return samples > 0 ? totalNanos.get() / samples / 1_000 : 0;
+    }
+    
+    public long getMaxMicros() {
+        return maxNanos.get() / 1_000;
+    }
+    
+    /**
+     * Percentil aproximado en microsegundos
+     * @param percentile Valor entre 0 y 100
+     */
+    public long getPercentileMicros(double percentile) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(samples * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_US.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(BOUNDS_US[i], getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+    
+    /**
+     * Conteo de muestras por cubeta, en el orden de BOUNDS_US más la cubeta de desborde
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return counts;
+    }
+    
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+}
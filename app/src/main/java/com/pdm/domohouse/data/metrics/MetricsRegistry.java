@@ -0,0 +1,218 @@
+package com.pdm.domohouse.data.metrics;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro central de métricas de caches, repositorios y DAOs
+ * Cada cache publica aciertos, fallos, latencia de carga, evicciones por causa y bytes
+ * retenidos; las operaciones de repositorio y DAO publican histogramas de latencia.
+ * El contenido se consulta desde la pantalla de depuración o se vuelca a un archivo
+ */
+public class MetricsRegistry {
+    
+    private static final String DUMP_DIR = "metrics";
+    
+    /**
+     * Motivo por el que una entrada salió de un cache
+     */
+    public enum EvictionCause {
+        SIZE,        // Expulsada por el presupuesto de bytes
+        EXPIRED,     // Eliminada al leerse vencida
+        INVALIDATED, // Eliminada por el bus de invalidación
+        TRIMMED      // Recortada por presión de memoria (onTrimMemory)
+    }
+    
+    private static MetricsRegistry instance;
+    
+    private final Map<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> operations = new ConcurrentHashMap<>();
+    
+    MetricsRegistry() {
+    }
+    
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+    
+    /**
+     * Métricas de un cache, creadas la primera vez que se piden
+     */
+    public CacheMetrics cache(@NonNull String name) {
+        return caches.computeIfAbsent(name, key -> new CacheMetrics());
+    }
+    
+    /**
+     * Histograma de latencia de una operación de repositorio o DAO
+     */
+    public LatencyHistogram operation(@NonNull String name) {
+        return operations.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+    
+    /**
+     * Registra la duración de una operación iniciada en startNanos (System.nanoTime())
+     */
+    public void recordLatency(@NonNull String operation, long startNanos) {
+        operation(operation).record(System.nanoTime() - startNanos);
+    }
+    
+    /**
+     * Métricas de caches ordenadas por nombre
+     */
+    public Map<String, CacheMetrics> getCaches() {
+        return new TreeMap<>(caches);
+    }
+    
+    /**
+     * Histogramas de operaciones ordenados por nombre
+     */
+    public Map<String, LatencyHistogram> getOperations() {
+        return new TreeMap<>(operations);
+    }
+    
+    /**
+     * Reinicia todos los contadores; los caches y operaciones registrados se conservan
+     */
+    public void reset() {
+        for (CacheMetrics metrics : caches.values()) {
+            metrics.reset();
+        }
+        for (LatencyHistogram histogram : operations.values()) {
+            histogram.reset();
+        }
+    }
+    
+    /**
+     * Informe en texto plano de todas las métricas
+     */
+    public String dump() {
+        StringBuilder report = new StringBuilder();
+        report.append("Métricas DomoHouse - ")
+            .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()))
+            .append('\n');
+        
+        report.append("\n== Caches ==\n");
+        for (Map.Entry<String, CacheMetrics> entry : getCaches().entrySet()) {
+            CacheMetrics metrics = entry.getValue();
+            report.append(entry.getKey()).append('\n')
+                .append(String.format(Locale.US, "  aciertos=%d viejos=%d fallos=%d ratio=%.1f%% escrituras=%d%n",
+                    metrics.getHits(), metrics.getStaleHits(), metrics.getMisses(),
+                    metrics.getHitRatio() * 100, metrics.getWrites()))
+                .append(String.format(Locale.US, "  bytes=%d/%d evicciones: tamaño=%d expiradas=%d invalidadas=%d recortadas=%d%n",
+                    metrics.getBytesHeld(), metrics.getMaxBytes(),
+                    metrics.getEvictions(EvictionCause.SIZE), metrics.getEvictions(EvictionCause.EXPIRED),
+                    metrics.getEvictions(EvictionCause.INVALIDATED), metrics.getEvictions(EvictionCause.TRIMMED)));
+            appendHistogram(report, "  carga", metrics.getLoadLatency());
+        }
+        
+        report.append("\n== Operaciones ==\n");
+        for (Map.Entry<String, LatencyHistogram> entry : getOperations().entrySet()) {
+            appendHistogram(report, entry.getKey(), entry.getValue());
+        }
+        return report.toString();
+    }
+    
+    /**
+     * Vuelca el informe a un archivo en el almacenamiento interno de la app
+     * @return Archivo escrito
+     */
+    public File dumpToFile(@NonNull Context context) throws IOException {
+        File dir = new File(context.getFilesDir(), DUMP_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio " + dir);
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "metrics-" + stamp + ".txt");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(dump());
+        }
+        return file;
+    }
+    
+    private static void appendHistogram(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format(Locale.US, "%s: n=%d media=%dus p50=%dus p95=%dus p99=%dus max=%dus%n",
+            name, histogram.getCount(), histogram.getMeanMicros(),
+            histogram.getPercentileMicros(50), histogram.getPercentileMicros(95),
+            histogram.getPercentileMicros(99), histogram.getMaxMicros()));
+    }
+    
+    /**
+     * Contadores de un cache
+     */
+    public static class CacheMetrics {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong staleHits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicLongArray evictions = new AtomicLongArray(EvictionCause.values().length);
+        private final LatencyHistogram loadLatency = new LatencyHistogram();
+        
+        // Tamaño actual leído del propio cache al consultar
+        private volatile LongSupplier bytesHeld = () -> 0;
+        private volatile long maxBytes;
+        
+        public void recordHit() { hits.incrementAndGet(); }
+        public void recordStaleHit() { staleHits.incrementAndGet(); }
+        public void recordMiss() { misses.incrementAndGet(); }
+        public void recordWrite() { writes.incrementAndGet(); }
+        public void recordEviction(@NonNull EvictionCause cause) { evictions.incrementAndGet(cause.ordinal()); }
+        public void recordLoad(long nanos) { loadLatency.record(nanos); }
+        
+        /**
+         * Enlaza el tamaño en bytes del cache para que se lea en cada consulta
+         */
+        public void bindSize(@NonNull LongSupplier bytesHeld, long maxBytes) {
+            this.bytesHeld = bytesHeld;
+            this.maxBytes = maxBytes;
+        }
+        
+        public long getHits() { return hits.get(); }
+        public long getStaleHits() { return staleHits.get(); }
+        public long getMisses() { return misses.get(); }
+        public long getWrites() { return writes.get(); }
+        public long getEvictions(@NonNull EvictionCause cause) { return evictions.get(cause.ordinal()); }
+        public LatencyHistogram getLoadLatency() { return loadLatency; }
+        public long getBytesHeld() { return bytesHeld.getAsLong(); }
+        public long getMaxBytes() { return maxBytes; }
+        
+        /**
+         * Los valores viejos servidos cuentan como aciertos: el lector no esperó
+         */
+        public double getHitRatio() {
+            long served = hits.get() + staleHits.get();
+            long total = served + misses.get();
+            return total > 0 ? (double) served / total : 0.0;
+        }
+        
+        void reset() {
+            hits.set(0);
+            staleHits.set(0);
+            misses.set(0);
+            writes.set(0);
+            for (int i = 0; i < evictions.length(); i++) {
+                evictions.set(i, 0);
+            }
+            loadLatency.reset();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.pdm.domohouse.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Orden de estado para un dispositivo dentro de una escena
+ * Una escena es una lista de órdenes que se aplica completa o no se aplica
+ */
+public class DeviceCommand {
+    
+    // Dispositivo al que va dirigida la orden
+    private final String deviceId;
+    
+    // Estado deseado (encendido/apagado)
+    private final boolean on;
+    
+    // Intensidad deseada (0-100), null para conservar la actual
+    private final Integer intensity;
+    
+    public DeviceCommand(@NonNull String deviceId, boolean on, @Nullable Integer intensity) {
+        this.deviceId = deviceId;
+        this.on = on;
+        this.intensity = intensity;
+    }
+    
+    /**
+     * Enciende el dispositivo conservando su intensidad
+     */
+    public static DeviceCommand turnOn(@NonNull String deviceId) {
+        return new DeviceCommand(deviceId, true, null);
+    }
+    
+    /**
+     * Enciende el dispositivo con la intensidad indicada
+     */
+    public static DeviceCommand turnOn(@NonNull String deviceId, int intensity) {
+        return new DeviceCommand(deviceId, true, intensity);
+    }
+    
+    /**
+     * Apaga el dispositivo conservando su intensidad
+     */
+    public static DeviceCommand turnOff(@NonNull String deviceId) {
+        return new DeviceCommand(deviceId, false, null);
+    }
+    
+    @NonNull
+    public String getDeviceId() {
+        return deviceId;
+    }
+    
+    public boolean isOn() {
+        return on;
+    }
+    
+    @Nullable
+    public Integer getIntensity() {
+        return intensity;
+    }
+    
+    /**
+     * Indica si la orden deja la intensidad sin tocar
+     */
+    public boolean keepsIntensity() {
+        return intensity == null;
+    }
+    
+    @NonNull
+    @Override
+    public String toString() {
+        return "DeviceCommand{" +
+                "deviceId='" + deviceId + '\'' +
+                ", on=" + on +
+                ", intensity=" + intensity +
+                '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.pdm.domohouse.data.repository;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.pdm.domohouse.data.model.Device;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Grafo en memoria de todos los dispositivos agrupados por habitación
+ * Se alimenta de una única consulta sobre todos los dispositivos que se observa durante toda
+ * la vida del proceso; cada cambio se agrupa por habitación en una sola pasada y se reparte
+ * a los flujos derivados de cada habitación. Así el número de observadores y consultas es
+ * constante sin importar cuántas habitaciones o pantallas lo consulten.
+ * Todo el estado se toca solo desde el hilo principal
+ */
+public class DeviceGraph {
+    
+    private static volatile DeviceGraph instance;
+    
+    // Dispositivos por habitación de la última emisión
+    private final MutableLiveData<Map<String, List<Device>>> devicesByRoom =
+        new MutableLiveData<>(Collections.emptyMap());
+    
+    // Flujos derivados por habitación, creados bajo demanda y reutilizados
+    private final Map<String, MutableLiveData<List<Device>>> roomStreams = new HashMap<>();
+    
+    @MainThread
+    DeviceGraph(@NonNull LiveData<List<Device>> allDevices) {
+        allDevices.observeForever(this::rebuild);
+    }
+    
+    /**
+     * Obtiene el grafo compartido; la fuente solo se crea y observa la primera vez
+     */
+    @MainThread
+    public static DeviceGraph getInstance(@NonNull Supplier<LiveData<List<Device>>> allDevices) {
+        if (instance == null) {
+            synchronized (DeviceGraph.class) {
+                if (instance == null) {
+                    instance = new DeviceGraph(allDevices.get());
+                }
+            }
+        }
+        return instance;
+    }
+    
+    /**
+     * Todos los dispositivos agrupados por ID de habitación
+     */
+    public LiveData<Map<String, List<Device>>> getDevicesByRoom() {
+        return devicesByRoom;
+    }
+    
+    /**
+     * Flujo de los dispositivos de una habitación
+     * Varias llamadas con la misma habitación devuelven el mismo LiveData
+     */
+    @MainThread
+    public LiveData<List<Device>> getRoomDevices(@NonNull String roomId) {
+        MutableLiveData<List<Device>> stream = roomStreams.get(roomId);
+        if (stream == null) {
+            stream = new MutableLiveData<>(devicesOf(devicesByRoom.getValue(), roomId));
+            roomStreams.put(roomId, stream);
+        }
+        return stream;
+    }
+    
+    private void rebuild(List<Device> devices) {
+        if (devices == null) {
+            return;
+        }
+        Map<String, List<Device>> grouped = groupByRoom(devices);
+        devicesByRoom.setValue(grouped);
+        for (Map.Entry<String, MutableLiveData<List<Device>>> entry : roomStreams.entrySet()) {
+            entry.getValue().setValue(devicesOf(grouped, entry.getKey()));
+        }
+    }
+    
+    /**
+     * Agrupa los dispositivos por habitación en una sola pasada
+     * Los dispositivos sin habitación no forman parte del grafo
+     */
+    static Map<String, List<Device>> groupByRoom(@NonNull List<Device> devices) {
+        Map<String, List<Device>> grouped = new HashMap<>();
+        for (Device device : devices) {
+            String roomId = device.getRoomId();
+            if (roomId == null) {
+                continue;
+            }
+            List<Device> roomDevices = grouped.get(roomId);
+            if (roomDevices == null) {
+                roomDevices = new ArrayList<>();
+                grouped.put(roomId, roomDevices);
+            }
+            roomDevices.add(device);
+        }
+        for (Map.Entry<String, List<Device>> entry : grouped.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(grouped);
+    }
+    
+    private static List<Device> devicesOf(Map<String, List<Device>> grouped, String roomId) {
+        List<Device> devices = grouped != null ? grouped.get(roomId) : null;
+        return devices != null ? devices : Collections.emptyList();
+    }
+}
@@ -4,24 +4,40 @@ import android.content.Context;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
 
+import com.pdm.domohouse.cache.IntensityWriteBehindQueue;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
+import com.pdm.domohouse.data.cache.IntelligentCacheManager;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.DeviceDao;
 import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
+import com.pdm.domohouse.data.database.dao.SensorReadingDao;
+import com.pdm.domohouse.data.database.dao.SensorRollupDao;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
 import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.database.rollup.RollupResolution;
+import com.pdm.domohouse.data.database.rollup.SensorRollupPoint;
+import com.pdm.domohouse.data.metrics.MetricsRegistry;
 import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.DeviceCommand;
 import com.pdm.domohouse.data.model.DeviceType;
 import com.pdm.domohouse.data.sync.ComprehensiveSyncManager;
+import com.pdm.domohouse.sync.SyncManager;
 import com.pdm.domohouse.utils.DeviceMapper;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Repositorio para manejo de dispositivos IoT
@@ -31,53 +47,118 @@ public class DeviceRepository {
     
     private static final String TAG = "DeviceRepository";
     
+    // Puntos mínimos que debe tener un gráfico al elegir la resolución de los rollups
+    private static final int MIN_CHART_POINTS = 24;
+    
+    // Claves de las listas de dispositivos en el cache compartido
+    static final String ALL_DEVICES_CACHE_KEY = "devices:all";
+    private static final String ROOM_DEVICES_CACHE_PREFIX = "devices:room:";
+    private static final IntelligentCacheManager.CacheStrategy DEVICE_LIST_STRATEGY =
+        IntelligentCacheManager.CacheStrategy.MEMORY_ONLY;
+    
     private final DeviceDao deviceDao;
     private final DeviceHistoryDao deviceHistoryDao;
+    private final SensorReadingDao sensorReadingDao;
+    private final SensorRollupDao sensorRollupDao;
     private final ComprehensiveSyncManager syncManager;
-    private final ExecutorService executor;
+    private final SyncManager deviceUploader;
+    private final IntensityWriteBehindQueue intensityQueue;
+    private final CacheInvalidationBus invalidationBus;
+    private final IntelligentCacheManager cacheManager;
+    private final AppExecutors executors;
+    private final MetricsRegistry metrics;
     
     public DeviceRepository(Context context) {
+        this(context, AppExecutors.getInstance());
+    }
+    
+    public DeviceRepository(Context context, AppExecutors executors) {
         AppDatabase database = AppDatabase.getDatabase(context);
         this.deviceDao = database.deviceDao();
         this.deviceHistoryDao = database.deviceHistoryDao();
+        this.sensorReadingDao = database.sensorReadingDao();
+        this.sensorRollupDao = database.sensorRollupDao();
         this.syncManager = ComprehensiveSyncManager.getInstance(context);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.deviceUploader = SyncManager.getInstance(context);
+        this.intensityQueue = IntensityWriteBehindQueue.getInstance(context);
+        this.invalidationBus = CacheInvalidationBus.getInstance();
+        this.cacheManager = IntelligentCacheManager.getInstance(context);
+        // Mutaciones en el carril de cada dispositivo, lecturas en el pool de base de datos
+        this.executors = executors;
+        this.metrics = MetricsRegistry.getInstance();
     }
     
     /**
      * Obtiene todos los dispositivos
      */
     public LiveData<List<Device>> getAllDevices() {
-        MediatorLiveData<List<Device>> result = new MediatorLiveData<>();
-        
-        LiveData<List<DeviceEntity>> localDevices = deviceDao.getAllDevices();
-        result.addSource(localDevices, entities -> {
-            if (entities != null) {
-                List<Device> devices = mapEntitiesToModels(entities);
-                result.setValue(devices);
-                
-                // Sincronizar en background si hay dispositivos no sincronizados
-                syncUnsyncedDevicesInBackground();
-            }
-        });
-        
-        return result;
+        // Cada emisión de Room sincroniza en background los dispositivos no sincronizados
+        return cachedDeviceList(ALL_DEVICES_CACHE_KEY, deviceDao.getAllDevices(),
+            deviceDao::getAllDevicesSync, this::syncUnsyncedDevicesInBackground);
+    }
+    
+    /**
+     * Todos los dispositivos desde el cache compartido; no debe llamarse desde el hilo principal
+     * Una lista caliente se entrega al instante y se recarga en segundo plano antes de expirar;
+     * solo una lista fría espera a Room
+     */
+    @WorkerThread
+    public List<Device> getAllDevicesCachedSync() {
+        return cacheManager.getDeviceList(ALL_DEVICES_CACHE_KEY, DEVICE_LIST_STRATEGY,
+            () -> mapEntitiesToModels(deviceDao.getAllDevicesSync()));
+    }
+    
+    /**
+     * Grafo compartido de dispositivos agrupados por habitación
+     * Se construye una sola vez por proceso sobre la consulta de todos los dispositivos;
+     * a diferencia de getAllDevices() no dispara sincronizaciones en cada emisión
+     */
+    public DeviceGraph getDeviceGraph() {
+        return DeviceGraph.getInstance(() -> cachedDeviceList(ALL_DEVICES_CACHE_KEY,
+            deviceDao.getAllDevices(), deviceDao::getAllDevicesSync, null));
     }
     
     /**
      * Obtiene dispositivos por habitación
      */
     public LiveData<List<Device>> getDevicesByRoom(@NonNull String roomId) {
+        return cachedDeviceList(ROOM_DEVICES_CACHE_PREFIX + roomId, deviceDao.getDevicesByRoom(roomId),
+            () -> deviceDao.getDevicesByRoomSync(roomId), null);
+    }
+    
+    /**
+     * Lista de dispositivos que se pinta primero desde el cache compartido y luego sigue a Room
+     * La lectura inicial pasa por el read-through del cache en diskIO: una lista caliente llega
+     * al instante y se revalida en segundo plano, y solo una fría espera a la BD. Cada emisión
+     * de Room reemplaza la lista cacheada y gana siempre sobre la lectura inicial
+     */
+    private MediatorLiveData<List<Device>> cachedDeviceList(String cacheKey,
+            LiveData<List<DeviceEntity>> source, Supplier<List<DeviceEntity>> load,
+            Runnable onDbEmission) {
         MediatorLiveData<List<Device>> result = new MediatorLiveData<>();
+        MutableLiveData<List<Device>> warm = new MutableLiveData<>();
+        boolean[] dbArrived = {false};
         
-        LiveData<List<DeviceEntity>> localDevices = deviceDao.getDevicesByRoom(roomId);
-        result.addSource(localDevices, entities -> {
+        result.addSource(warm, devices -> {
+            result.removeSource(warm);
+            if (!dbArrived[0] && devices != null) {
+                result.setValue(devices);
+            }
+        });
+        result.addSource(source, entities -> {
             if (entities != null) {
+                dbArrived[0] = true;
                 List<Device> devices = mapEntitiesToModels(entities);
+                cacheManager.putDeviceList(cacheKey, devices, DEVICE_LIST_STRATEGY);
                 result.setValue(devices);
+                if (onDbEmission != null) {
+                    onDbEmission.run();
+                }
             }
         });
         
+        executors.diskIO().execute(() -> warm.postValue(cacheManager.getDeviceList(cacheKey,
+            DEVICE_LIST_STRATEGY, () -> mapEntitiesToModels(load.get()))));
         return result;
     }
     
@@ -136,7 +217,7 @@ public class DeviceRepository {
      * Agrega un nuevo dispositivo
      */
     public CompletableFuture<Boolean> addDevice(@NonNull Device device) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("addDevice", device.getId(), () -> {
             try {
                 DeviceEntity entity = mapModelToEntity(device);
                 entity.setCreatedAt(System.currentTimeMillis());
@@ -144,6 +225,7 @@ public class DeviceRepository {
                 entity.setSynced(false);
                 
                 deviceDao.insert(entity);
+                invalidationBus.invalidateDevice(entity.getDeviceId());
                 
                 // Registrar en historial
                 logDeviceAction(device.getId(), "DEVICE_ADDED", "", "CREATED", "USER");
@@ -160,20 +242,21 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al agregar dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Actualiza un dispositivo
      */
     public CompletableFuture<Boolean> updateDevice(@NonNull Device device) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("updateDevice", device.getId(), () -> {
             try {
                 DeviceEntity entity = mapModelToEntity(device);
                 entity.setUpdatedAt(System.currentTimeMillis());
                 entity.setSynced(false);
                 
                 deviceDao.update(entity);
+                invalidationBus.invalidateDevice(entity.getDeviceId());
                 
                 // Sincronizar con Firebase si hay conexión
                 if (syncManager.isOnline()) {
@@ -187,29 +270,22 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al actualizar dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Cambia el estado de un dispositivo (encendido/apagado)
      */
     public CompletableFuture<Boolean> toggleDeviceState(@NonNull String deviceId, @NonNull String userId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("toggleDeviceState", deviceId, () -> {
             try {
-                DeviceEntity entity = deviceDao.getDeviceSync(deviceId);
-                if (entity == null) {
+                // Cambio de estado e historial en un solo commit, sin leer antes el estado
+                Boolean newState = deviceDao.toggleDeviceStateWithHistory(deviceId, userId, System.currentTimeMillis());
+                if (newState == null) {
                     Log.w(TAG, "Dispositivo no encontrado: " + deviceId);
                     return false;
                 }
-                
-                boolean newState = !entity.isOn();
-                long timestamp = System.currentTimeMillis();
-                
-                deviceDao.updateDeviceState(deviceId, newState, timestamp);
-                
-                // Registrar en historial
-                logDeviceAction(deviceId, newState ? "ON" : "OFF", 
-                    String.valueOf(!newState), String.valueOf(newState), "USER", userId);
+                invalidationBus.invalidateDevice(deviceId);
                 
                 Log.d(TAG, "Estado del dispositivo cambiado: " + deviceId + " -> " + newState);
                 return true;
@@ -218,50 +294,89 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al cambiar estado del dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Actualiza la intensidad de un dispositivo
+     * El valor se encola en la escritura diferida: los cambios rápidos del mismo gesto
+     * se agrupan en una transacción y generan una sola entrada de historial.
+     * El resultado se completa al escribirse el valor: false si el dispositivo no existe
      */
     public CompletableFuture<Boolean> updateDeviceIntensity(@NonNull String deviceId, int intensity, @NonNull String userId) {
-        return CompletableFuture.supplyAsync(() -> {
+        if (intensity < 0 || intensity > 100) {
+            Log.w(TAG, "Intensidad inválida: " + intensity);
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        return intensityQueue.submit(deviceId, intensity, userId).thenApply(exists -> {
+            if (!exists) {
+                Log.w(TAG, "Dispositivo no encontrado: " + deviceId);
+            }
+            return exists;
+        });
+    }
+    
+    /**
+     * Aplica una escena (varios dispositivos a la vez) como una sola unidad
+     * Estado e historial de todo el grupo se escriben en una transacción y el resultado
+     * se sube a Firebase en una única escritura multi-ruta, en lugar de una por dispositivo.
+     * Si varias órdenes apuntan al mismo dispositivo prevalece la última.
+     * La escena se ordena con los carriles de todos sus dispositivos: espera a sus escrituras
+     * anteriores y las posteriores esperan a ella. Los valores de slider aún pendientes de
+     * los dispositivos cuya intensidad fija la escena se descartan para que no la pisen
+     * 
+     * @return true si la escena se aplicó; false si alguna orden es inválida o falla la escritura
+     */
+    public CompletableFuture<Boolean> applyScene(@NonNull List<DeviceCommand> commands, String userId) {
+        Map<String, DeviceCommand> byDevice = new LinkedHashMap<>();
+        for (DeviceCommand command : commands) {
+            Integer intensity = command.getIntensity();
+            if (intensity != null && (intensity < 0 || intensity > 100)) {
+                Log.w(TAG, "Intensidad inválida en escena: " + command);
+                return CompletableFuture.completedFuture(false);
+            }
+            byDevice.remove(command.getDeviceId());
+            byDevice.put(command.getDeviceId(), command);
+        }
+        if (byDevice.isEmpty()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        
+        List<DeviceCommand> scene = new ArrayList<>(byDevice.values());
+        List<String> intensityIds = new ArrayList<>();
+        for (DeviceCommand command : scene) {
+            if (!command.keepsIntensity()) {
+                intensityIds.add(command.getDeviceId());
+            }
+        }
+        return supplyTimed("applyScene", executors.deviceLanes(byDevice.keySet()), () -> {
             try {
-                if (intensity < 0 || intensity > 100) {
-                    Log.w(TAG, "Intensidad inválida: " + intensity);
-                    return false;
+                intensityQueue.supersede(intensityIds);
+                List<DeviceEntity> changed =
+                    deviceDao.applySceneWithHistory(scene, userId, System.currentTimeMillis());
+                for (DeviceEntity device : changed) {
+                    invalidationBus.invalidateDevice(device.getDeviceId());
                 }
                 
-                DeviceEntity entity = deviceDao.getDeviceSync(deviceId);
-                if (entity == null) {
-                    Log.w(TAG, "Dispositivo no encontrado: " + deviceId);
-                    return false;
-                }
-                
-                int oldIntensity = entity.getIntensity();
-                long timestamp = System.currentTimeMillis();
-                
-                deviceDao.updateDeviceIntensity(deviceId, intensity, timestamp);
-                
-                // Registrar en historial
-                logDeviceAction(deviceId, "INTENSITY_CHANGE", 
-                    String.valueOf(oldIntensity), String.valueOf(intensity), "USER", userId);
+                // Todo el grupo en un solo round trip; sin conexión queda pendiente de sincronizar
+                deviceUploader.uploadDevices(changed);
                 
-                Log.d(TAG, "Intensidad del dispositivo actualizada: " + deviceId + " -> " + intensity);
+                Log.d(TAG, "Escena aplicada: " + changed.size() + " de " + scene.size() + " dispositivos cambiados");
                 return true;
                 
             } catch (Exception e) {
-                Log.e(TAG, "Error al actualizar intensidad del dispositivo", e);
+                Log.e(TAG, "Error al aplicar escena", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Actualiza la temperatura de un sensor
      */
     public CompletableFuture<Boolean> updateDeviceTemperature(@NonNull String deviceId, float temperature) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("updateDeviceTemperature", deviceId, () -> {
             try {
                 DeviceEntity entity = deviceDao.getDeviceSync(deviceId);
                 if (entity == null) {
@@ -269,17 +384,13 @@ public class DeviceRepository {
                     return false;
                 }
                 
-                Float oldTemperature = entity.getTemperature();
                 long timestamp = System.currentTimeMillis();
                 
                 deviceDao.updateDeviceTemperature(deviceId, temperature, timestamp);
+                invalidationBus.invalidateDevice(deviceId);
                 
-                // Registrar en historial solo si hay cambio significativo
-                if (oldTemperature == null || Math.abs(temperature - oldTemperature) >= 0.5f) {
-                    logDeviceAction(deviceId, "TEMPERATURE_READING", 
-                        oldTemperature != null ? String.valueOf(oldTemperature) : "null", 
-                        String.valueOf(temperature), "SENSOR");
-                }
+                // Registrar la lectura como valor numérico y actualizar sus rollups
+                sensorReadingDao.recordReading(new SensorReadingEntity(deviceId, timestamp, temperature));
                 
                 return true;
                 
@@ -287,17 +398,18 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al actualizar temperatura del dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Actualiza el estado online de un dispositivo
      */
     public CompletableFuture<Boolean> updateDeviceOnlineStatus(@NonNull String deviceId, boolean isOnline) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("updateDeviceOnlineStatus", deviceId, () -> {
             try {
                 long timestamp = System.currentTimeMillis();
                 deviceDao.updateDeviceOnlineStatus(deviceId, isOnline, timestamp);
+                invalidationBus.invalidateDevice(deviceId);
                 
                 // Registrar en historial
                 logDeviceAction(deviceId, isOnline ? "DEVICE_ONLINE" : "DEVICE_OFFLINE", 
@@ -310,14 +422,14 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al actualizar estado online del dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
     }
     
     /**
      * Elimina un dispositivo
      */
     public CompletableFuture<Boolean> removeDevice(@NonNull String deviceId, @NonNull String userId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return supplyOnLane("removeDevice", deviceId, () -> {
             try {
                 DeviceEntity entity = deviceDao.getDeviceSync(deviceId);
                 if (entity == null) {
@@ -329,6 +441,7 @@ public class DeviceRepository {
                 logDeviceAction(deviceId, "DEVICE_REMOVED", "ACTIVE", "REMOVED", "USER", userId);
                 
                 deviceDao.delete(entity);
+                invalidationBus.invalidateDevice(deviceId);
                 
                 Log.d(TAG, "Dispositivo eliminado: " + deviceId);
                 return true;
@@ -337,7 +450,34 @@ public class DeviceRepository {
                 Log.e(TAG, "Error al eliminar dispositivo", e);
                 return false;
             }
-        }, executor);
+        });
+    }
+    
+    /**
+     * Obtiene las lecturas de un sensor en un rango de tiempo
+     */
+    public LiveData<List<SensorReadingEntity>> getSensorReadings(@NonNull String deviceId, long startTime, long endTime) {
+        return sensorReadingDao.getReadings(deviceId, startTime, endTime);
+    }
+    
+    /**
+     * Calcula el promedio de las lecturas de un sensor desde un instante dado
+     */
+    public CompletableFuture<Double> getAverageReading(@NonNull String deviceId, long startTime) {
+        return supplyTimed("getAverageReading", executors.diskIO(), () -> sensorReadingDao.getAverageValue(deviceId, startTime));
+    }
+    
+    /**
+     * Obtiene los puntos del gráfico de todos los sensores para el período dado
+     * Usa el bucket más grueso que entrega al menos MIN_CHART_POINTS puntos, por lo que
+     * el costo no depende de cuántas lecturas crudas existan
+     */
+    public CompletableFuture<List<SensorRollupPoint>> getSensorChart(long periodMs) {
+        return supplyTimed("getSensorChart", executors.diskIO(), () -> {
+            RollupResolution resolution = RollupResolution.forSpan(periodMs, MIN_CHART_POINTS);
+            long startTime = resolution.bucketStart(System.currentTimeMillis() - periodMs);
+            return sensorRollupDao.getCombinedRollups(resolution.getBucketSizeMs(), startTime);
+        });
     }
     
     /**
@@ -355,7 +495,7 @@ public class DeviceRepository {
             return;
         }
         
-        executor.execute(() -> {
+        executors.diskIO().execute(() -> {
             try {
                 List<DeviceEntity> unsyncedDevices = deviceDao.getUnsyncedDevices();
                 
@@ -380,7 +520,7 @@ public class DeviceRepository {
     private void syncDeviceToFirebase(@NonNull Device device) {
         // TODO: Implementar sincronización con Firebase
         // Por ahora marcar como sincronizado
-        executor.execute(() -> {
+        executors.deviceLane(device.getId()).execute(() -> {
             long timestamp = System.currentTimeMillis();
             deviceDao.markAsSynced(device.getId(), timestamp);
             Log.d(TAG, "Dispositivo marcado como sincronizado: " + device.getId());
@@ -401,7 +541,8 @@ public class DeviceRepository {
     private void logDeviceAction(@NonNull String deviceId, @NonNull String action, 
             String oldValue, String newValue, @NonNull String triggeredBy, String userId) {
         
-        executor.execute(() -> {
+        // En el carril del dispositivo: queda detrás del cambio que lo originó
+        executors.deviceLane(deviceId).execute(() -> {
             try {
                 DeviceHistoryEntity historyEntity = new DeviceHistoryEntity();
                 historyEntity.setDeviceId(deviceId);
@@ -461,12 +602,36 @@ public class DeviceRepository {
         return entity;
     }
     
+    /**
+     * Ejecuta una mutación en el carril serie del dispositivo
+     * Los comandos de un mismo dispositivo se aplican en orden aunque lleguen desde
+     * varias instancias del repositorio; los de dispositivos distintos corren en paralelo
+     */
+    private <T> CompletableFuture<T> supplyOnLane(String operation, String deviceId, Supplier<T> work) {
+        return supplyTimed(operation, executors.deviceLane(deviceId), work);
+    }
+    
+    /**
+     * Ejecuta una operación en el executor indicado midiendo su latencia
+     * y el tiempo que esperó en la cola
+     */
+    private <T> CompletableFuture<T> supplyTimed(String operation, Executor executor, Supplier<T> work) {
+        long submittedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            metrics.operation("DeviceRepository.queueWait").record(startedAt - submittedAt);
+            try {
+                return work.get();
+            } finally {
+                metrics.recordLatency("DeviceRepository." + operation, startedAt);
+            }
+        }, executor);
+    }
+    
     /**
      * Limpia recursos
+     * Los executors son compartidos por la aplicación y no se cierran aquí
      */
     public void cleanup() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
     }
 }
\ No newline at end of file
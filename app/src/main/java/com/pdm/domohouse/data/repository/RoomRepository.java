@@ -6,7 +6,11 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
 
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
+import com.pdm.domohouse.data.cache.IntelligentCacheManager;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.RoomDao;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
@@ -17,8 +21,7 @@ import com.pdm.domohouse.data.sync.ComprehensiveSyncManager;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Repositorio para manejo de habitaciones de la casa
@@ -28,27 +31,55 @@ public class RoomRepository {
     
     private static final String TAG = "RoomRepository";
     
+    // Clave de la lista de habitaciones en el cache compartido
+    private static final String ALL_ROOMS_CACHE_KEY = "rooms:all";
+    
     private final RoomDao roomDao;
     private final ComprehensiveSyncManager syncManager;
-    private final ExecutorService executor;
+    private final IntelligentCacheManager cacheManager;
+    private final CacheInvalidationBus invalidationBus;
+    private final Executor executor;
+    private final Executor readExecutor;
     
     public RoomRepository(Context context) {
+        this(context, AppExecutors.getInstance());
+    }
+    
+    public RoomRepository(Context context, AppExecutors executors) {
         AppDatabase database = AppDatabase.getDatabase(context);
         this.roomDao = database.roomDao();
         this.syncManager = ComprehensiveSyncManager.getInstance(context);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.cacheManager = IntelligentCacheManager.getInstance(context);
+        this.invalidationBus = CacheInvalidationBus.getInstance();
+        this.readExecutor = executors.diskIO();
+        // Serie sobre el pool de base de datos compartido: conserva el orden sin crear hilos
+        this.executor = executors.newSerialExecutor();
     }
     
     /**
      * Obtiene todas las habitaciones
+     * El primer valor llega del cache compartido (read-through en diskIO: al instante si la
+     * lista está caliente, revalidada en segundo plano si se acerca a expirar) y después
+     * manda Room; cada emisión de Room reemplaza la lista cacheada
      */
     public LiveData<List<Room>> getAllRooms() {
         MediatorLiveData<List<Room>> result = new MediatorLiveData<>();
+        MutableLiveData<List<Room>> warm = new MutableLiveData<>();
+        boolean[] dbArrived = {false};
+        
+        result.addSource(warm, rooms -> {
+            result.removeSource(warm);
+            if (!dbArrived[0] && rooms != null) {
+                result.setValue(rooms);
+            }
+        });
         
         LiveData<List<RoomEntity>> localRooms = roomDao.getAllRooms();
         result.addSource(localRooms, entities -> {
             if (entities != null) {
+                dbArrived[0] = true;
                 List<Room> rooms = mapEntitiesToModels(entities);
+                cacheManager.putRoomList(ALL_ROOMS_CACHE_KEY, rooms);
                 result.setValue(rooms);
                 
                 // Sincronizar en background si hay habitaciones no sincronizadas
@@ -56,6 +87,9 @@ public class RoomRepository {
             }
         });
         
+        readExecutor.execute(() -> warm.postValue(cacheManager.getRoomList(ALL_ROOMS_CACHE_KEY,
+            IntelligentCacheManager.CacheStrategy.MEMORY_ONLY,
+            () -> mapEntitiesToModels(roomDao.getAllRoomsSync()))));
         return result;
     }
     
@@ -142,6 +176,7 @@ public class RoomRepository {
                 entity.setSynced(false);
                 
                 roomDao.insert(entity);
+                invalidationBus.invalidateRoom(entity.getRoomId());
                 
                 // Sincronizar con Firebase si hay conexión
                 if (syncManager.isOnline()) {
@@ -174,6 +209,7 @@ public class RoomRepository {
                 entity.setSynced(false);
                 
                 roomDao.update(entity);
+                invalidationBus.invalidateRoom(entity.getRoomId());
                 
                 // Sincronizar con Firebase si hay conexión
                 if (syncManager.isOnline()) {
@@ -206,6 +242,9 @@ public class RoomRepository {
                 // (Esto se manejará automáticamente por CASCADE en la foreign key)
                 
                 roomDao.delete(entity);
+                invalidationBus.invalidateRoom(roomId);
+                // Los dispositivos de la habitación se borran en cascada
+                invalidationBus.invalidateAllDevices();
                 
                 Log.d(TAG, "Habitación eliminada: " + roomId);
                 return true;
@@ -241,6 +280,7 @@ public class RoomRepository {
                 entity.setSynced(false);
                 
                 roomDao.update(entity);
+                invalidationBus.invalidateRoom(roomId);
                 
                 Log.d(TAG, "Posición de habitación actualizada: " + roomId + " -> (" + x + ", " + y + ")");
                 return true;
@@ -275,6 +315,7 @@ public class RoomRepository {
                 entity.setSynced(false);
                 
                 roomDao.update(entity);
+                invalidationBus.invalidateRoom(roomId);
                 
                 Log.d(TAG, "Color de habitación actualizado: " + roomId + " -> " + color);
                 return true;
@@ -305,6 +346,7 @@ public class RoomRepository {
                 for (RoomEntity room : defaultRooms) {
                     roomDao.insert(room);
                 }
+                invalidationBus.invalidateAllRooms();
                 
                 Log.d(TAG, "Habitaciones por defecto creadas: " + defaultRooms.size());
                 return true;
@@ -483,10 +525,8 @@ public class RoomRepository {
     
     /**
      * Limpia recursos
+     * Los executors son compartidos por la aplicación y no se cierran aquí
      */
     public void cleanup() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
     }
 }
\ No newline at end of file
@@ -7,6 +7,8 @@ import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
 
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.UserPreferencesDao;
 import com.pdm.domohouse.data.database.dao.UserProfileDao;
@@ -19,8 +21,7 @@ import com.pdm.domohouse.network.FirebaseDataManager;
 import com.pdm.domohouse.utils.DeviceMapper;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Repositorio para manejo de datos de usuario
@@ -34,15 +35,22 @@ public class UserRepository {
     private final UserPreferencesDao userPreferencesDao;
     private final FirebaseDataManager firebaseDataManager;
     private final ComprehensiveSyncManager syncManager;
-    private final ExecutorService executor;
+    private final CacheInvalidationBus invalidationBus;
+    private final Executor executor;
     
     public UserRepository(Context context) {
+        this(context, AppExecutors.getInstance());
+    }
+    
+    public UserRepository(Context context, AppExecutors executors) {
         AppDatabase database = AppDatabase.getDatabase(context);
         this.userProfileDao = database.userProfileDao();
         this.userPreferencesDao = database.userPreferencesDao();
         this.firebaseDataManager = FirebaseDataManager.getInstance();
         this.syncManager = ComprehensiveSyncManager.getInstance(context);
-        this.executor = Executors.newSingleThreadExecutor();
+        this.invalidationBus = CacheInvalidationBus.getInstance();
+        // Serie sobre el pool de base de datos compartido: conserva el orden sin crear hilos
+        this.executor = executors.newSerialExecutor();
     }
     
     /**
@@ -84,6 +92,7 @@ public class UserRepository {
                 
                 // Guardar localmente primero
                 userProfileDao.insert(entity);
+                invalidationBus.invalidateUser(userProfile.getUserId());
                 
                 // Intentar sincronizar con Firebase si hay conexión
                 if (syncManager.isOnline()) {
@@ -131,6 +140,7 @@ public class UserRepository {
                 entity.setSynced(false);
                 
                 userPreferencesDao.insert(entity);
+                invalidationBus.invalidateUser(preferences.getUserId());
                 
                 // Sincronizar con Firebase si hay conexión
                 if (syncManager.isOnline()) {
@@ -155,6 +165,7 @@ public class UserRepository {
             try {
                 long timestamp = System.currentTimeMillis();
                 userPreferencesDao.updateLanguage(userId, language, timestamp);
+                invalidationBus.invalidateUser(userId);
                 
                 Log.d(TAG, "Idioma actualizado a: " + language);
                 return true;
@@ -174,6 +185,7 @@ public class UserRepository {
             try {
                 long timestamp = System.currentTimeMillis();
                 userPreferencesDao.updateNotifications(userId, enabled, timestamp);
+                invalidationBus.invalidateUser(userId);
                 
                 Log.d(TAG, "Notificaciones " + (enabled ? "habilitadas" : "deshabilitadas"));
                 return true;
@@ -223,6 +235,7 @@ public class UserRepository {
                 
                 executor.execute(() -> {
                     userProfileDao.insert(entity);
+                    invalidationBus.invalidateUser(userId);
                     Log.d(TAG, "Perfil cargado desde Firebase y guardado localmente");
                 });
                 
@@ -267,6 +280,7 @@ public class UserRepository {
             UserPreferencesEntity defaultEntity = new UserPreferencesEntity();
             defaultEntity.setUserId(userId);
             userPreferencesDao.insert(defaultEntity);
+            invalidationBus.invalidateUser(userId);
             
             UserPreferences defaultPreferences = mapPreferencesEntityToModel(defaultEntity);
             result.postValue(defaultPreferences);
@@ -289,6 +303,7 @@ public class UserRepository {
                     newEntity.setSynced(true);
                     newEntity.setLastSync(System.currentTimeMillis());
                     userProfileDao.insert(newEntity);
+                    invalidationBus.invalidateUser(userId);
                     return;
                 }
                 
@@ -299,6 +314,7 @@ public class UserRepository {
                     updatedEntity.setSynced(true);
                     updatedEntity.setLastSync(System.currentTimeMillis());
                     userProfileDao.update(updatedEntity);
+                    invalidationBus.invalidateUser(userId);
                     
                     Log.d(TAG, "Perfil local actualizado con datos remotos más recientes");
                 } else if (localEntity.getUpdatedAt() > remoteProfile.getLastSyncTimestamp() && !localEntity.isSynced()) {
@@ -408,10 +424,8 @@ public class UserRepository {
     
     /**
      * Limpia recursos
+     * Los executors son compartidos por la aplicación y no se cierran aquí
      */
     public void cleanup() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
     }
 }
\ No newline at end of file
@@ -9,6 +9,8 @@ import androidx.annotation.NonNull;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.DeviceDao;
 import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
@@ -16,25 +18,20 @@ import com.pdm.domohouse.data.database.dao.RoomDao;
 import com.pdm.domohouse.data.database.dao.UserPreferencesDao;
 import com.pdm.domohouse.data.database.dao.UserProfileDao;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
-import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
 import com.pdm.domohouse.data.database.entity.UserPreferencesEntity;
 import com.pdm.domohouse.data.database.entity.UserProfileEntity;
-import com.pdm.domohouse.data.model.Device;
-import com.pdm.domohouse.data.model.Room;
 import com.pdm.domohouse.data.model.UserPreferences;
-import com.pdm.domohouse.data.model.UserProfile;
 import com.pdm.domohouse.network.FirebaseDataManager;
 import com.pdm.domohouse.network.FirebaseSyncManager;
 import com.pdm.domohouse.utils.DeviceMapper;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -64,15 +61,16 @@ public class ComprehensiveSyncManager {
     private final DeviceHistoryDao deviceHistoryDao;
     
     // Control de sincronización
-    private ScheduledExecutorService syncScheduler;
+    private final ScheduledExecutorService syncScheduler;
+    private final Executor syncExecutor;
+    private final Executor databaseExecutor;
+    private ScheduledFuture<?> autoSyncTask;
     private boolean isSyncEnabled = true;
     private boolean isOnline = false;
     private SyncState currentSyncState = SyncState.IDLE;
     
-    // Cache de datos
-    private final Map<String, CacheEntry<UserProfile>> userProfileCache = new HashMap<>();
-    private final Map<String, CacheEntry<List<Device>>> deviceCache = new HashMap<>();
-    private final Map<String, CacheEntry<List<Room>>> roomCache = new HashMap<>();
+    // Las entradas en memoria viven en IntelligentCacheManager; aquí solo se invalidan
+    private final CacheInvalidationBus invalidationBus = CacheInvalidationBus.getInstance();
     
     // Listeners para cambios
     private final List<SyncStateListener> syncStateListeners = new ArrayList<>();
@@ -92,8 +90,11 @@ public class ComprehensiveSyncManager {
     /**
      * Constructor privado para Singleton
      */
-    private ComprehensiveSyncManager(Context context) {
+    private ComprehensiveSyncManager(Context context, AppExecutors executors) {
         this.context = context.getApplicationContext();
+        this.syncScheduler = executors.scheduler();
+        this.syncExecutor = executors.networkIO();
+        this.databaseExecutor = executors.diskIO();
         this.database = AppDatabase.getDatabase(context);
         this.firebaseDataManager = FirebaseDataManager.getInstance();
         this.firebaseSyncManager = FirebaseSyncManager.getInstance(context);
@@ -115,7 +116,7 @@ public class ComprehensiveSyncManager {
      */
     public static synchronized ComprehensiveSyncManager getInstance(Context context) {
         if (instance == null) {
-            instance = new ComprehensiveSyncManager(context);
+            instance = new ComprehensiveSyncManager(context, AppExecutors.getInstance());
         }
         return instance;
     }
@@ -124,11 +125,10 @@ public class ComprehensiveSyncManager {
      * Inicia la sincronización automática
      */
     private void initializeAutoSync() {
-        if (syncScheduler == null || syncScheduler.isShutdown()) {
-            syncScheduler = Executors.newSingleThreadScheduledExecutor();
-            
-            syncScheduler.scheduleAtFixedRate(
-                this::performAutoSync,
+        if (autoSyncTask == null) {
+            // El planificador es compartido: solo dispara, la sincronización corre en networkIO
+            autoSyncTask = syncScheduler.scheduleAtFixedRate(
+                () -> syncExecutor.execute(this::performAutoSync),
                 SYNC_INTERVAL_MINUTES,
                 SYNC_INTERVAL_MINUTES,
                 TimeUnit.MINUTES
@@ -227,7 +227,7 @@ public class ComprehensiveSyncManager {
                 updateSyncState(SyncState.ERROR);
                 return new SyncResult(false, "Error inesperado: " + e.getMessage());
             }
-        });
+        }, syncExecutor);
     }
     
     /**
@@ -325,6 +325,7 @@ public class ComprehensiveSyncManager {
                     // Marcar como sincronizado después del éxito
                     long currentTime = System.currentTimeMillis();
                     deviceDao.markAsSynced(device.getDeviceId(), currentTime);
+                    invalidationBus.invalidateDevice(device.getDeviceId());
                 }
             }
             
@@ -342,10 +343,10 @@ public class ComprehensiveSyncManager {
      */
     private SyncResult syncDeviceHistory(String userId) {
         try {
-            List<DeviceHistoryEntity> unsyncedHistory = deviceHistoryDao.getUnsyncedHistory();
+            int unsyncedCount = deviceHistoryDao.getUnsyncedHistoryCount();
             
-            if (!unsyncedHistory.isEmpty()) {
-                Log.d(TAG, "Sincronizando " + unsyncedHistory.size() + " entradas de historial");
+            if (unsyncedCount > 0) {
+                Log.d(TAG, "Sincronizando " + unsyncedCount + " entradas de historial");
                 
                 // TODO: Subir historial no sincronizado a Firebase
                 // Marcar como sincronizado después del éxito
@@ -458,8 +459,9 @@ public class ComprehensiveSyncManager {
      * Limpia todos los datos locales
      */
     public void clearAllLocalData() {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
+        databaseExecutor.execute(() -> {
             database.clearAllTables();
+            invalidationBus.invalidateAll();
             Log.d(TAG, "Todos los datos locales han sido eliminados");
         });
     }
@@ -468,16 +470,14 @@ public class ComprehensiveSyncManager {
      * Detiene todos los servicios de sincronización
      */
     public void shutdown() {
-        if (syncScheduler != null && !syncScheduler.isShutdown()) {
-            syncScheduler.shutdown();
-            Log.d(TAG, "Scheduler de sincronización detenido");
+        if (autoSyncTask != null) {
+            autoSyncTask.cancel(false);
+            autoSyncTask = null;
+            Log.d(TAG, "Sincronización automática detenida");
         }
         
         syncStateListeners.clear();
         dataChangeListeners.clear();
-        userProfileCache.clear();
-        deviceCache.clear();
-        roomCache.clear();
     }
     
     // Clases auxiliares
@@ -526,24 +526,6 @@ public class ComprehensiveSyncManager {
         MERGE
     }
     
-    /**
-     * Entrada de cache con timestamp
-     */
-    private static class CacheEntry<T> {
-        private final T data;
-        private final long timestamp;
-        
-        public CacheEntry(T data) {
-            this.data = data;
-            this.timestamp = System.currentTimeMillis();
-        }
-        
-        public T getData() { return data; }
-        public boolean isExpired(long validityDuration) {
-            return System.currentTimeMillis() - timestamp > validityDuration;
-        }
-    }
-    
     /**
      * Interface para listeners de estado de sincronización
      */
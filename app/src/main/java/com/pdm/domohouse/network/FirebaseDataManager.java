@@ -12,9 +12,12 @@ import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 import com.google.firebase.storage.UploadTask;
 
+import com.pdm.domohouse.data.cache.SingleFlight;
 import com.pdm.domohouse.data.model.UserProfile;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Manager para manejar Firebase Realtime Database y Storage
@@ -30,6 +33,9 @@ public class FirebaseDataManager {
     private final DatabaseReference database;
     private final StorageReference storage;
     
+    // Lecturas de perfil en vuelo: las pantallas que piden el mismo usuario comparten una sola lectura
+    private final SingleFlight<String, UserProfile> profileReads = new SingleFlight<>();
+    
     /**
      * Constructor privado para Singleton
      */
@@ -81,6 +87,7 @@ public class FirebaseDataManager {
     
     /**
      * Obtiene el perfil de usuario desde Firebase Realtime Database
+     * Las llamadas concurrentes para el mismo usuario comparten una sola lectura
      * @param userId ID del usuario
      * @param callback Callback para manejar el resultado
      */
@@ -90,6 +97,23 @@ public class FirebaseDataManager {
             return;
         }
         
+        profileReads.executeAsync(userId, () -> readUserProfile(userId))
+                .whenComplete((userProfile, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        callback.onError(cause.getMessage());
+                    } else {
+                        callback.onSuccess(userProfile);
+                    }
+                });
+    }
+    
+    /**
+     * Lee el perfil de Firebase una vez; el resultado se comparte entre los solicitantes concurrentes
+     */
+    private CompletableFuture<UserProfile> readUserProfile(String userId) {
+        CompletableFuture<UserProfile> result = new CompletableFuture<>();
         DatabaseReference userRef = database.child(USERS_NODE).child(userId);
         
         userRef.addListenerForSingleValueEvent(new ValueEventListener() {
@@ -100,18 +124,18 @@ public class FirebaseDataManager {
                         UserProfile userProfile = dataSnapshot.getValue(UserProfile.class);
                         if (userProfile != null) {
                             Log.d(TAG, "Perfil obtenido exitosamente: " + userId);
-                            callback.onSuccess(userProfile);
+                            result.complete(userProfile);
                         } else {
                             Log.w(TAG, "Perfil está vacío para el usuario: " + userId);
-                            callback.onError("Perfil de usuario vacío");
+                            result.completeExceptionally(new IllegalStateException("Perfil de usuario vacío"));
                         }
                     } catch (Exception e) {
                         Log.e(TAG, "Error al deserializar perfil: " + e.getMessage());
-                        callback.onError("Error al procesar datos del perfil");
+                        result.completeExceptionally(new IllegalStateException("Error al procesar datos del perfil"));
                     }
                 } else {
                     Log.w(TAG, "Perfil no encontrado para el usuario: " + userId);
-                    callback.onError("Perfil de usuario no encontrado");
+                    result.completeExceptionally(new IllegalStateException("Perfil de usuario no encontrado"));
                 }
             }
             
@@ -119,9 +143,10 @@ public class FirebaseDataManager {
             public void onCancelled(DatabaseError databaseError) {
                 String error = "Error de base de datos: " + databaseError.getMessage();
                 Log.e(TAG, error);
-                callback.onError(error);
+                result.completeExceptionally(new IllegalStateException(error));
             }
         });
+        return result;
     }
     
     /**
@@ -8,11 +8,14 @@ import android.util.Log;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.ValueEventListener;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
 import com.pdm.domohouse.data.model.UserProfile;
 import com.pdm.domohouse.utils.SecurePreferencesManager;
 
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,9 +32,12 @@ public class FirebaseSyncManager {
     private final FirebaseDataManager firebaseDataManager;
     private final FirebaseAuth firebaseAuth;
     private final SecurePreferencesManager securePreferencesManager;
+    private final CacheInvalidationBus invalidationBus;
     
     // Control de sincronización
-    private ScheduledExecutorService syncScheduler;
+    private final ScheduledExecutorService syncScheduler;
+    private final Executor syncExecutor;
+    private ScheduledFuture<?> autoSyncTask;
     private ValueEventListener userProfileListener;
     private boolean isSyncEnabled = true;
     private boolean isOnline = false;
@@ -43,11 +49,14 @@ public class FirebaseSyncManager {
     /**
      * Constructor privado para Singleton
      */
-    private FirebaseSyncManager(Context context) {
+    private FirebaseSyncManager(Context context, AppExecutors executors) {
         this.context = context.getApplicationContext();
+        this.syncScheduler = executors.scheduler();
+        this.syncExecutor = executors.networkIO();
         this.firebaseDataManager = FirebaseDataManager.getInstance();
         this.firebaseAuth = FirebaseAuth.getInstance();
         this.securePreferencesManager = SecurePreferencesManager.getInstance(context);
+        this.invalidationBus = CacheInvalidationBus.getInstance();
         
         checkNetworkStatus();
         initializeAutoSync();
@@ -60,7 +69,7 @@ public class FirebaseSyncManager {
      */
     public static synchronized FirebaseSyncManager getInstance(Context context) {
         if (instance == null) {
-            instance = new FirebaseSyncManager(context);
+            instance = new FirebaseSyncManager(context, AppExecutors.getInstance());
         }
         return instance;
     }
@@ -69,12 +78,11 @@ public class FirebaseSyncManager {
      * Inicia la sincronización automática
      */
     private void initializeAutoSync() {
-        if (syncScheduler == null || syncScheduler.isShutdown()) {
-            syncScheduler = Executors.newSingleThreadScheduledExecutor();
-            
-            // Programar sincronización periódica
-            syncScheduler.scheduleAtFixedRate(
-                    this::performAutoSync,
+        if (autoSyncTask == null) {
+            // Programar sincronización periódica; el planificador compartido solo dispara
+            // y la sincronización corre en networkIO
+            autoSyncTask = syncScheduler.scheduleAtFixedRate(
+                    () -> syncExecutor.execute(this::performAutoSync),
                     SYNC_INTERVAL_MINUTES,
                     SYNC_INTERVAL_MINUTES,
                     TimeUnit.MINUTES
@@ -170,6 +178,7 @@ public class FirebaseSyncManager {
         if (cachedUserProfile == null) {
             // No hay perfil local, usar el de Firebase
             cachedUserProfile = firebaseProfile;
+            invalidateProfile(firebaseProfile);
             Log.d(TAG, "Perfil local actualizado desde Firebase");
             return;
         }
@@ -187,6 +196,7 @@ public class FirebaseSyncManager {
             
             cachedUserProfile = firebaseProfile;
             lastLocalUpdateTimestamp = firebaseTimestamp;
+            invalidateProfile(firebaseProfile);
         } else if (localTimestamp > firebaseTimestamp) {
             // Datos locales más recientes, subir a Firebase
             Log.d(TAG, "Datos locales más recientes - subiendo a Firebase");
@@ -196,6 +206,15 @@ public class FirebaseSyncManager {
         }
     }
     
+    /**
+     * Avisa al cache compartido de que el perfil de este usuario cambió
+     */
+    private void invalidateProfile(UserProfile profile) {
+        if (profile.getUserId() != null) {
+            invalidationBus.invalidateUser(profile.getUserId());
+        }
+    }
+    
     /**
      * Sincroniza el PIN desde Firebase como respaldo
      * @param firebaseProfile Perfil de Firebase
@@ -256,6 +275,7 @@ public class FirebaseSyncManager {
         cachedUserProfile = userProfile;
         lastLocalUpdateTimestamp = System.currentTimeMillis();
         cachedUserProfile.setLastSyncTimestamp(lastLocalUpdateTimestamp);
+        invalidateProfile(userProfile);
         
         if (isOnline && isSyncEnabled) {
             // Subir a Firebase inmediatamente si estamos online
@@ -370,9 +390,10 @@ public class FirebaseSyncManager {
      * Detiene todos los servicios de sincronización
      */
     public void shutdown() {
-        if (syncScheduler != null && !syncScheduler.isShutdown()) {
-            syncScheduler.shutdown();
-            Log.d(TAG, "Scheduler de sincronización detenido");
+        if (autoSyncTask != null) {
+            autoSyncTask.cancel(false);
+            autoSyncTask = null;
+            Log.d(TAG, "Sincronización automática detenida");
         }
         
         FirebaseUser currentUser = firebaseAuth.getCurrentUser();
@@ -0,0 +1,155 @@
+package com.pdm.domohouse.sync;
+
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseReference;
+import com.pdm.domohouse.data.database.dao.DeviceDao;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Subidor por lotes de los dispositivos modificados
+ * Agrupa los dispositivos en escrituras multi-ruta de tamaño acotado y, para los que ya
+ * se subieron antes, envía solo los campos que cambiaron
+ */
+public class DeviceBatchUploader {
+    private static final String TAG = "DeviceBatchUploader";
+    
+    // Tamaño máximo de cada escritura multi-ruta de dispositivos
+    static final int BATCH_SIZE = 200;
+    
+    private final DeviceDao deviceDao;
+    private final DatabaseReference devicesRef;
+    private final Executor executor;
+    private final MetricsListener metricsListener;
+    
+    // Últimos campos subidos por dispositivo, base para calcular deltas
+    // Solo vive en memoria: tras reiniciar el proceso la primera subida de cada dispositivo
+    // vuelve a enviar el nodo completo, que es correcto aunque pese más que un delta
+    private final Map<String, Map<String, Object>> uploadedFields = new ConcurrentHashMap<>();
+    
+    /**
+     * Listener para las métricas de cada lote subido
+     */
+    public interface MetricsListener {
+        void onBatchUploaded(SyncBatchMetrics metrics);
+    }
+    
+    public DeviceBatchUploader(DeviceDao deviceDao, DatabaseReference devicesRef,
+                               Executor executor, MetricsListener metricsListener) {
+        this.deviceDao = deviceDao;
+        this.devicesRef = devicesRef;
+        this.executor = executor;
+        this.metricsListener = metricsListener;
+    }
+    
+    /**
+     * Sube los dispositivos en lotes de como mucho BATCH_SIZE
+     * Un lote que falla no se marca como sincronizado y se reenvía en la siguiente sincronización
+     */
+    public void upload(List<DeviceEntity> devices) {
+        for (int start = 0; start < devices.size(); start += BATCH_SIZE) {
+            int end = Math.min(start + BATCH_SIZE, devices.size());
+            uploadBatch(new ArrayList<>(devices.subList(start, end)));
+        }
+    }
+    
+    /**
+     * Registra el estado que ya tiene el servidor, por ejemplo tras una descarga
+     */
+    public void rememberRemoteState(DeviceEntity device) {
+        uploadedFields.put(device.getDeviceId(), toMap(device));
+    }
+    
+    /**
+     * Sube un lote de dispositivos con una sola escritura multi-ruta
+     * Los dispositivos nuevos se escriben completos; los existentes solo con sus campos cambiados
+     */
+    private void uploadBatch(List<DeviceEntity> batch) {
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, Map<String, Object>> uploadedSnapshots = new HashMap<>();
+        List<String> batchIds = new ArrayList<>();
+        
+        for (DeviceEntity device : batch) {
+            String deviceId = device.getDeviceId();
+            Map<String, Object> current = toMap(device);
+            Map<String, Object> previous = uploadedFields.get(deviceId);
+            batchIds.add(deviceId);
+            uploadedSnapshots.put(deviceId, current);
+            
+            if (previous == null || device.getLastSync() == 0) {
+                // Sin base conocida: escribir el nodo completo
+                updates.put(deviceId, current);
+                continue;
+            }
+            
+            // Solo los campos que cambiaron desde la última subida
+            boolean changed = false;
+            for (Map.Entry<String, Object> field : current.entrySet()) {
+                if (!Objects.equals(field.getValue(), previous.get(field.getKey()))) {
+                    updates.put(deviceId + "/" + field.getKey(), field.getValue());
+                    changed = true;
+                }
+            }
+            if (changed) {
+                // Mantener updatedAt al día para que las descargas incrementales vean el cambio
+                updates.put(deviceId + "/updatedAt", device.getUpdatedAt());
+            }
+        }
+        
+        if (updates.isEmpty()) {
+            // Nada cambió realmente, solo marcar como sincronizados
+            deviceDao.markAllAsSynced(batchIds, System.currentTimeMillis());
+            return;
+        }
+        
+        long bytes = SyncBatchMetrics.estimatePayloadBytes(updates);
+        long uploadStart = System.currentTimeMillis();
+        devicesRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    executor.execute(() -> {
+                        deviceDao.markAllAsSynced(batchIds, System.currentTimeMillis());
+                        uploadedFields.putAll(uploadedSnapshots);
+                    });
+                    reportMetrics(batch.size(), bytes, uploadStart, true);
+                })
+                .addOnFailureListener(e -> {
+                    // El lote queda con is_synced = 0 y sin actualizar la base de deltas
+                    Log.e(TAG, "Error subiendo lote de dispositivos", e);
+                    reportMetrics(batch.size(), bytes, uploadStart, false);
+                });
+    }
+    
+    private void reportMetrics(int items, long bytes, long start, boolean success) {
+        if (metricsListener != null) {
+            metricsListener.onBatchUploaded(new SyncBatchMetrics("devices",
+                    SyncBatchMetrics.Direction.UPLOAD, items, bytes, 1,
+                    System.currentTimeMillis() - start, success));
+        }
+    }
+    
+    private Map<String, Object> toMap(DeviceEntity device) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", device.getDeviceId());
+        map.put("roomId", device.getRoomId());
+        map.put("name", device.getName());
+        map.put("deviceType", device.getDeviceType());
+        map.put("isOn", device.isOn());
+        map.put("intensity", device.getIntensity());
+        map.put("temperature", device.getTemperature());
+        map.put("isOnline", device.isOnline());
+        map.put("lastStateChange", device.getLastStateChange());
+        map.put("createdAt", device.getCreatedAt());
+        map.put("updatedAt", device.getUpdatedAt());
+        map.put("hardwareId", device.getHardwareId());
+        map.put("pinNumber", device.getPinNumber());
+        return map;
+    }
+}
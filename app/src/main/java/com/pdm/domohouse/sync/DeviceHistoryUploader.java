@@ -0,0 +1,151 @@
+package com.pdm.domohouse.sync;
+
+import android.util.Log;
+
+import com.google.firebase.database.DatabaseReference;
+import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+import com.pdm.domohouse.data.database.paging.HistoryPageSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Subidor reanudable del historial de dispositivos
+ * Envía el historial pendiente en bloques de tamaño fijo como escrituras multi-ruta
+ * y marca cada bloque como sincronizado en cuanto Firebase lo confirma
+ */
+public class DeviceHistoryUploader {
+    private static final String TAG = "DeviceHistoryUploader";
+    
+    // Entradas de historial por escritura multi-ruta
+    static final int CHUNK_SIZE = 500;
+    
+    private final DeviceHistoryDao historyDao;
+    private final DatabaseReference historyRef;
+    private final Executor executor;
+    private final String installationId;
+    private final MetricsListener metricsListener;
+    
+    // Evita dos recorridos simultáneos sobre el mismo backlog
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    
+    // Cursor sobre el historial pendiente del recorrido actual
+    private volatile HistoryPageSource pendingPages;
+    
+    /**
+     * Listener para las métricas de cada bloque subido
+     */
+    public interface MetricsListener {
+        void onChunkUploaded(SyncBatchMetrics metrics);
+    }
+    
+    public DeviceHistoryUploader(DeviceHistoryDao historyDao, DatabaseReference historyRef,
+                                 Executor executor, String installationId,
+                                 MetricsListener metricsListener) {
+        this.historyDao = historyDao;
+        this.historyRef = historyRef;
+        this.executor = executor;
+        this.installationId = installationId;
+        this.metricsListener = metricsListener;
+    }
+    
+    /**
+     * Inicia la subida del historial pendiente si no hay otra en curso
+     */
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            Log.d(TAG, "Subida de historial ya en curso");
+            return;
+        }
+        pendingPages = HistoryPageSource.unsynced(historyDao, CHUNK_SIZE);
+        executor.execute(this::uploadNextChunk);
+    }
+    
+    /**
+     * Indica si hay una subida en curso
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+    
+    /**
+     * Construye la clave remota determinista de una entrada de historial
+     * Reintentar el mismo bloque sobrescribe las mismas claves en lugar de duplicarlas
+     */
+    static String remoteKey(String installationId, long historyId) {
+        return installationId + "_" + historyId;
+    }
+    
+    /**
+     * Sube el siguiente bloque pendiente y encadena el siguiente al confirmarse
+     */
+    private void uploadNextChunk() {
+        List<DeviceHistoryEntity> chunk;
+        try {
+            chunk = pendingPages.loadNextPage();
+        } catch (Exception e) {
+            Log.e(TAG, "Error leyendo historial pendiente", e);
+            running.set(false);
+            return;
+        }
+        
+        if (chunk.isEmpty()) {
+            running.set(false);
+            return;
+        }
+        
+        Map<String, Object> updates = new HashMap<>();
+        List<Long> chunkIds = new ArrayList<>(chunk.size());
+        for (DeviceHistoryEntity history : chunk) {
+            updates.put(remoteKey(installationId, history.getHistoryId()), toMap(history));
+            chunkIds.add(history.getHistoryId());
+        }
+        
+        long bytes = SyncBatchMetrics.estimatePayloadBytes(updates);
+        long start = System.currentTimeMillis();
+        historyRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> executor.execute(() -> {
+                    try {
+                        // Marcar el bloque de inmediato: un fallo posterior no lo reenvía
+                        historyDao.markAsSynced(chunkIds, System.currentTimeMillis());
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error marcando bloque de historial como sincronizado", e);
+                        running.set(false);
+                        return;
+                    }
+                    reportMetrics(chunk.size(), bytes, start, true);
+                    uploadNextChunk();
+                }))
+                .addOnFailureListener(e -> {
+                    // Lo pendiente queda sin marcar y se retoma en la siguiente sincronización
+                    Log.e(TAG, "Error subiendo bloque de historial", e);
+                    reportMetrics(chunk.size(), bytes, start, false);
+                    running.set(false);
+                });
+    }
+    
+    private void reportMetrics(int items, long bytes, long start, boolean success) {
+        if (metricsListener != null) {
+            metricsListener.onChunkUploaded(new SyncBatchMetrics("device_history",
+                    SyncBatchMetrics.Direction.UPLOAD, items, bytes, 1,
+                    System.currentTimeMillis() - start, success));
+        }
+    }
+    
+    private Map<String, Object> toMap(DeviceHistoryEntity history) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("deviceId", history.getDeviceId());
+        map.put("action", history.getAction());
+        map.put("oldValue", history.getOldValue());
+        map.put("newValue", history.getNewValue());
+        map.put("timestamp", history.getTimestamp());
+        map.put("triggeredBy", history.getTriggeredBy());
+        map.put("userId", history.getUserId());
+        return map;
+    }
+}
@@ -0,0 +1,114 @@
+package com.pdm.domohouse.sync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Métricas de un lote de sincronización con Firebase
+ * Permite medir bytes transferidos, viajes de red y duración de cada lote
+ */
+public class SyncBatchMetrics {
+    
+    // Dirección del lote
+    public enum Direction {
+        UPLOAD,
+        DOWNLOAD
+    }
+    
+    private final String entity;
+    private final Direction direction;
+    private final int itemCount;
+    private final long bytes;
+    private final int roundTrips;
+    private final long durationMs;
+    private final boolean success;
+    private final long timestamp;
+    
+    public SyncBatchMetrics(String entity, Direction direction, int itemCount, long bytes,
+                            int roundTrips, long durationMs, boolean success) {
+        this.entity = entity;
+        this.direction = direction;
+        this.itemCount = itemCount;
+        this.bytes = bytes;
+        this.roundTrips = roundTrips;
+        this.durationMs = durationMs;
+        this.success = success;
+        this.timestamp = System.currentTimeMillis();
+    }
+    
+    /**
+     * Estima el tamaño en bytes de un payload tal como viaja en JSON a Firebase
+     * Recorre mapas y colecciones; no pretende ser exacto, solo comparable entre lotes
+     */
+    public static long estimatePayloadBytes(Object value) {
+        if (value == null) {
+            return 4; // null
+        }
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.UTF_8).length + 2; // comillas
+        }
+        if (value instanceof Boolean || value instanceof Number) {
+            return String.valueOf(value).length();
+        }
+        if (value instanceof Map) {
+            long size = 2; // llaves
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimatePayloadBytes(String.valueOf(entry.getKey())) + 1; // dos puntos
+                size += estimatePayloadBytes(entry.getValue()) + 1; // coma
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 2; // corchetes
+            for (Object item : (Collection<?>) value) {
+                size += estimatePayloadBytes(item) + 1;
+            }
+            return size;
+        }
+        return estimatePayloadBytes(String.valueOf(value));
+    }
+    
+    // Getters
+    public String getEntity() {
+        return entity;
+    }
+    
+    public Direction getDirection() {
+        return direction;
+    }
+    
+    public int getItemCount() {
+        return itemCount;
+    }
+    
+    public long getBytes() {
+        return bytes;
+    }
+    
+    public int getRoundTrips() {
+        return roundTrips;
+    }
+    
+    public long getDurationMs() {
+        return durationMs;
+    }
+    
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    @Override
+    public String toString() {
+        return "SyncBatchMetrics{" + entity + " " + direction +
+                ", items=" + itemCount +
+                ", bytes=" + bytes +
+                ", roundTrips=" + roundTrips +
+                ", durationMs=" + durationMs +
+                ", success=" + success + "}";
+    }
+}
@@ -13,22 +13,26 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.CacheInvalidationBus;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
-import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.database.entity.SyncWatermarkEntity;
 import com.pdm.domohouse.data.database.entity.UserPreferencesEntity;
 import com.pdm.domohouse.data.database.entity.UserProfileEntity;
+import com.pdm.domohouse.data.metrics.MetricsRegistry;
 import com.pdm.domohouse.data.model.UserPreferences;
 import com.pdm.domohouse.data.model.UserProfile;
+import com.pdm.domohouse.utils.PreferencesManager;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
 /**
  * Gestor central de sincronización entre base de datos local y Firebase
@@ -42,10 +46,21 @@ public class SyncManager {
     private final AppDatabase database;
     private final FirebaseDatabase firebaseDatabase;
     private final FirebaseAuth firebaseAuth;
-    private final ExecutorService executorService;
+    private final Executor executorService;
     
     private final MutableLiveData<SyncStatus> syncStatus = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isOnline = new MutableLiveData<>();
+    private final MutableLiveData<SyncBatchMetrics> batchMetrics = new MutableLiveData<>();
+    
+    // Subidor por lotes de los dispositivos modificados
+    private final DeviceBatchUploader deviceUploader;
+    
+    // Subidor reanudable del historial, creado en el hilo de sincronización
+    private DeviceHistoryUploader historyUploader;
+    
+    // Tablas con marca de agua de descarga incremental
+    private static final String WATERMARK_ROOMS = "rooms";
+    private static final String WATERMARK_DEVICES = "devices";
     
     // Estados de sincronización
     public enum SyncStatus {
@@ -66,12 +81,15 @@ public class SyncManager {
     
     private ConflictResolution defaultStrategy = ConflictResolution.NEWEST_WINS;
     
-    private SyncManager(Context context) {
+    private SyncManager(Context context, AppExecutors executors) {
         this.context = context.getApplicationContext();
         this.database = AppDatabase.getDatabase(this.context);
         this.firebaseDatabase = FirebaseDatabase.getInstance();
         this.firebaseAuth = FirebaseAuth.getInstance();
-        this.executorService = Executors.newSingleThreadExecutor();
+        // Serie sobre el pool de base de datos compartido: las fusiones se aplican en orden
+        this.executorService = executors.newSerialExecutor();
+        this.deviceUploader = new DeviceBatchUploader(database.deviceDao(),
+                firebaseDatabase.getReference("devices"), executorService, this::publishBatchMetrics);
         
         // Monitorear cambios de conectividad
         monitorConnectivity();
@@ -82,7 +100,7 @@ public class SyncManager {
      */
     public static synchronized SyncManager getInstance(Context context) {
         if (instance == null) {
-            instance = new SyncManager(context);
+            instance = new SyncManager(context, AppExecutors.getInstance());
         }
         return instance;
     }
@@ -137,6 +155,19 @@ public class SyncManager {
         });
     }
     
+    /**
+     * Sube ya un grupo de dispositivos recién modificados, por ejemplo una escena
+     * Todo el grupo viaja en una sola escritura multi-ruta; sin conexión o sin sesión se deja
+     * pendiente (is_synced = 0) para la siguiente sincronización
+     */
+    public void uploadDevices(List<DeviceEntity> devices) {
+        if (devices == null || devices.isEmpty() || !isOnline() || firebaseAuth.getCurrentUser() == null) {
+            return;
+        }
+        List<DeviceEntity> batch = new ArrayList<>(devices);
+        executorService.execute(() -> deviceUploader.upload(batch));
+    }
+    
     /**
      * Sincroniza el perfil del usuario
      */
@@ -250,24 +281,32 @@ public class SyncManager {
                         });
             }
             
-            // Descargar habitaciones de Firebase
-            roomsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            // Descargar solo las habitaciones cambiadas desde la última descarga exitosa
+            long watermark = getPullWatermark(WATERMARK_ROOMS);
+            Query changedRooms = roomsRef.orderByChild("updatedAt").startAt(watermark);
+            changedRooms.addListenerForSingleValueEvent(new ValueEventListener() {
                 @Override
                 public void onDataChange(DataSnapshot snapshot) {
                     executorService.execute(() -> {
                         List<RoomEntity> remoteRooms = new ArrayList<>();
+                        long newWatermark = watermark;
                         for (DataSnapshot roomSnapshot : snapshot.getChildren()) {
                             RoomEntity room = roomSnapshot.getValue(RoomEntity.class);
                             if (room != null) {
-                                room.setSynced(true);
-                                room.setLastSync(System.currentTimeMillis());
+                                newWatermark = Math.max(newWatermark, room.getUpdatedAt());
                                 remoteRooms.add(room);
                             }
                         }
                         
-                        if (!remoteRooms.isEmpty()) {
-                            database.roomDao().insertAll(remoteRooms);
+                        // Aplicar todo en una sola transacción
+                        long mergeStart = System.nanoTime();
+                        List<RoomEntity> appliedRooms = database.roomDao().mergeRemoteRooms(remoteRooms,
+                                SyncManager.this::resolveRoomConflict, System.currentTimeMillis());
+                        MetricsRegistry.getInstance().recordLatency("RoomDao.mergeRemoteRooms", mergeStart);
+                        for (RoomEntity room : appliedRooms) {
+                            CacheInvalidationBus.getInstance().invalidateRoom(room.getRoomId());
                         }
+                        savePullWatermark(WATERMARK_ROOMS, newWatermark);
                     });
                 }
                 
@@ -280,86 +319,107 @@ public class SyncManager {
     }
     
     /**
-     * Sincroniza los dispositivos
+     * Sincroniza los dispositivos en modo por lotes
+     * Sube solo los campos modificados con una escritura multi-ruta por lote
+     * y descarga solo los dispositivos remotos cambiados desde la última descarga exitosa
      */
     private void syncDevices() {
         executorService.execute(() -> {
             List<DeviceEntity> unsyncedDevices = database.deviceDao().getUnsyncedDevices();
             DatabaseReference devicesRef = firebaseDatabase.getReference("devices");
             
-            // Subir dispositivos no sincronizados
-            for (DeviceEntity device : unsyncedDevices) {
-                devicesRef.child(device.getDeviceId()).setValue(convertToMap(device))
-                        .addOnSuccessListener(aVoid -> {
-                            executorService.execute(() -> {
-                                database.deviceDao().markAsSynced(device.getDeviceId(), System.currentTimeMillis());
-                            });
-                        });
-            }
+            // Subir dispositivos no sincronizados en lotes
+            deviceUploader.upload(unsyncedDevices);
             
-            // Descargar dispositivos de Firebase
-            devicesRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            // Descargar solo los dispositivos cambiados desde la última marca de agua
+            long watermark = getPullWatermark(WATERMARK_DEVICES);
+            long downloadStart = System.currentTimeMillis();
+            Query changedDevices = devicesRef.orderByChild("updatedAt").startAt(watermark);
+            changedDevices.addListenerForSingleValueEvent(new ValueEventListener() {
                 @Override
                 public void onDataChange(DataSnapshot snapshot) {
                     executorService.execute(() -> {
                         List<DeviceEntity> remoteDevices = new ArrayList<>();
+                        long newWatermark = watermark;
                         for (DataSnapshot deviceSnapshot : snapshot.getChildren()) {
                             DeviceEntity device = deviceSnapshot.getValue(DeviceEntity.class);
                             if (device != null) {
-                                DeviceEntity localDevice = database.deviceDao().getDeviceSync(device.getDeviceId());
-                                
-                                if (localDevice != null) {
-                                    // Resolver conflictos
-                                    DeviceEntity resolved = resolveDeviceConflict(localDevice, device);
-                                    database.deviceDao().update(resolved);
-                                } else {
-                                    device.setSynced(true);
-                                    device.setLastSync(System.currentTimeMillis());
-                                    remoteDevices.add(device);
-                                }
+                                newWatermark = Math.max(newWatermark, device.getUpdatedAt());
+                                remoteDevices.add(device);
                             }
                         }
                         
-                        if (!remoteDevices.isEmpty()) {
-                            database.deviceDao().insertAll(remoteDevices);
+                        // Resolver conflictos y escribir todo en una sola transacción
+                        long mergeStart = System.nanoTime();
+                        List<DeviceEntity> applied = database.deviceDao().mergeRemoteDevices(remoteDevices,
+                                SyncManager.this::resolveDeviceConflict, System.currentTimeMillis());
+                        MetricsRegistry.getInstance().recordLatency("DeviceDao.mergeRemoteDevices", mergeStart);
+                        for (DeviceEntity device : applied) {
+                            // El servidor ahora es la base para calcular deltas
+                            deviceUploader.rememberRemoteState(device);
+                            CacheInvalidationBus.getInstance().invalidateDevice(device.getDeviceId());
                         }
+                        savePullWatermark(WATERMARK_DEVICES, newWatermark);
+                        
+                        publishBatchMetrics(new SyncBatchMetrics("devices", SyncBatchMetrics.Direction.DOWNLOAD,
+                                (int) snapshot.getChildrenCount(),
+                                SyncBatchMetrics.estimatePayloadBytes(snapshot.getValue()),
+                                1, System.currentTimeMillis() - downloadStart, true));
                     });
                 }
                 
                 @Override
                 public void onCancelled(DatabaseError error) {
                     Log.e(TAG, "Error sincronizando dispositivos", error.toException());
+                    publishBatchMetrics(new SyncBatchMetrics("devices", SyncBatchMetrics.Direction.DOWNLOAD,
+                            0, 0, 1, System.currentTimeMillis() - downloadStart, false));
                 }
             });
         });
     }
     
+    /**
+     * Obtiene la marca de agua persistida de una tabla (0 si nunca se descargó)
+     */
+    private long getPullWatermark(String tableName) {
+        Long watermark = database.syncWatermarkDao().getWatermark(tableName);
+        return watermark != null ? watermark : 0;
+    }
+    
+    /**
+     * Persiste la marca de agua de una tabla tras una descarga exitosa
+     */
+    private void savePullWatermark(String tableName, long watermark) {
+        SyncWatermarkEntity entity = new SyncWatermarkEntity();
+        entity.setTableName(tableName);
+        entity.setWatermark(watermark);
+        entity.setUpdatedAt(System.currentTimeMillis());
+        database.syncWatermarkDao().upsert(entity);
+    }
+    
+    /**
+     * Publica las métricas del último lote sincronizado
+     */
+    private void publishBatchMetrics(SyncBatchMetrics metrics) {
+        Log.d(TAG, "Lote sincronizado: " + metrics);
+        batchMetrics.postValue(metrics);
+    }
+    
     /**
      * Sincroniza el historial de dispositivos
+     * Delegado al subidor reanudable, que sube por bloques y marca cada bloque al confirmarse
      */
     private void syncDeviceHistory() {
         executorService.execute(() -> {
-            List<DeviceHistoryEntity> unsyncedHistory = database.deviceHistoryDao().getUnsyncedHistory();
-            DatabaseReference historyRef = firebaseDatabase.getReference("device_history");
-            
-            List<Long> syncedIds = new ArrayList<>();
-            
-            for (DeviceHistoryEntity history : unsyncedHistory) {
-                String key = historyRef.push().getKey();
-                if (key != null) {
-                    historyRef.child(key).setValue(convertToMap(history))
-                            .addOnSuccessListener(aVoid -> {
-                                synchronized (syncedIds) {
-                                    syncedIds.add(history.getHistoryId());
-                                    if (syncedIds.size() == unsyncedHistory.size()) {
-                                        executorService.execute(() -> {
-                                            database.deviceHistoryDao().markAsSynced(syncedIds, System.currentTimeMillis());
-                                        });
-                                    }
-                                }
-                            });
-                }
+            if (historyUploader == null) {
+                historyUploader = new DeviceHistoryUploader(
+                        database.deviceHistoryDao(),
+                        firebaseDatabase.getReference("device_history"),
+                        executorService,
+                        PreferencesManager.getInstance(context).getInstallationId(),
+                        this::publishBatchMetrics);
             }
+            historyUploader.start();
         });
     }
     
@@ -401,6 +461,20 @@ public class SyncManager {
         }
     }
     
+    /**
+     * Resuelve conflictos en habitaciones
+     */
+    private RoomEntity resolveRoomConflict(RoomEntity local, RoomEntity remote) {
+        // Cambios locales pendientes y más recientes prevalecen
+        if (!local.isSynced() && local.getUpdatedAt() > remote.getUpdatedAt()) {
+            return local;
+        } else {
+            remote.setSynced(true);
+            remote.setLastSync(System.currentTimeMillis());
+            return remote;
+        }
+    }
+    
     /**
      * Resuelve conflictos en dispositivos
      */
@@ -500,41 +574,15 @@ public class SyncManager {
         return map;
     }
     
-    private Map<String, Object> convertToMap(DeviceEntity device) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("deviceId", device.getDeviceId());
-        map.put("roomId", device.getRoomId());
-        map.put("name", device.getName());
-        map.put("deviceType", device.getDeviceType());
-        map.put("isOn", device.isOn());
-        map.put("intensity", device.getIntensity());
-        map.put("temperature", device.getTemperature());
-        map.put("isOnline", device.isOnline());
-        map.put("lastStateChange", device.getLastStateChange());
-        map.put("createdAt", device.getCreatedAt());
-        map.put("updatedAt", device.getUpdatedAt());
-        map.put("hardwareId", device.getHardwareId());
-        map.put("pinNumber", device.getPinNumber());
-        return map;
-    }
-    
-    private Map<String, Object> convertToMap(DeviceHistoryEntity history) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("deviceId", history.getDeviceId());
-        map.put("action", history.getAction());
-        map.put("oldValue", history.getOldValue());
-        map.put("newValue", history.getNewValue());
-        map.put("timestamp", history.getTimestamp());
-        map.put("triggeredBy", history.getTriggeredBy());
-        map.put("userId", history.getUserId());
-        return map;
-    }
-    
     // Getters
     public LiveData<SyncStatus> getSyncStatus() {
         return syncStatus;
     }
     
+    public LiveData<SyncBatchMetrics> getBatchMetrics() {
+        return batchMetrics;
+    }
+    
     public LiveData<Boolean> getIsOnline() {
         return isOnline;
     }
@@ -11,6 +11,9 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 
 import com.pdm.domohouse.cache.DeviceCache;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.cache.DashboardSnapshot;
+import com.pdm.domohouse.data.cache.DashboardSnapshotStore;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
@@ -19,6 +22,7 @@ import com.pdm.domohouse.data.model.DeviceType;
 import com.pdm.domohouse.data.model.Room;
 import com.pdm.domohouse.data.model.RoomStatus;
 import com.pdm.domohouse.data.model.RoomType;
+import com.pdm.domohouse.data.repository.DeviceRepository;
 import com.pdm.domohouse.sync.SyncManager;
 import com.pdm.domohouse.ui.base.BaseViewModel;
 
@@ -37,6 +41,16 @@ public class HomeViewModel extends BaseAndroidViewModel {
     private final DeviceCache deviceCache;
     private final AppDatabase database;
     private final SyncManager syncManager;
+    private final DashboardSnapshotStore snapshotStore;
+    private final DeviceRepository deviceRepository;
+    
+    // Snapshot y lista caliente del cache leídos en segundo plano; se aplican en el hilo principal
+    private final MutableLiveData<DashboardSnapshot> restoredSnapshot = new MutableLiveData<>();
+    private final MutableLiveData<List<Device>> cachedDevices = new MutableLiveData<>();
+    
+    // Indican si Room ya entregó datos reales (el snapshot no debe pisarlos)
+    private boolean roomsFromDbArrived = false;
+    private boolean devicesFromDbArrived = false;
 
     // LiveData para las habitaciones de la casa
     private final LiveData<List<RoomEntity>> roomsFromDb;
@@ -81,6 +95,8 @@ public class HomeViewModel extends BaseAndroidViewModel {
         this.deviceCache = DeviceCache.getInstance(context);
         this.database = AppDatabase.getDatabase(context);
         this.syncManager = SyncManager.getInstance(context);
+        this.snapshotStore = DashboardSnapshotStore.getInstance(context);
+        this.deviceRepository = new DeviceRepository(context);
         
         // Observar datos de la base de datos
         roomsFromDb = database.roomDao().getAllRooms();
@@ -89,6 +105,9 @@ public class HomeViewModel extends BaseAndroidViewModel {
         // Configurar observadores
         setupDataObservers();
         
+        // Pintar la última vista conocida mientras responden Room y Firebase
+        restoreSnapshot();
+        
         // Pre-cargar cache
         deviceCache.preloadDevices();
         
@@ -98,6 +117,70 @@ public class HomeViewModel extends BaseAndroidViewModel {
         }
     }
 
+    /**
+     * Lee el snapshot guardado en el último uso fuera del hilo principal
+     * Después pide la lista de dispositivos al cache compartido: al volver al dashboard
+     * llega desde memoria (y se recarga antes de expirar) sin esperar a Room.
+     * Los resultados se aplican en applySnapshot y applyCachedDevices
+     */
+    private void restoreSnapshot() {
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            DashboardSnapshot snapshot = snapshotStore.load();
+            if (snapshot != null) {
+                restoredSnapshot.postValue(snapshot);
+            }
+            
+            List<Device> devices = deviceRepository.getAllDevicesCachedSync();
+            if (devices != null) {
+                cachedDevices.postValue(devices);
+            }
+        });
+    }
+    
+    /**
+     * Publica la lista de dispositivos del cache si Room aún no entregó la suya
+     */
+    private void applyCachedDevices(List<Device> cached) {
+        _devices.removeSource(cachedDevices);
+        if (cached == null || devicesFromDbArrived) {
+            return;
+        }
+        
+        // La lista del cache es compartida e inmutable: la UI trabaja sobre su propia copia
+        List<Device> devices = new ArrayList<>(cached);
+        _devices.setValue(devices);
+        organizarDispositivosPorHabitacion(devices);
+    }
+    
+    /**
+     * Publica el snapshot en el hilo principal
+     * Solo rellena lo que Room todavía no ha entregado; los datos reales siempre ganan
+     */
+    private void applySnapshot(DashboardSnapshot snapshot) {
+        _rooms.removeSource(restoredSnapshot);
+        if (snapshot == null || (roomsFromDbArrived && devicesFromDbArrived)) {
+            return;
+        }
+        
+        if (!roomsFromDbArrived) {
+            _rooms.setValue(new ArrayList<>(snapshot.rooms));
+        }
+        if (!devicesFromDbArrived) {
+            List<Device> devices = new ArrayList<>(snapshot.devices);
+            _devices.setValue(devices);
+            organizarDispositivosPorHabitacion(devices);
+        }
+        if (roomsFromDbArrived || devicesFromDbArrived) {
+            // Las estadísticas se recalculan con los datos reales que ya hay
+            return;
+        }
+        _dashboardStats.setValue(new DashboardStats(
+            snapshot.totalRooms, snapshot.activeRooms, snapshot.totalDevices,
+            snapshot.connectedDevices, snapshot.activeDevices, snapshot.alertsCount,
+            snapshot.avgTemperature
+        ));
+    }
+
     /**
      * Configura observadores para datos de la base de datos
      */
@@ -105,6 +188,7 @@ public class HomeViewModel extends BaseAndroidViewModel {
         // Observar cambios en habitaciones
         _rooms.addSource(roomsFromDb, roomEntities -> {
             if (roomEntities != null) {
+                roomsFromDbArrived = true;
                 List<Room> rooms = convertRoomEntitiesToRooms(roomEntities);
                 _rooms.setValue(rooms);
                 updateDashboardStats();
@@ -114,6 +198,7 @@ public class HomeViewModel extends BaseAndroidViewModel {
         // Observar cambios en dispositivos
         _devices.addSource(devicesFromDb, deviceEntities -> {
             if (deviceEntities != null) {
+                devicesFromDbArrived = true;
                 List<Device> devices = convertDeviceEntitiesToDevices(deviceEntities);
                 _devices.setValue(devices);
                 organizarDispositivosPorHabitacion(devices);
@@ -121,6 +206,10 @@ public class HomeViewModel extends BaseAndroidViewModel {
             }
         });
         
+        // Aplicar el snapshot del disco y la lista del cache cuando terminen de leerse
+        _rooms.addSource(restoredSnapshot, this::applySnapshot);
+        _devices.addSource(cachedDevices, this::applyCachedDevices);
+        
         // Observar estado de sincronización
         syncManager.getSyncStatus().observeForever(status -> {
             switch (status) {
@@ -377,6 +466,11 @@ public class HomeViewModel extends BaseAndroidViewModel {
         );
 
         _dashboardStats.postValue(stats);
+        
+        // Guardar la vista actual para el próximo arranque en frío
+        snapshotStore.save(new DashboardSnapshot(currentRooms, currentDevices,
+            totalRooms, activeRooms, totalDevices, connectedDevices, activeDevices,
+            alertsCount, avgTemperature, System.currentTimeMillis()));
     }
 
     /**
@@ -463,6 +557,7 @@ public class HomeViewModel extends BaseAndroidViewModel {
     public void logout() {
         // Limpiar cache
         deviceCache.invalidateCache();
+        snapshotStore.clear();
         _error.setValue("Cerrando sesión...");
     }
     
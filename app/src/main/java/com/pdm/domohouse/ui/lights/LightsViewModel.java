@@ -4,10 +4,13 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.pdm.domohouse.cache.IntensityWriteBehindQueue;
 import com.pdm.domohouse.ui.base.BaseAndroidViewModel;
 import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.DeviceCommand;
 import com.pdm.domohouse.data.model.DeviceType;
 import com.pdm.domohouse.data.model.Room;
+import com.pdm.domohouse.data.repository.DeviceRepository;
 import com.pdm.domohouse.network.FirebaseDataManager;
 import com.pdm.domohouse.ui.lights.model.LightStats;
 import com.pdm.domohouse.ui.lights.model.RoomWithLights;
@@ -40,10 +43,18 @@ public class LightsViewModel extends BaseAndroidViewModel {
     
     // Firebase Data Manager
     private final FirebaseDataManager firebaseDataManager;
+    
+    // Escritura diferida de intensidades del slider
+    private final IntensityWriteBehindQueue intensityQueue;
+    
+    // Repositorio para aplicar escenas (grupos de luces) en una sola operación
+    private final DeviceRepository deviceRepository;
 
     public LightsViewModel(@NonNull Application application) {
         super(application);
         firebaseDataManager = FirebaseDataManager.getInstance();
+        intensityQueue = IntensityWriteBehindQueue.getInstance(application);
+        deviceRepository = new DeviceRepository(application);
         initializeSimulatedData(); // Por ahora usamos datos simulados hasta que se integre completamente Firebase
     }
 
@@ -136,6 +147,9 @@ public class LightsViewModel extends BaseAndroidViewModel {
             device.setCurrentValue(adjustedIntensity);
             device.setEnabled(adjustedIntensity > 0);
             
+            // Persistir solo el último valor del gesto
+            intensityQueue.submit(deviceId, (int) adjustedIntensity, null);
+            
             updateLightStats();
             refreshRoomsData();
         }
@@ -145,70 +159,75 @@ public class LightsViewModel extends BaseAndroidViewModel {
      * Enciende todas las luces de la casa
      */
     public void turnOnAllLights() {
+        List<Device> lights = new ArrayList<>();
         for (Device device : allDevices) {
             if (isLightDevice(device.getType())) {
-                device.setEnabled(true);
-                
-                if (device.getType() == DeviceType.LIGHT_SWITCH) {
-                    device.setCurrentValue(1);
-                } else if (device.getType().hasRange()) {
-                    device.setCurrentValue(device.getMaxValue());
-                }
+                lights.add(device);
             }
         }
-        
-        updateLightStats();
-        refreshRoomsData();
+        setLightsState(lights, true);
     }
 
     /**
      * Apaga todas las luces de la casa
      */
     public void turnOffAllLights() {
+        List<Device> lights = new ArrayList<>();
         for (Device device : allDevices) {
             if (isLightDevice(device.getType())) {
-                device.setEnabled(false);
-                device.setCurrentValue(0);
+                lights.add(device);
             }
         }
-        
-        updateLightStats();
-        refreshRoomsData();
+        setLightsState(lights, false);
     }
 
     /**
      * Enciende todas las luces de una habitación específica
      */
     public void turnOnRoomLights(String roomId) {
-        List<Device> roomLights = getLightDevicesForRoom(roomId);
-        
-        for (Device device : roomLights) {
-            device.setEnabled(true);
-            
-            if (device.getType() == DeviceType.LIGHT_SWITCH) {
-                device.setCurrentValue(1);
-            } else if (device.getType().hasRange()) {
-                device.setCurrentValue(device.getMaxValue());
-            }
-        }
-        
-        updateLightStats();
-        refreshRoomsData();
+        setLightsState(getLightDevicesForRoom(roomId), true);
     }
 
     /**
      * Apaga todas las luces de una habitación específica
      */
     public void turnOffRoomLights(String roomId) {
-        List<Device> roomLights = getLightDevicesForRoom(roomId);
+        setLightsState(getLightDevicesForRoom(roomId), false);
+    }
+    
+    /**
+     * Enciende o apaga un grupo de luces como una escena
+     * La interfaz se actualiza al momento y el grupo se persiste y sincroniza de una vez
+     */
+    private void setLightsState(List<Device> lights, boolean on) {
+        List<DeviceCommand> commands = new ArrayList<>();
         
-        for (Device device : roomLights) {
-            device.setEnabled(false);
-            device.setCurrentValue(0);
+        for (Device device : lights) {
+            device.setEnabled(on);
+            
+            if (device.getType() == DeviceType.LIGHT_SWITCH) {
+                device.setCurrentValue(on ? 1 : 0);
+                commands.add(on ? DeviceCommand.turnOn(device.getId()) : DeviceCommand.turnOff(device.getId()));
+            } else if (device.getType().hasRange()) {
+                float value = on ? device.getMaxValue() : 0;
+                device.setCurrentValue(value);
+                commands.add(new DeviceCommand(device.getId(), on, Math.max(0, Math.min(100, (int) value))));
+            } else {
+                if (!on) {
+                    device.setCurrentValue(0);
+                }
+                commands.add(on ? DeviceCommand.turnOn(device.getId()) : DeviceCommand.turnOff(device.getId()));
+            }
         }
         
         updateLightStats();
         refreshRoomsData();
+        
+        deviceRepository.applyScene(commands, null).thenAccept(applied -> {
+            if (!applied) {
+                errorMessage.postValue("Error al aplicar el cambio a las luces");
+            }
+        });
     }
 
     /**
@@ -1,13 +1,25 @@
 package com.pdm.domohouse.ui.settings;
 
+import android.app.AlertDialog;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import com.pdm.domohouse.R;
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Fragmento para configuraciones de la aplicación
@@ -15,9 +27,56 @@ import com.pdm.domohouse.R;
  */
 public class SettingsFragment extends Fragment {
 
+    private static final String TAG = "SettingsFragment";
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         return inflater.inflate(R.layout.fragment_settings, container, false);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        // DEBUG: botón para ver las métricas de caches y repositorios
+        View metricsButton = view.findViewById(R.id.debugMetricsButton);
+        boolean debuggable = (requireContext().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        metricsButton.setVisibility(debuggable ? View.VISIBLE : View.GONE);
+        metricsButton.setOnClickListener(v -> showMetricsDialog());
+    }
+
+    /**
+     * Muestra el informe de métricas con la opción de guardarlo en un archivo
+     */
+    private void showMetricsDialog() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        new AlertDialog.Builder(requireContext())
+            .setTitle("Métricas")
+            .setMessage(metrics.dump())
+            .setPositiveButton("Guardar", (dialog, which) -> saveMetrics(metrics))
+            .setNeutralButton("Reiniciar", (dialog, which) -> metrics.reset())
+            .setNegativeButton("Cerrar", null)
+            .show();
+    }
+
+    /**
+     * Vuelca las métricas a un archivo en segundo plano y avisa del resultado
+     */
+    private void saveMetrics(MetricsRegistry metrics) {
+        Context appContext = requireContext().getApplicationContext();
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            String message;
+            try {
+                File file = metrics.dumpToFile(appContext);
+                message = "Métricas guardadas en " + file.getName();
+            } catch (IOException e) {
+                Log.e(TAG, "Error guardando métricas", e);
+                message = "No se pudieron guardar las métricas";
+            }
+            String result = message;
+            new Handler(Looper.getMainLooper()).post(() ->
+                Toast.makeText(appContext, result, Toast.LENGTH_SHORT).show());
+        });
+    }
+}
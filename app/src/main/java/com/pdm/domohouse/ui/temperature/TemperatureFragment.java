@@ -24,6 +24,7 @@ import com.google.android.material.button.MaterialButtonToggleGroup;
 import com.google.android.material.slider.Slider;
 
 import com.pdm.domohouse.R;
+import com.pdm.domohouse.data.database.rollup.SensorRollupPoint;
 import com.pdm.domohouse.databinding.FragmentTemperatureBinding;
 import com.pdm.domohouse.ui.temperature.adapter.RoomTemperatureAdapter;
 import com.pdm.domohouse.ui.temperature.adapter.FanControlAdapter;
@@ -144,9 +145,6 @@ public class TemperatureFragment extends Fragment implements FanControlListener
                 return String.format(Locale.getDefault(), "%.1f°C", value);
             }
         });
-        
-        // Cargar datos iniciales del gráfico
-        loadChartData(TemperatureViewModel.ChartPeriod.DAY_24H);
     }
     
     /**
@@ -197,12 +195,8 @@ public class TemperatureFragment extends Fragment implements FanControlListener
             }
         });
         
-        // Observar cambios en el período del gráfico
-        viewModel.getSelectedPeriod().observe(getViewLifecycleOwner(), period -> {
-            if (period != null) {
-                loadChartData(period);
-            }
-        });
+        // Observar los puntos del gráfico calculados desde los rollups
+        viewModel.getChartData().observe(getViewLifecycleOwner(), this::showChartPoints);
     }
     
     /**
@@ -242,7 +236,25 @@ public class TemperatureFragment extends Fragment implements FanControlListener
     }
     
     /**
-     * Carga datos del gráfico según el período seleccionado
+     * Muestra los promedios por bucket en el gráfico
+     * Si todavía no hay lecturas registradas se muestran datos simulados
+     */
+    private void showChartPoints(List<SensorRollupPoint> points) {
+        if (points == null || points.isEmpty()) {
+            TemperatureViewModel.ChartPeriod period = viewModel.getSelectedPeriod().getValue();
+            loadChartData(period != null ? period : TemperatureViewModel.ChartPeriod.DAY_24H);
+            return;
+        }
+        
+        List<Entry> entries = new ArrayList<>();
+        for (SensorRollupPoint point : points) {
+            entries.add(new Entry(point.getBucketStart(), (float) point.getAverage()));
+        }
+        renderChart(entries);
+    }
+    
+    /**
+     * Carga datos simulados del gráfico según el período seleccionado
      */
     private void loadChartData(TemperatureViewModel.ChartPeriod period) {
         List<Entry> entries = new ArrayList<>();
@@ -261,6 +273,13 @@ public class TemperatureFragment extends Fragment implements FanControlListener
             entries.add(new Entry(time, temperature));
         }
         
+        renderChart(entries);
+    }
+    
+    /**
+     * Aplica las entradas al gráfico de temperatura
+     */
+    private void renderChart(List<Entry> entries) {
         // Crear dataset
         LineDataSet dataSet = new LineDataSet(entries, "Temperatura Promedio");
         dataSet.setColor(getResources().getColor(R.color.primary, null));
@@ -2,11 +2,13 @@ package com.pdm.domohouse.ui.temperature;
 
 import android.app.Application;
 import com.pdm.domohouse.ui.base.BaseAndroidViewModel;
+import com.pdm.domohouse.concurrent.AppExecutors;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 import androidx.annotation.NonNull;
 
+import com.pdm.domohouse.data.database.rollup.SensorRollupPoint;
 import com.pdm.domohouse.data.model.*;
 import com.pdm.domohouse.data.repository.DeviceRepository;
 import com.pdm.domohouse.data.repository.TemperatureRepository;
@@ -14,8 +16,8 @@ import com.pdm.domohouse.utils.SingleLiveEvent;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ViewModel para el control y monitoreo de temperatura
@@ -29,8 +31,9 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
     private final TemperatureRepository temperatureRepository;
     private final DeviceRepository deviceRepository;
     
-    // Executor para operaciones asíncronas
-    private final ExecutorService executorService;
+    // Executors para operaciones asíncronas: disco para lecturas, red para órdenes a ventiladores
+    private final Executor executorService;
+    private final Executor commandExecutor;
     
     // LiveData para UI
     private final MutableLiveData<List<RoomTemperature>> roomTemperatures = new MutableLiveData<>();
@@ -52,18 +55,30 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
     
     // Período de gráfico seleccionado
     private final MutableLiveData<ChartPeriod> selectedPeriod = new MutableLiveData<>(ChartPeriod.DAY_24H);
+    private final MutableLiveData<List<SensorRollupPoint>> chartData = new MutableLiveData<>();
+    
+    // Última petición de gráfico; las respuestas de peticiones anteriores se descartan
+    private final Object chartLock = new Object();
+    private int chartRequest = 0;
     
     public TemperatureViewModel(@NonNull Application application) {
+        this(application, AppExecutors.getInstance());
+    }
+    
+    public TemperatureViewModel(@NonNull Application application, @NonNull AppExecutors executors) {
         super(application);
         
         this.temperatureRepository = new TemperatureRepository();
-        this.deviceRepository = new DeviceRepository(getApplication());
-        this.executorService = Executors.newFixedThreadPool(3);
+        this.deviceRepository = new DeviceRepository(getApplication(), executors);
+        // Las lecturas y preferencias van al pool de disco; las órdenes a ventiladores al de red
+        this.executorService = executors.diskIO();
+        this.commandExecutor = executors.networkIO();
         
         // Inicializar datos
         loadTemperatureData();
         loadFanControls();
         loadTemperatureThresholds();
+        loadChartData(ChartPeriod.DAY_24H);
     }
     
     // Getters para LiveData
@@ -83,6 +98,7 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
     public LiveData<Boolean> getIsAutomaticControlEnabled() { return isAutomaticControlEnabled; }
     
     public LiveData<ChartPeriod> getSelectedPeriod() { return selectedPeriod; }
+    public LiveData<List<SensorRollupPoint>> getChartData() { return chartData; }
     
     /**
      * Carga los datos de temperatura de todas las habitaciones
@@ -147,7 +163,7 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
      * Cambia el estado de encendido/apagado de un ventilador
      */
     public void toggleFanPower(String deviceId, boolean isOn) {
-        executorService.execute(() -> {
+        commandExecutor.execute(() -> {
             try {
                 boolean success = temperatureRepository.setFanPower(deviceId, isOn);
                 if (success) {
@@ -167,7 +183,7 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
      * Cambia la velocidad de un ventilador
      */
     public void setFanSpeed(String deviceId, float speedPercentage) {
-        executorService.execute(() -> {
+        commandExecutor.execute(() -> {
             try {
                 boolean success = temperatureRepository.setFanSpeed(deviceId, speedPercentage);
                 if (success) {
@@ -245,7 +261,30 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
      */
     public void setChartPeriod(ChartPeriod period) {
         selectedPeriod.setValue(period);
-        // Aquí se podría recargar los datos del gráfico según el período
+        loadChartData(period);
+    }
+    
+    /**
+     * Carga los puntos del gráfico desde los rollups precalculados
+     */
+    private void loadChartData(ChartPeriod period) {
+        int request;
+        synchronized (chartLock) {
+            request = ++chartRequest;
+        }
+        deviceRepository.getSensorChart(TimeUnit.HOURS.toMillis(period.getHours()))
+                .thenAccept(points -> {
+                    // Una carga lenta del período anterior no debe pisar la del período actual
+                    synchronized (chartLock) {
+                        if (request == chartRequest) {
+                            chartData.postValue(points);
+                        }
+                    }
+                })
+                .exceptionally(throwable -> {
+                    errorMessage.postValue("Error al cargar el gráfico de temperatura: " + throwable.getMessage());
+                    return null;
+                });
     }
     
     /**
@@ -339,9 +378,7 @@ public class TemperatureViewModel extends BaseAndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
+        // Los executors son compartidos por la aplicación: no se cierran con el ViewModel
     }
     
     /**
@@ -4,6 +4,8 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
+import java.util.UUID;
+
 /**
  * Clase para manejar SharedPreferences generales (no cifradas)
  * Para preferencias no sensibles como configuraciones de temperatura, etc.
@@ -12,6 +14,7 @@ public class PreferencesManager {
     
     private static final String TAG = "PreferencesManager";
     private static final String PREFS_FILE_NAME = "domohouse_prefs";
+    private static final String KEY_INSTALLATION_ID = "installation_id";
     
     private static PreferencesManager instance;
     private final SharedPreferences sharedPreferences;
@@ -101,6 +104,21 @@ public class PreferencesManager {
         return sharedPreferences.getBoolean(key, defaultValue);
     }
     
+    /**
+     * Obtiene el identificador estable de esta instalación, generándolo la primera vez
+     * Se usa para construir claves remotas deterministas que no choquen entre dispositivos
+     * @return Identificador de la instalación
+     */
+    public synchronized String getInstallationId() {
+        String installationId = sharedPreferences.getString(KEY_INSTALLATION_ID, null);
+        if (installationId == null) {
+            installationId = UUID.randomUUID().toString();
+            sharedPreferences.edit().putString(KEY_INSTALLATION_ID, installationId).commit();
+            Log.d(TAG, "Nuevo identificador de instalación generado");
+        }
+        return installationId;
+    }
+    
     // Métodos de utilidad
     
     public void remove(String key) {
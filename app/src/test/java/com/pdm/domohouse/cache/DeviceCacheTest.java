@@ -9,6 +9,7 @@ import androidx.room.Room;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.pdm.domohouse.data.cache.IntelligentCacheManager;
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
@@ -24,7 +25,12 @@ import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -115,8 +121,8 @@ public class DeviceCacheTest {
         // Actualizar intensidad
         deviceCache.updateDeviceIntensity("intensity_test_device", 75);
         
-        // Esperar a que se complete la operación
-        Thread.sleep(100);
+        // Esperar a que termine la ventana de la escritura diferida
+        Thread.sleep(IntensityWriteBehindQueue.WINDOW_MS + 200);
         
         DeviceEntity updated = database.deviceDao().getDeviceSync("intensity_test_device");
         assertNotNull(updated);
@@ -326,7 +332,7 @@ public class DeviceCacheTest {
         thread2.join();
         
         // Esperar a que las operaciones async terminen
-        Thread.sleep(500);
+        Thread.sleep(IntensityWriteBehindQueue.WINDOW_MS + 200);
         
         // Verificar que todas las operaciones se completaron
         for (int i = 1; i <= 5; i++) {
@@ -364,4 +370,125 @@ public class DeviceCacheTest {
         assertTrue(stats.totalDevices >= 0);
         assertTrue(stats.totalRooms >= 0);
     }
+    
+    @Test
+    public void testConcurrentSensorAndToggleUpdatesStayConsistent() throws Exception {
+        AppDatabase appDatabase = AppDatabase.getDatabase(context);
+        IntelligentCacheManager cacheManager = IntelligentCacheManager.getInstance(context);
+        
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("stress_room");
+        room.setName("Stress Room");
+        room.setRoomType("LIVING_ROOM");
+        appDatabase.roomDao().insert(room);
+        
+        DeviceEntity device = new DeviceEntity();
+        device.setDeviceId("stress_device");
+        device.setRoomId("stress_room");
+        device.setName("Stress Device");
+        device.setDeviceType("DIMMER_LIGHT");
+        device.setOn(true);
+        device.setIntensity(10);
+        device.setTemperature(20.0f);
+        appDatabase.deviceDao().insert(device);
+        cacheManager.putDeviceEntity(device);
+        
+        int iterations = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writersDone = new AtomicBoolean(false);
+        AtomicReference<String> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        
+        // Escritor de sensor: solo toca la temperatura
+        Future<?> sensorWriter = pool.submit(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < iterations; i++) {
+                deviceCache.updateDeviceTemperature("stress_device", 15.0f + (i % 10));
+            }
+            deviceCache.updateDeviceTemperature("stress_device", 21.5f);
+        });
+        
+        // Escritor de UI: intensidad con apagados intermedios (intensidad 0)
+        Future<?> uiWriter = pool.submit(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < iterations; i++) {
+                deviceCache.updateDeviceIntensity("stress_device", i % 7 == 0 ? 0 : i % 100 + 1);
+            }
+            deviceCache.updateDeviceIntensity("stress_device", 37);
+        });
+        
+        // Lectores: nunca deben ver una entidad a medio actualizar
+        Runnable reader = () -> {
+            awaitQuietly(start);
+            while (!writersDone.get()) {
+                DeviceEntity snapshot = cacheManager.getDeviceEntity("stress_device");
+                if (snapshot == null) {
+                    failure.compareAndSet(null, "La entidad desapareció del cache");
+                } else if ((snapshot.getIntensity() == 0) == snapshot.isOn()) {
+                    failure.compareAndSet(null, "Estado inconsistente: intensidad "
+                            + snapshot.getIntensity() + " con encendido " + snapshot.isOn());
+                }
+                deviceCache.getCacheStats();
+            }
+        };
+        Future<?> reader1 = pool.submit(reader);
+        Future<?> reader2 = pool.submit(reader);
+        
+        start.countDown();
+        sensorWriter.get(10, TimeUnit.SECONDS);
+        uiWriter.get(10, TimeUnit.SECONDS);
+        writersDone.set(true);
+        reader1.get(10, TimeUnit.SECONDS);
+        reader2.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+        
+        assertNull(failure.get(), failure.get());
+        
+        // Ningún escritor pisó el campo del otro
+        DeviceEntity cached = cacheManager.getDeviceEntity("stress_device");
+        assertNotNull(cached);
+        assertEquals(21.5f, cached.getTemperature(), 0.001f);
+        assertEquals(37, cached.getIntensity());
+        assertTrue(cached.isOn());
+        assertFalse(cached.isSynced());
+        
+        // La BD converge al último valor de intensidad al cerrarse la ventana
+        Thread.sleep(IntensityWriteBehindQueue.WINDOW_MS + 200);
+        assertEquals(37, appDatabase.deviceDao().getDeviceSync("stress_device").getIntensity());
+    }
+    
+    @Test
+    public void testOutOfOrderStateWriteDoesNotRevertToggle() {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("order_room");
+        room.setName("Order Room");
+        room.setRoomType("BEDROOM");
+        database.roomDao().insert(room);
+        
+        DeviceEntity device = new DeviceEntity();
+        device.setDeviceId("order_device");
+        device.setRoomId("order_room");
+        device.setName("Order Device");
+        device.setDeviceType("LIGHT_SWITCH");
+        device.setOn(false);
+        // El constructor usa la hora actual; partir de un cambio anterior a ambos toggles
+        device.setLastStateChange(0L);
+        database.deviceDao().insert(device);
+        
+        // El toggle más reciente (apagar) llega a la BD antes que el anterior (encender)
+        assertEquals(1, database.deviceDao().updateDeviceStateIfNewer("order_device", false, 2000L));
+        assertEquals(0, database.deviceDao().updateDeviceStateIfNewer("order_device", true, 1000L));
+        
+        DeviceEntity stored = database.deviceDao().getDeviceSync("order_device");
+        assertFalse(stored.isOn());
+        assertEquals(2000L, stored.getLastStateChange());
+    }
+    
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package com.pdm.domohouse.cache;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.pdm.domohouse.concurrent.AppExecutors;
+import com.pdm.domohouse.data.database.AppDatabase;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.RoomEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests para IntensityWriteBehindQueue
+ * Cada test usa su propia cola sobre una base Room en memoria
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntensityWriteBehindQueueTest {
+    
+    private AppDatabase database;
+    private IntensityWriteBehindQueue queue;
+    
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        queue = new IntensityWriteBehindQueue(database, AppExecutors.getInstance());
+        
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("queue_room");
+        room.setName("Queue Room");
+        room.setRoomType("LIVING_ROOM");
+        database.roomDao().insert(room);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+    }
+    
+    @Test
+    public void testSliderGestureIsCoalescedIntoOneWrite() throws Exception {
+        // Given
+        insertDimmer("slider_dimmer", 10);
+        
+        // When: un arrastre rápido del slider
+        long gestureStart = System.currentTimeMillis();
+        for (int value = 11; value <= 60; value++) {
+            queue.submit("slider_dimmer", value, null);
+        }
+        queue.flush().get(1, TimeUnit.SECONDS);
+        
+        // Then: se escribe el último valor con una sola entrada de historial
+        assertEquals(60, database.deviceDao().getDeviceSync("slider_dimmer").getIntensity());
+        assertEquals(1, database.deviceHistoryDao()
+                .getActionCount("slider_dimmer", "INTENSITY_CHANGE", gestureStart));
+    }
+    
+    @Test
+    public void testIntensitySubmitReportsMissingDevice() throws Exception {
+        // Given
+        insertDimmer("result_dimmer", 0);
+        
+        // When: el resultado llega al escribirse el valor, no al encolarlo
+        CompletableFuture<Boolean> existing = queue.submit("result_dimmer", 40, null);
+        CompletableFuture<Boolean> missing = queue.submit("missing_dimmer", 40, null);
+        queue.flush().get(1, TimeUnit.SECONDS);
+        
+        // Then
+        assertTrue(existing.get(1, TimeUnit.SECONDS));
+        assertFalse(missing.get(1, TimeUnit.SECONDS));
+        assertEquals(40, database.deviceDao().getDeviceSync("result_dimmer").getIntensity());
+    }
+    
+    @Test
+    public void testSupersededIntensityIsNotWrittenOverScene() throws Exception {
+        // Given: un valor del slider queda pendiente y la escena fija después otra intensidad
+        insertDimmer("scene_dimmer", 10);
+        CompletableFuture<Boolean> slider = queue.submit("scene_dimmer", 30, null);
+        queue.supersede(Collections.singletonList("scene_dimmer"));
+        database.deviceDao().updateDeviceIntensity("scene_dimmer", 80, System.currentTimeMillis());
+        
+        // When
+        queue.flush().get(1, TimeUnit.SECONDS);
+        
+        // Then: el valor anterior se descarta y la intensidad de la escena se conserva
+        assertTrue(slider.get(1, TimeUnit.SECONDS));
+        assertEquals(80, database.deviceDao().getDeviceSync("scene_dimmer").getIntensity());
+        
+        // Un valor posterior a la escena sí se escribe
+        CompletableFuture<Boolean> later = queue.submit("scene_dimmer", 55, null);
+        queue.flush().get(1, TimeUnit.SECONDS);
+        assertTrue(later.get(1, TimeUnit.SECONDS));
+        assertEquals(55, database.deviceDao().getDeviceSync("scene_dimmer").getIntensity());
+    }
+    
+    private void insertDimmer(String deviceId, int intensity) {
+        DeviceEntity dimmer = new DeviceEntity();
+        dimmer.setDeviceId(deviceId);
+        dimmer.setRoomId("queue_room");
+        dimmer.setName("Dimmer " + deviceId);
+        dimmer.setDeviceType("LIGHT_DIMMER");
+        dimmer.setIntensity(intensity);
+        database.deviceDao().insert(dimmer);
+    }
+}
@@ -0,0 +1,166 @@
+package com.pdm.domohouse.concurrent;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests para KeyedSerialExecutor y SerialExecutor
+ * Verifica el orden dentro de una clave y el paralelismo entre claves distintas
+ */
+public class KeyedSerialExecutorTest {
+    
+    private ExecutorService pool;
+    
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+    
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    public void testTasksOfSameKeyRunInOrder() throws Exception {
+        // Given
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(200);
+        
+        // When
+        for (int i = 0; i < 200; i++) {
+            int value = i;
+            executor.execute("device_1", () -> {
+                order.add(value);
+                done.countDown();
+            });
+        }
+        
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+    
+    @Test
+    public void testBlockedKeyDoesNotBlockOtherKeys() throws Exception {
+        // Given: una tarea de device_1 bloqueada
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        executor.execute("device_1", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        // When
+        executor.execute("device_2", otherDone::countDown);
+        
+        // Then
+        assertTrue("Otro dispositivo no debe esperar al bloqueado", otherDone.await(2, TimeUnit.SECONDS));
+        release.countDown();
+    }
+    
+    @Test
+    public void testIdleLanesAreDiscarded() throws Exception {
+        // Given
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        CountDownLatch done = new CountDownLatch(10);
+        
+        // When
+        for (int i = 0; i < 10; i++) {
+            executor.execute("device_" + i, done::countDown);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        
+        // Then
+        assertEquals(0, executor.activeLanes());
+    }
+    
+    @Test
+    public void testSerialExecutorKeepsOrderOnSharedPool() throws Exception {
+        // Given
+        SerialExecutor executor = new SerialExecutor(pool);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(100);
+        
+        // When
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            executor.execute(() -> {
+                order.add(value);
+                done.countDown();
+            });
+        }
+        
+        // Then
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+    
+    
+    @Test
+    public void testExecuteAllWaitsForEveryLaneAndBlocksLaterTasks() throws Exception {
+        // Given: device_1 ocupado con una tarea bloqueada
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        executor.execute("device_1", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("before_1");
+            done.countDown();
+        });
+        executor.execute("device_2", () -> {
+            order.add("before_2");
+            done.countDown();
+        });
+        
+        // When: una escena sobre ambos dispositivos y una tarea posterior de device_2
+        executor.executeAll(Arrays.asList("device_1", "device_2", "device_1"), () -> {
+            order.add("scene");
+            done.countDown();
+        });
+        executor.execute("device_2", () -> {
+            order.add("after_2");
+            done.countDown();
+        });
+        Thread.sleep(200);
+        
+        // Then: ni la escena ni lo posterior avanzan mientras device_1 no termina
+        assertFalse(order.contains("scene"));
+        assertFalse(order.contains("after_2"));
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("before_2", "before_1", "scene", "after_2"), order);
+        
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        assertEquals(0, executor.activeLanes());
+    }
+}
@@ -0,0 +1,74 @@
+package com.pdm.domohouse.data.cache;
+
+import static org.junit.Assert.*;
+
+import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.DeviceType;
+import com.pdm.domohouse.data.model.Room;
+import com.pdm.domohouse.data.model.RoomType;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests para el formato binario de DashboardSnapshotStore
+ */
+public class DashboardSnapshotStoreTest {
+    
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        // Given
+        Room sala = new Room("sala", "Sala Principal", RoomType.LIVING_ROOM, 0.1f, 0.3f, 0.4f, 0.4f);
+        sala.setTemperature(23.5f);
+        sala.setActiveDevices(2);
+        Device luz = new Device("sala_light", "Luz Ñandú", DeviceType.LIGHT_DIMMER, "sala");
+        luz.setEnabled(true);
+        luz.setConnected(true);
+        luz.setCurrentValue(70);
+        DashboardSnapshot snapshot = new DashboardSnapshot(Arrays.asList(sala), Arrays.asList(luz),
+            1, 1, 1, 1, 1, 0, 23.5f, 1234L);
+        
+        // When
+        DashboardSnapshot decoded = DashboardSnapshotStore.decode(
+            ByteBuffer.wrap(DashboardSnapshotStore.encode(snapshot)));
+        
+        // Then
+        assertNotNull(decoded);
+        assertEquals(1234L, decoded.savedAt);
+        assertEquals(23.5f, decoded.avgTemperature, 0.001f);
+        assertEquals(1, decoded.rooms.size());
+        Room room = decoded.rooms.get(0);
+        assertEquals("sala", room.getId());
+        assertEquals(RoomType.LIVING_ROOM, room.getType());
+        assertEquals(0.4f, room.getWidth(), 0.001f);
+        assertEquals(23.5f, room.getTemperature(), 0.001f);
+        assertEquals(2, room.getActiveDevices());
+        Device device = decoded.devices.get(0);
+        assertEquals("Luz Ñandú", device.getName());
+        assertEquals(DeviceType.LIGHT_DIMMER, device.getType());
+        assertEquals("sala", device.getRoomId());
+        assertTrue(device.isEnabled());
+        assertTrue(device.isConnected());
+        assertEquals(luz.getCurrentValue(), device.getCurrentValue(), 0.001f);
+    }
+    
+    @Test
+    public void testTruncatedSnapshotIsDiscarded() throws Exception {
+        // Given
+        List<Room> rooms = new ArrayList<>();
+        rooms.add(new Room("cocina", "Cocina", RoomType.KITCHEN));
+        byte[] bytes = DashboardSnapshotStore.encode(new DashboardSnapshot(rooms, new ArrayList<>(),
+            1, 0, 0, 0, 0, 0, 22f, 1L));
+        
+        // When
+        DashboardSnapshot decoded = DashboardSnapshotStore.decode(
+            ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 3)));
+        
+        // Then
+        assertNull("Un archivo incompleto no debe pintarse", decoded);
+    }
+}
@@ -0,0 +1,67 @@
+package com.pdm.domohouse.data.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests para DeviceStateTable
+ * Verifica la actualización en sitio, la reutilización de índices y el borrado condicional
+ */
+public class DeviceStateTableTest {
+    
+    private static final DeviceStateTable.RowReader<float[]> AS_ARRAY =
+        (isOn, intensity, temperature, timestamp) -> new float[] {isOn ? 1 : 0, intensity, temperature, timestamp};
+    
+    @Test
+    public void testUpdateOverwritesRowInPlace() {
+        // Given
+        DeviceStateTable table = new DeviceStateTable();
+        table.update("device_1", true, 40, 21.5f, 1_000L);
+        
+        // When
+        table.update("device_1", false, 80, Float.NaN, 2_000L);
+        float[] row = table.read("device_1", AS_ARRAY);
+        
+        // Then
+        assertEquals(1, table.size());
+        assertEquals(0f, row[0], 0f);
+        assertEquals(80f, row[1], 0f);
+        assertTrue("La temperatura ausente se guarda como NaN", Float.isNaN(row[2]));
+        assertEquals(2_000L, table.getTimestamp("device_1"));
+        assertNull(table.read("device_2", AS_ARRAY));
+        assertEquals(DeviceStateTable.NOT_FOUND, table.getTimestamp("device_2"));
+    }
+    
+    @Test
+    public void testGrowsAndReusesReleasedSlots() {
+        // Given: más dispositivos que la capacidad inicial
+        DeviceStateTable table = new DeviceStateTable();
+        for (int i = 0; i < 100; i++) {
+            table.update("device_" + i, i % 2 == 0, i, i, i);
+        }
+        
+        // When
+        table.remove("device_10");
+        table.update("device_new", true, 7, 7f, 7L);
+        
+        // Then
+        assertEquals(100, table.size());
+        assertEquals(99f, table.read("device_99", AS_ARRAY)[1], 0f);
+        assertEquals(7f, table.read("device_new", AS_ARRAY)[1], 0f);
+        assertNull(table.read("device_10", AS_ARRAY));
+    }
+    
+    @Test
+    public void testRemoveIfNotUpdatedSinceKeepsRenewedState() {
+        // Given
+        DeviceStateTable table = new DeviceStateTable();
+        table.update("device_1", true, 50, 20f, 1_000L);
+        table.update("device_1", true, 60, 20f, 3_000L);
+        
+        // When / Then: el plazo leído ya no corresponde al estado actual
+        assertFalse(table.removeIfNotUpdatedSince("device_1", 1_000L));
+        assertTrue(table.removeIfNotUpdatedSince("device_1", 3_000L));
+        assertEquals(0, table.size());
+    }
+}
@@ -0,0 +1,116 @@
+package com.pdm.domohouse.data.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests para ExpiryQueue
+ * Verifica que solo venzan las claves cuyo plazo llegó y que sin claves no haya despertares
+ */
+public class ExpiryQueueTest {
+    
+    private ScheduledThreadPoolExecutor timer;
+    
+    @Before
+    public void setUp() {
+        timer = new ScheduledThreadPoolExecutor(1);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+    
+    @After
+    public void tearDown() {
+        timer.shutdownNow();
+    }
+    
+    @Test
+    public void testOnlyDueKeysExpire() throws Exception {
+        // Given
+        List<String> expired = new CopyOnWriteArrayList<>();
+        CountDownLatch firstExpiry = new CountDownLatch(1);
+        ExpiryQueue queue = new ExpiryQueue(timer, (key, now) -> {
+            expired.add(key);
+            firstExpiry.countDown();
+            return ExpiryQueue.EXPIRED;
+        });
+        long now = System.currentTimeMillis();
+        
+        // When
+        queue.track("device_1", now + 50);
+        queue.track("device_2", now + 60 * 60 * 1000);
+        
+        // Then
+        assertTrue(firstExpiry.await(5, TimeUnit.SECONDS));
+        assertEquals(1, expired.size());
+        assertEquals("device_1", expired.get(0));
+        assertEquals(1, queue.size());
+        assertTrue("Debe quedar un despertar para la clave pendiente", queue.hasPendingWakeup());
+    }
+    
+    @Test
+    public void testRenewedKeyIsRescheduledInsteadOfExpired() throws Exception {
+        // Given - la primera vez la entrada fue renovada, la segunda ya venció
+        AtomicInteger checks = new AtomicInteger();
+        CountDownLatch removed = new CountDownLatch(1);
+        ExpiryQueue queue = new ExpiryQueue(timer, (key, now) -> {
+            if (checks.incrementAndGet() == 1) {
+                return now + 50;
+            }
+            removed.countDown();
+            return ExpiryQueue.EXPIRED;
+        });
+        
+        // When
+        queue.track("device_1", System.currentTimeMillis() + 50);
+        
+        // Then
+        assertTrue(removed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, checks.get());
+        assertEquals(0, queue.size());
+    }
+    
+    @Test
+    public void testNoWakeupWhenNothingIsExpiring() throws Exception {
+        // Given
+        CountDownLatch removed = new CountDownLatch(1);
+        ExpiryQueue queue = new ExpiryQueue(timer, (key, now) -> {
+            removed.countDown();
+            return ExpiryQueue.EXPIRED;
+        });
+        assertFalse(queue.hasPendingWakeup());
+        
+        // When - la última clave vence
+        queue.track("device_1", System.currentTimeMillis() + 50);
+        assertTrue(removed.await(5, TimeUnit.SECONDS));
+        
+        // Then - el temporizador queda dormido sin tareas programadas
+        Thread.sleep(100);
+        assertFalse(queue.hasPendingWakeup());
+        assertEquals(0, timer.getQueue().size());
+    }
+    
+    @Test
+    public void testClearCancelsPendingWakeup() {
+        // Given
+        ExpiryQueue queue = new ExpiryQueue(timer, (key, now) -> ExpiryQueue.EXPIRED);
+        queue.track("device_1", System.currentTimeMillis() + 60 * 60 * 1000);
+        assertTrue(queue.hasPendingWakeup());
+        
+        // When
+        queue.clear();
+        
+        // Then
+        assertFalse(queue.hasPendingWakeup());
+        assertEquals(0, queue.size());
+        assertEquals(0, timer.getQueue().size());
+    }
+}
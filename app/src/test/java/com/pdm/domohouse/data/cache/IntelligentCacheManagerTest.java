@@ -2,10 +2,13 @@ package com.pdm.domohouse.data.cache;
 
 import static org.junit.Assert.*;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 
 import androidx.test.core.app.ApplicationProvider;
 
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.RoomEntity;
 import com.pdm.domohouse.data.model.Device;
 import com.pdm.domohouse.data.model.DeviceType;
 import com.pdm.domohouse.data.model.Room;
@@ -22,6 +25,7 @@ import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests exhaustivos para IntelligentCacheManager
@@ -469,4 +473,165 @@ public class IntelligentCacheManagerTest {
         
         return rooms;
     }
+    
+    @Test
+    public void testInvalidationBusEvictsDeviceEntities() {
+        // Given
+        DeviceEntity entity = new DeviceEntity();
+        entity.setDeviceId(TEST_DEVICE_ID);
+        entity.setName("Luz Sala");
+        cacheManager.putDeviceEntity(entity);
+        cacheManager.putDevice(TEST_DEVICE_ID, createTestDevice());
+        assertNotNull("Entidad cacheada no debe ser null", cacheManager.getDeviceEntity(TEST_DEVICE_ID));
+        
+        // When - la invalidación llega por el bus, no por el manager
+        CacheInvalidationBus.getInstance().invalidateDevice(TEST_DEVICE_ID);
+        
+        // Then
+        assertNull("Entidad invalidada debe retornar null", cacheManager.getDeviceEntity(TEST_DEVICE_ID));
+        assertNull("Modelo invalidado debe retornar null", cacheManager.getDevice(TEST_DEVICE_ID));
+        assertEquals("No deben quedar entidades de dispositivo",
+            0, cacheManager.getMemoryInfo().deviceEntityEntries);
+    }
+    
+    @Test
+    public void testDeviceListIsSharedImmutableSnapshot() {
+        // Given
+        cacheManager.putDeviceList("snapshot_devices", createTestDeviceList());
+        
+        // When
+        List<Device> first = cacheManager.getDeviceList("snapshot_devices");
+        List<Device> second = cacheManager.getDeviceList("snapshot_devices");
+        
+        // Then - la misma instancia sin copias y sin posibilidad de modificarla
+        assertSame("Las lecturas deben compartir la instancia cacheada", first, second);
+        try {
+            first.add(createTestDevice());
+            fail("La lista cacheada debe ser inmutable");
+        } catch (UnsupportedOperationException expected) {
+            // Esperado
+        }
+    }
+    
+    @Test
+    public void testMemoryInfoReportsBytesWithinBudget() {
+        // Given - muchas listas grandes, más de lo que cabe en el presupuesto de su cache
+        IntelligentCacheManager.CacheMemoryInfo empty = cacheManager.getMemoryInfo();
+        assertEquals("Sin entradas no debe haber bytes usados", 0, empty.usedBytes);
+        assertTrue("El presupuesto total no debe superar 4MB", empty.maxBytes <= 4 * 1024 * 1024);
+        
+        for (int list = 0; list < 200; list++) {
+            List<Device> devices = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                Device device = createTestDevice();
+                device.setDeviceId("budget_" + list + "_" + i);
+                device.setName("Dispositivo de prueba con un nombre bastante largo " + i);
+                devices.add(device);
+            }
+            cacheManager.putDeviceList("budget_list_" + list, devices);
+        }
+        
+        // When
+        IntelligentCacheManager.CacheMemoryInfo memoryInfo = cacheManager.getMemoryInfo();
+        
+        // Then
+        assertTrue("Debe reportar bytes retenidos", memoryInfo.usedBytes > 0);
+        assertTrue("Los bytes usados no deben exceder el presupuesto", 
+            memoryInfo.usedBytes <= memoryInfo.maxBytes);
+        assertTrue("El LRU debe haber desalojado listas", memoryInfo.deviceListEntries < 200);
+        assertTrue("Las evicciones deben contarse", cacheManager.getStats().getEvictions() > 0);
+    }
+    
+    @Test
+    public void testLoaderRunsOnlyOnColdMiss() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        IntelligentCacheManager.Loader<List<Device>> loader = () -> {
+            loads.incrementAndGet();
+            return createTestDeviceList();
+        };
+        
+        // When
+        List<Device> first = cacheManager.getDeviceList("loader_devices", 
+            IntelligentCacheManager.CacheStrategy.VOLATILE, loader);
+        List<Device> second = cacheManager.getDeviceList("loader_devices", 
+            IntelligentCacheManager.CacheStrategy.VOLATILE, loader);
+        
+        // Then - la segunda lectura es un acierto fresco, sin recargar
+        assertEquals("El loader solo debe ejecutarse en el fallo en frío", 1, loads.get());
+        assertSame("Las lecturas deben compartir la instancia cacheada", first, second);
+        assertEquals(2, second.size());
+        assertEquals(1, cacheManager.getStats().getHits());
+        assertEquals(1, cacheManager.getStats().getMisses());
+    }
+    
+    @Test
+    public void testLoadRacingInvalidationIsNotCached() {
+        // Given - el dispositivo se invalida mientras el loader está leyendo
+        AtomicInteger loads = new AtomicInteger();
+        IntelligentCacheManager.Loader<List<Device>> loader = () -> {
+            if (loads.incrementAndGet() == 1) {
+                cacheManager.invalidateDeviceCache(TEST_DEVICE_ID);
+            }
+            return createTestDeviceList();
+        };
+        
+        // When
+        List<Device> loaded = cacheManager.getDeviceList("racing_devices", 
+            IntelligentCacheManager.CacheStrategy.MEMORY_ONLY, loader);
+        cacheManager.getDeviceList("racing_devices", 
+            IntelligentCacheManager.CacheStrategy.MEMORY_ONLY, loader);
+        
+        // Then - el primer resultado se entrega pero no se cachea
+        assertNotNull(loaded);
+        assertEquals("Un valor cargado antes de la invalidación no debe quedar en cache", 2, loads.get());
+    }
+    
+    @Test
+    public void testTrimMemoryDropsListsButKeepsEntities() {
+        // Given
+        DeviceEntity entity = new DeviceEntity();
+        entity.setDeviceId(TEST_DEVICE_ID);
+        entity.setName("Luz Sala");
+        cacheManager.putDeviceEntity(entity);
+        cacheManager.putDeviceList("trim_devices", createTestDeviceList());
+        cacheManager.updateDeviceState(TEST_DEVICE_ID, true, 80, null);
+        
+        // When - la app pasa a segundo plano con presión de memoria
+        cacheManager.trimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        
+        // Then
+        assertNull("Las listas deben soltarse", cacheManager.getDeviceList("trim_devices"));
+        assertNotNull("Las entidades del dashboard deben conservarse", cacheManager.getDeviceEntity(TEST_DEVICE_ID));
+        assertNotNull("El estado en tiempo real debe conservarse", cacheManager.getDeviceState(TEST_DEVICE_ID));
+        
+        // When - presión extrema
+        cacheManager.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        
+        // Then
+        assertEquals("Las listas siguen vacías", 0, cacheManager.getMemoryInfo().deviceListEntries);
+    }
+    
+    @Test
+    public void testLoadSurvivesInvalidationOfOtherKeys() {
+        // Given - mientras carga la habitación llegan invalidaciones de otras claves
+        AtomicInteger loads = new AtomicInteger();
+        IntelligentCacheManager.Loader<RoomEntity> loader = () -> {
+            if (loads.incrementAndGet() == 1) {
+                cacheManager.invalidateDeviceCache(TEST_DEVICE_ID);
+                cacheManager.invalidateRoomCache("other_room");
+            }
+            RoomEntity entity = new RoomEntity();
+            entity.setRoomId(TEST_ROOM_ID);
+            entity.setName("Sala");
+            return entity;
+        };
+        
+        // When
+        cacheManager.getRoomEntity(TEST_ROOM_ID, loader);
+        cacheManager.getRoomEntity(TEST_ROOM_ID, loader);
+        
+        // Then - solo una invalidación de la propia clave descarta la carga
+        assertEquals("La carga debe quedar en cache", 1, loads.get());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.pdm.domohouse.data.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests para SingleFlight
+ * Verifica que las cargas concurrentes de una misma clave se ejecuten una sola vez
+ */
+public class SingleFlightTest {
+    
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        // Given
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        
+        // When - el primer hilo queda cargando mientras llegan los demás
+        List<Future<String>> results = new ArrayList<>();
+        results.add(pool.submit(() -> flight.execute("rooms", () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            releaseLoader.await(5, TimeUnit.SECONDS);
+            return "cargado";
+        })));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            results.add(pool.submit(() -> flight.execute("rooms", () -> {
+                loads.incrementAndGet();
+                return "duplicado";
+            })));
+        }
+        
+        // Esperar a que los demás hilos estén bloqueados en la carga compartida
+        Thread.sleep(100);
+        releaseLoader.countDown();
+        
+        // Then
+        for (Future<String> result : results) {
+            assertEquals("cargado", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals("Solo debe haber una carga por clave", 1, loads.get());
+        assertEquals("La clave debe liberarse al terminar", 0, flight.inFlightCount());
+        pool.shutdown();
+    }
+    
+    @Test
+    public void testErrorIsPropagatedAndKeyReleased() throws Exception {
+        // Given
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        
+        // When
+        try {
+            flight.execute("device_1", () -> {
+                throw new IllegalStateException("sin conexión");
+            });
+            fail("El error del loader debe propagarse");
+        } catch (IllegalStateException expected) {
+            assertEquals("sin conexión", expected.getMessage());
+        }
+        
+        // Then - un nuevo intento vuelve a cargar
+        assertEquals("ok", flight.execute("device_1", () -> "ok"));
+        assertEquals(0, flight.inFlightCount());
+    }
+    
+    @Test
+    public void testAsyncCallersShareInFlightFuture() throws Exception {
+        // Given
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger reads = new AtomicInteger();
+        CompletableFuture<Integer> firebaseRead = new CompletableFuture<>();
+        
+        // When
+        CompletableFuture<Integer> first = flight.executeAsync("user_1", () -> {
+            reads.incrementAndGet();
+            return firebaseRead;
+        });
+        CompletableFuture<Integer> second = flight.executeAsync("user_1", () -> {
+            reads.incrementAndGet();
+            return CompletableFuture.completedFuture(-1);
+        });
+        firebaseRead.complete(42);
+        
+        // Then
+        assertEquals("Solo debe haber una lectura remota", 1, reads.get());
+        assertEquals(Integer.valueOf(42), first.get(1, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(42), second.get(1, TimeUnit.SECONDS));
+        assertEquals(0, flight.inFlightCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.pdm.domohouse.data.database.retention;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.pdm.domohouse.data.database.AppDatabase;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
+import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.database.rollup.RollupResolution;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests para HistoryRetentionManager
+ * Verifica el borrado por lotes y que el historial sin sincronizar se conserve
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryRetentionManagerTest {
+    
+    private static final long NOW = TimeUnit.DAYS.toMillis(400);
+    
+    private AppDatabase database;
+    private HistoryRetentionManager retentionManager;
+    
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        retentionManager = new HistoryRetentionManager(database);
+        
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("retention_room");
+        room.setName("Habitación Retención");
+        room.setRoomType("KITCHEN");
+        database.roomDao().insert(room);
+        
+        DeviceEntity sensor = new DeviceEntity();
+        sensor.setDeviceId("retention_sensor");
+        sensor.setRoomId("retention_room");
+        sensor.setName("Sensor Retención");
+        sensor.setDeviceType("TEMPERATURE_SENSOR");
+        database.deviceDao().insert(sensor);
+    }
+    
+    @After
+    public void tearDown() {
+        database.close();
+    }
+    
+    @Test
+    public void deletesOldSyncedHistoryInBatches() {
+        long old = NOW - TimeUnit.DAYS.toMillis(60);
+        for (int i = 0; i < 7; i++) {
+            insertHistory(old + i, true);
+        }
+        insertHistory(old, false); // Pendiente de subir: no se borra
+        insertHistory(NOW - TimeUnit.DAYS.toMillis(1), true); // Reciente: no se borra
+        
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setBatchSize(3);
+        retentionManager.setPolicy(policy);
+        
+        HistoryRetentionManager.Result result = retentionManager.runOnce(NOW);
+        
+        assertNotNull(result);
+        assertEquals(7, result.historyDeleted);
+        assertEquals(1, database.deviceHistoryDao().getUnsyncedHistoryCount());
+        assertEquals(1, database.deviceHistoryDao().getUnsyncedHistoryPage(Long.MIN_VALUE, Long.MIN_VALUE, 10).size());
+    }
+    
+    @Test
+    public void deletesRawReadingsButKeepsCoarseRollups() {
+        long old = NOW - TimeUnit.DAYS.toMillis(120);
+        database.sensorReadingDao().recordReading(new SensorReadingEntity("retention_sensor", old, 21.0));
+        database.sensorReadingDao().recordReading(new SensorReadingEntity("retention_sensor", NOW - 1000L, 23.0));
+        
+        HistoryRetentionManager.Result result = retentionManager.runOnce(NOW);
+        
+        assertNotNull(result);
+        assertEquals(1, result.readingsDeleted);
+        assertEquals(1, database.sensorReadingDao().getReadingCount("retention_sensor", 0L));
+        
+        // El bucket diario antiguo se conserva; los de minuto y hora se eliminan
+        assertEquals(2, database.sensorRollupDao().getDeviceRollups("retention_sensor",
+                RollupResolution.DAY.getBucketSizeMs(), 0L).size());
+        assertEquals(1, database.sensorRollupDao().getDeviceRollups("retention_sensor",
+                RollupResolution.HOUR.getBucketSizeMs(), 0L).size());
+        assertEquals(1, database.sensorRollupDao().getDeviceRollups("retention_sensor",
+                RollupResolution.MINUTE.getBucketSizeMs(), 0L).size());
+    }
+    
+    private void insertHistory(long timestamp, boolean synced) {
+        DeviceHistoryEntity history = new DeviceHistoryEntity();
+        history.setDeviceId("retention_sensor");
+        history.setAction("ON");
+        history.setTimestamp(timestamp);
+        history.setSynced(synced);
+        database.deviceHistoryDao().insert(history);
+    }
+}
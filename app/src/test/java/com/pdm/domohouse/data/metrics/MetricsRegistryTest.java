@@ -0,0 +1,59 @@
+package com.pdm.domohouse.data.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests para MetricsRegistry y LatencyHistogram
+ */
+public class MetricsRegistryTest {
+    
+    @Test
+    public void testHistogramPercentilesUseBucketBounds() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        // When - 90 muestras de 80us y 10 de 40ms
+        for (int i = 0; i < 90; i++) {
+            histogram.record(80_000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(40_000_000);
+        }
+        
+        // Then
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getPercentileMicros(50));
+        assertEquals(40_000, histogram.getPercentileMicros(99));
+        assertEquals(40_000, histogram.getMaxMicros());
+        assertEquals(4_072, histogram.getMeanMicros());
+    }
+    
+    @Test
+    public void testCacheMetricsTrackRatioEvictionsAndBytes() {
+        // Given
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.CacheMetrics metrics = registry.cache("deviceEntity");
+        metrics.bindSize(() -> 2048, 4096);
+        
+        // When
+        metrics.recordHit();
+        metrics.recordStaleHit();
+        metrics.recordMiss();
+        metrics.recordMiss();
+        metrics.recordEviction(MetricsRegistry.EvictionCause.EXPIRED);
+        
+        // Then
+        assertSame(metrics, registry.cache("deviceEntity"));
+        assertEquals(0.5, metrics.getHitRatio(), 0.0001);
+        assertEquals(1, metrics.getEvictions(MetricsRegistry.EvictionCause.EXPIRED));
+        assertEquals(0, metrics.getEvictions(MetricsRegistry.EvictionCause.SIZE));
+        assertEquals(2048, metrics.getBytesHeld());
+        assertTrue(registry.dump().contains("deviceEntity"));
+        
+        registry.reset();
+        assertEquals(0, metrics.getHits());
+        assertEquals(0.0, metrics.getHitRatio(), 0.0001);
+    }
+}
@@ -0,0 +1,67 @@
+package com.pdm.domohouse.data.repository;
+
+import static org.junit.Assert.*;
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.pdm.domohouse.data.model.Device;
+import com.pdm.domohouse.data.model.DeviceType;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests para DeviceGraph
+ * Verifica la agrupación por habitación y que los flujos derivados se reutilizan
+ */
+public class DeviceGraphTest {
+    
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+    
+    @Test
+    public void testGroupsAllDevicesByRoomInOnePass() {
+        // Given
+        MutableLiveData<List<Device>> source = new MutableLiveData<>();
+        DeviceGraph graph = new DeviceGraph(source);
+        
+        // When
+        source.setValue(Arrays.asList(
+            new Device("light_1", "Luz", DeviceType.LIGHT_SWITCH, "room_1"),
+            new Device("fan_1", "Ventilador", DeviceType.FAN_SWITCH, "room_1"),
+            new Device("light_2", "Luz", DeviceType.LIGHT_SWITCH, "room_2"),
+            new Device("orphan", "Sin habitación", DeviceType.SMART_OUTLET, null)));
+        Map<String, List<Device>> byRoom = graph.getDevicesByRoom().getValue();
+        
+        // Then
+        assertEquals(2, byRoom.size());
+        assertEquals(2, byRoom.get("room_1").size());
+        assertEquals("light_2", byRoom.get("room_2").get(0).getId());
+    }
+    
+    @Test
+    public void testRoomStreamsAreSharedAndFollowTheSource() {
+        // Given
+        MutableLiveData<List<Device>> source = new MutableLiveData<>();
+        DeviceGraph graph = new DeviceGraph(source);
+        LiveData<List<Device>> room1 = graph.getRoomDevices("room_1");
+        
+        // When
+        source.setValue(Arrays.asList(new Device("light_1", "Luz", DeviceType.LIGHT_SWITCH, "room_1")));
+        source.setValue(Arrays.asList(
+            new Device("light_1", "Luz", DeviceType.LIGHT_SWITCH, "room_1"),
+            new Device("light_3", "Luz", DeviceType.LIGHT_SWITCH, "room_1")));
+        
+        // Then: un solo flujo por habitación, actualizado en cada emisión
+        assertSame(room1, graph.getRoomDevices("room_1"));
+        assertEquals(2, room1.getValue().size());
+        assertTrue(graph.getRoomDevices("room_9").getValue().isEmpty());
+        assertTrue(source.hasObservers());
+    }
+}
@@ -9,11 +9,22 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 
 import com.pdm.domohouse.data.database.AppDatabase;
 import com.pdm.domohouse.data.database.dao.DeviceDao;
+import com.pdm.domohouse.data.database.dao.DeviceHistoryDao;
 import com.pdm.domohouse.data.database.dao.RoomDao;
+import com.pdm.domohouse.data.database.dao.SensorReadingDao;
+import com.pdm.domohouse.data.database.dao.SensorRollupDao;
+import com.pdm.domohouse.data.database.dao.SyncWatermarkDao;
 import com.pdm.domohouse.data.database.dao.UserProfileDao;
 import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.DeviceHistoryEntity;
 import com.pdm.domohouse.data.database.entity.RoomEntity;
+import com.pdm.domohouse.data.database.entity.SensorReadingEntity;
+import com.pdm.domohouse.data.database.entity.SyncWatermarkEntity;
 import com.pdm.domohouse.data.database.entity.UserProfileEntity;
+import com.pdm.domohouse.data.database.paging.HistoryPageSource;
+import com.pdm.domohouse.data.database.rollup.RollupResolution;
+import com.pdm.domohouse.data.database.rollup.SensorRollupPoint;
+import com.pdm.domohouse.data.model.DeviceCommand;
 
 import org.junit.After;
 import org.junit.Before;
@@ -22,7 +33,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -335,4 +350,333 @@ public class AppDatabaseTest {
         RoomEntity deletedRoom = roomDao.getRoomSync("room_to_delete");
         assertNull(deletedRoom);
     }
+    
+    @Test
+    public void syncWatermarkPersistsPerTable() throws Exception {
+        SyncWatermarkDao watermarkDao = database.syncWatermarkDao();
+        
+        // Sin marca de agua previa
+        assertNull(watermarkDao.getWatermark("devices"));
+        
+        // Guardar y actualizar la marca de agua de dispositivos
+        SyncWatermarkEntity watermark = new SyncWatermarkEntity();
+        watermark.setTableName("devices");
+        watermark.setWatermark(1000L);
+        watermarkDao.upsert(watermark);
+        
+        watermark.setWatermark(2000L);
+        watermarkDao.upsert(watermark);
+        
+        // Cada tabla mantiene su propia marca
+        assertEquals(Long.valueOf(2000L), watermarkDao.getWatermark("devices"));
+        assertNull(watermarkDao.getWatermark("rooms"));
+    }
+    
+    @Test
+    public void mergeRemoteDevicesAppliesWinnersInOneCall() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("merge_room");
+        room.setName("Habitación Merge");
+        room.setRoomType("BEDROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity localNewer = new DeviceEntity();
+        localNewer.setDeviceId("local_newer");
+        localNewer.setRoomId("merge_room");
+        localNewer.setName("Local Reciente");
+        localNewer.setDeviceType("LIGHT_SWITCH");
+        localNewer.setLastStateChange(2000L);
+        deviceDao.insert(localNewer);
+        
+        DeviceEntity localOlder = new DeviceEntity();
+        localOlder.setDeviceId("local_older");
+        localOlder.setRoomId("merge_room");
+        localOlder.setName("Local Antiguo");
+        localOlder.setDeviceType("LIGHT_SWITCH");
+        localOlder.setLastStateChange(1000L);
+        deviceDao.insert(localOlder);
+        
+        // Versiones remotas: una más antigua, una más reciente y una nueva
+        DeviceEntity remoteOlder = new DeviceEntity();
+        remoteOlder.setDeviceId("local_newer");
+        remoteOlder.setRoomId("merge_room");
+        remoteOlder.setName("Remoto Antiguo");
+        remoteOlder.setDeviceType("LIGHT_SWITCH");
+        remoteOlder.setLastStateChange(1500L);
+        
+        DeviceEntity remoteNewer = new DeviceEntity();
+        remoteNewer.setDeviceId("local_older");
+        remoteNewer.setRoomId("merge_room");
+        remoteNewer.setName("Remoto Reciente");
+        remoteNewer.setDeviceType("LIGHT_SWITCH");
+        remoteNewer.setLastStateChange(1500L);
+        
+        DeviceEntity remoteNew = new DeviceEntity();
+        remoteNew.setDeviceId("remote_new");
+        remoteNew.setRoomId("merge_room");
+        remoteNew.setName("Remoto Nuevo");
+        remoteNew.setDeviceType("FAN_SWITCH");
+        
+        List<DeviceEntity> applied = deviceDao.mergeRemoteDevices(
+                Arrays.asList(remoteOlder, remoteNewer, remoteNew),
+                (local, remote) -> local.getLastStateChange() > remote.getLastStateChange() ? local : remote,
+                3000L);
+        
+        // Solo se aplican el remoto más reciente y el nuevo
+        assertEquals(2, applied.size());
+        assertEquals("Local Reciente", deviceDao.getDeviceSync("local_newer").getName());
+        assertEquals("Remoto Reciente", deviceDao.getDeviceSync("local_older").getName());
+        
+        DeviceEntity inserted = deviceDao.getDeviceSync("remote_new");
+        assertNotNull(inserted);
+        assertTrue(inserted.isSynced());
+        assertEquals(3000L, inserted.getLastSync());
+    }
+    
+    @Test
+    public void historyPageSourceWalksAllRowsWithTiedTimestamps() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("history_room");
+        room.setName("Habitación Historial");
+        room.setRoomType("KITCHEN");
+        roomDao.insert(room);
+        
+        DeviceEntity sensor = new DeviceEntity();
+        sensor.setDeviceId("history_sensor");
+        sensor.setRoomId("history_room");
+        sensor.setName("Sensor");
+        sensor.setDeviceType("TEMPERATURE_SENSOR");
+        deviceDao.insert(sensor);
+        
+        // Varias entradas con el mismo timestamp para probar el desempate por history_id
+        for (int i = 0; i < 5; i++) {
+            DeviceHistoryEntity entry = new DeviceHistoryEntity();
+            entry.setDeviceId("history_sensor");
+            entry.setAction("STATE_CHANGE");
+            entry.setNewValue(i % 2 == 0 ? "ON" : "OFF");
+            entry.setTimestamp(i < 3 ? 1000L : 2000L);
+            entry.setSynced(false);
+            database.deviceHistoryDao().insert(entry);
+        }
+        
+        HistoryPageSource pages = HistoryPageSource.unsynced(database.deviceHistoryDao(), 2);
+        
+        Set<Long> seen = new HashSet<>();
+        int pageCount = 0;
+        long previousTimestamp = Long.MIN_VALUE;
+        for (List<DeviceHistoryEntity> page : pages) {
+            pageCount++;
+            assertTrue(page.size() <= 2);
+            for (DeviceHistoryEntity entry : page) {
+                assertTrue(seen.add(entry.getHistoryId()));
+                assertTrue(entry.getTimestamp() >= previousTimestamp);
+                previousTimestamp = entry.getTimestamp();
+            }
+        }
+        
+        assertEquals(5, seen.size());
+        assertEquals(3, pageCount);
+        assertFalse(pages.hasMore());
+    }
+    
+    @Test
+    public void sensorReadingAggregatesRunOnRealValues() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("sensor_room");
+        room.setName("Habitación Sensores");
+        room.setRoomType("BEDROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity sensor = new DeviceEntity();
+        sensor.setDeviceId("temp_sensor");
+        sensor.setRoomId("sensor_room");
+        sensor.setName("Sensor Temperatura");
+        sensor.setDeviceType("TEMPERATURE_SENSOR");
+        deviceDao.insert(sensor);
+        
+        SensorReadingDao sensorReadingDao = database.sensorReadingDao();
+        sensorReadingDao.insertAll(Arrays.asList(
+                new SensorReadingEntity("temp_sensor", 1000L, 20.5),
+                new SensorReadingEntity("temp_sensor", 2000L, 22.0),
+                new SensorReadingEntity("temp_sensor", 3000L, 24.5)));
+        
+        assertEquals(22.333, sensorReadingDao.getAverageValue("temp_sensor", 0L), 0.001);
+        assertEquals(23.25, sensorReadingDao.getAverageValue("temp_sensor", 2000L), 0.001);
+        assertEquals(20.5, sensorReadingDao.getMinValue("temp_sensor", 0L), 0.001);
+        assertEquals(24.5, sensorReadingDao.getMaxValue("temp_sensor", 0L), 0.001);
+        assertEquals(3000L, sensorReadingDao.getLatestReading("temp_sensor").getTs());
+        
+        // Sin lecturas en el rango el promedio es nulo
+        assertNull(sensorReadingDao.getAverageValue("temp_sensor", 5000L));
+        
+        // Al eliminar el dispositivo se eliminan sus lecturas
+        deviceDao.delete(sensor);
+        assertEquals(0, sensorReadingDao.getReadingCount("temp_sensor", 0L));
+    }
+    
+    @Test
+    public void recordReadingUpdatesRollupsIncrementally() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("rollup_room");
+        room.setName("Habitación Rollups");
+        room.setRoomType("LIVING_ROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity sensor = new DeviceEntity();
+        sensor.setDeviceId("rollup_sensor");
+        sensor.setRoomId("rollup_room");
+        sensor.setName("Sensor Rollups");
+        sensor.setDeviceType("TEMPERATURE_SENSOR");
+        deviceDao.insert(sensor);
+        
+        // Dos lecturas en el primer minuto y una en el segundo, todas en la misma hora
+        long hour = TimeUnit.HOURS.toMillis(10);
+        SensorReadingDao sensorReadingDao = database.sensorReadingDao();
+        sensorReadingDao.recordReading(new SensorReadingEntity("rollup_sensor", hour + 1000L, 20.0));
+        sensorReadingDao.recordReading(new SensorReadingEntity("rollup_sensor", hour + 30000L, 24.0));
+        sensorReadingDao.recordReading(new SensorReadingEntity("rollup_sensor", hour + 61000L, 19.0));
+        
+        SensorRollupDao sensorRollupDao = database.sensorRollupDao();
+        List<SensorRollupPoint> minutes = sensorRollupDao.getDeviceRollups("rollup_sensor",
+                RollupResolution.MINUTE.getBucketSizeMs(), 0L);
+        assertEquals(2, minutes.size());
+        assertEquals(hour, minutes.get(0).getBucketStart());
+        assertEquals(2, minutes.get(0).getValueCount());
+        assertEquals(22.0, minutes.get(0).getAverage(), 0.001);
+        
+        List<SensorRollupPoint> hours = sensorRollupDao.getCombinedRollups(
+                RollupResolution.HOUR.getBucketSizeMs(), 0L);
+        assertEquals(1, hours.size());
+        assertEquals(3, hours.get(0).getValueCount());
+        assertEquals(19.0, hours.get(0).getMinValue(), 0.001);
+        assertEquals(24.0, hours.get(0).getMaxValue(), 0.001);
+        
+        // La resolución del gráfico es la más gruesa con suficientes puntos
+        assertEquals(RollupResolution.HOUR, RollupResolution.forSpan(TimeUnit.HOURS.toMillis(24), 24));
+        assertEquals(RollupResolution.HOUR, RollupResolution.forSpan(TimeUnit.DAYS.toMillis(7), 24));
+        assertEquals(RollupResolution.DAY, RollupResolution.forSpan(TimeUnit.DAYS.toMillis(30), 24));
+        assertEquals(RollupResolution.MINUTE, RollupResolution.forSpan(TimeUnit.HOURS.toMillis(1), 24));
+    }
+    
+    @Test
+    public void toggleDeviceStateFlipsInPlaceAndLogsHistory() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("toggle_room");
+        room.setName("Habitación Toggle");
+        room.setRoomType("BEDROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity device = new DeviceEntity();
+        device.setDeviceId("toggle_device");
+        device.setRoomId("toggle_room");
+        device.setName("Luz Toggle");
+        device.setDeviceType("LIGHT_SWITCH");
+        device.setOn(false);
+        deviceDao.insert(device);
+        
+        // Dos toques seguidos: ninguno se pierde
+        assertEquals(Boolean.TRUE, deviceDao.toggleDeviceStateWithHistory("toggle_device", "user_1", 1000L));
+        assertEquals(Boolean.FALSE, deviceDao.toggleDeviceStateWithHistory("toggle_device", "user_1", 1001L));
+        
+        DeviceEntity updated = deviceDao.getDeviceSync("toggle_device");
+        assertFalse(updated.isOn());
+        assertFalse(updated.isSynced());
+        assertEquals(1001L, updated.getLastStateChange());
+        
+        // Cada toque dejó su entrada de historial en la misma transacción
+        DeviceHistoryDao historyDao = database.deviceHistoryDao();
+        assertEquals(1, historyDao.getActionCount("toggle_device", "ON", 0));
+        assertEquals(1, historyDao.getActionCount("toggle_device", "OFF", 0));
+        
+        // Un dispositivo inexistente no escribe nada
+        assertNull(deviceDao.toggleDeviceStateWithHistory("missing_device", "user_1", 1002L));
+        assertEquals(0, historyDao.getActionCount("missing_device", "ON", 0));
+    }
+    
+    @Test
+    public void applySceneWritesGroupAndHistoryInOneTransaction() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("scene_room");
+        room.setName("Habitación Escena");
+        room.setRoomType("LIVING_ROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity switchLight = new DeviceEntity();
+        switchLight.setDeviceId("scene_switch");
+        switchLight.setRoomId("scene_room");
+        switchLight.setName("Interruptor");
+        switchLight.setDeviceType("LIGHT_SWITCH");
+        switchLight.setOn(false);
+        deviceDao.insert(switchLight);
+        
+        DeviceEntity dimmer = new DeviceEntity();
+        dimmer.setDeviceId("scene_dimmer");
+        dimmer.setRoomId("scene_room");
+        dimmer.setName("Regulable");
+        dimmer.setDeviceType("LIGHT_DIMMER");
+        dimmer.setOn(true);
+        dimmer.setIntensity(100);
+        dimmer.setSynced(true);
+        deviceDao.insert(dimmer);
+        
+        List<DeviceEntity> changed = deviceDao.applySceneWithHistory(Arrays.asList(
+                DeviceCommand.turnOn("scene_switch"),
+                DeviceCommand.turnOn("scene_dimmer", 100),
+                DeviceCommand.turnOff("missing_device")), "user_1", 2000L);
+        
+        // Solo cambia el interruptor: el regulable ya estaba así y el inexistente se omite
+        assertEquals(1, changed.size());
+        assertEquals("scene_switch", changed.get(0).getDeviceId());
+        DeviceEntity updated = deviceDao.getDeviceSync("scene_switch");
+        assertTrue(updated.isOn());
+        assertFalse(updated.isSynced());
+        assertEquals(2000L, updated.getLastStateChange());
+        assertTrue(deviceDao.getDeviceSync("scene_dimmer").isSynced());
+        
+        // Apagar con intensidad 0 deja estado e intensidad en el historial
+        changed = deviceDao.applySceneWithHistory(Arrays.asList(
+                new DeviceCommand("scene_switch", false, null),
+                new DeviceCommand("scene_dimmer", false, 0)), "user_1", 3000L);
+        assertEquals(2, changed.size());
+        assertEquals(0, deviceDao.getDeviceSync("scene_dimmer").getIntensity());
+        
+        DeviceHistoryDao historyDao = database.deviceHistoryDao();
+        assertEquals(1, historyDao.getActionCount("scene_switch", "ON", 0));
+        assertEquals(1, historyDao.getActionCount("scene_switch", "OFF", 0));
+        assertEquals(1, historyDao.getActionCount("scene_dimmer", "OFF", 0));
+        assertEquals(1, historyDao.getActionCount("scene_dimmer", "INTENSITY_CHANGE", 0));
+        assertEquals(0, historyDao.getActionCount("missing_device", "ON", 0));
+    }
+    
+    @Test
+    public void setDeviceStateWritesStateAndHistoryTogether() throws Exception {
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("set_room");
+        room.setName("Habitación Estado");
+        room.setRoomType("BEDROOM");
+        roomDao.insert(room);
+        
+        DeviceEntity device = new DeviceEntity();
+        device.setDeviceId("set_device");
+        device.setRoomId("set_room");
+        device.setName("Luz Estado");
+        device.setDeviceType("LIGHT_SWITCH");
+        device.setOn(false);
+        deviceDao.insert(device);
+        
+        // El cambio se aplica con su historial completo
+        assertTrue(deviceDao.setDeviceStateWithHistory("set_device", true, "user_1", 2000L));
+        assertTrue(deviceDao.getDeviceSync("set_device").isOn());
+        
+        List<DeviceHistoryEntity> history = database.deviceHistoryDao().getUnsyncedHistory();
+        assertEquals(1, history.size());
+        assertEquals("ON", history.get(0).getAction());
+        assertEquals("user_1", history.get(0).getUserId());
+        assertEquals(2000L, history.get(0).getTimestamp());
+        
+        // Una escritura más antigua que llega tarde no cambia el estado ni deja historial
+        assertFalse(deviceDao.setDeviceStateWithHistory("set_device", false, "user_1", 1500L));
+        assertTrue(deviceDao.getDeviceSync("set_device").isOn());
+        assertEquals(1, database.deviceHistoryDao().getUnsyncedHistory().size());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package com.pdm.domohouse.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.pdm.domohouse.data.database.AppDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test de regresión de planes de consulta
+ * Ejecuta EXPLAIN QUERY PLAN sobre una base Room en memoria con el esquema real
+ * y falla si una consulta de DeviceHistoryDao, SensorReadingDao, SensorRollupDao
+ * o las búsquedas por clave de DeviceDao recorre la tabla completa en lugar de buscar por índice.
+ * Las sentencias reproducen los @Query de cada DAO (Room no conserva la anotación
+ * en tiempo de ejecución): al cambiar una consulta hay que actualizarla aquí
+ */
+@RunWith(AndroidJUnit4.class)
+public class DaoQueryPlanTest {
+    
+    private AppDatabase database;
+    private SupportSQLiteDatabase db;
+    
+    @Before
+    public void createDb() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        db = database.getOpenHelper().getWritableDatabase();
+    }
+    
+    @After
+    public void closeDb() {
+        database.close();
+    }
+    
+    @Test
+    public void deviceHistoryDaoQueriesUseIndices() {
+        String table = "device_history";
+        
+        // getDeviceHistory
+        assertSearches(table, "SELECT * FROM device_history WHERE device_id = ? ORDER BY timestamp DESC LIMIT ?");
+        // getDeviceHistoryByDateRange
+        assertSearches(table, "SELECT * FROM device_history WHERE device_id = ? AND timestamp >= ? " +
+                "AND timestamp <= ? ORDER BY timestamp DESC");
+        // getRecentHistory
+        assertSearches(table, "SELECT * FROM device_history WHERE timestamp >= ? ORDER BY timestamp DESC");
+        // getUnsyncedHistoryPage
+        assertSearches(table, "SELECT * FROM device_history WHERE is_synced = 0 " +
+                "AND timestamp >= ? AND (timestamp > ? OR history_id > ?) " +
+                "ORDER BY timestamp, history_id LIMIT ?");
+        // getUnsyncedHistoryCount
+        assertSearches(table, "SELECT COUNT(*) FROM device_history WHERE is_synced = 0");
+        // getHistoryByAction
+        assertSearches(table, "SELECT * FROM device_history WHERE action = ? ORDER BY timestamp DESC LIMIT ?");
+        // getUserHistory
+        assertSearches(table, "SELECT * FROM device_history WHERE user_id = ? ORDER BY timestamp DESC LIMIT ?");
+        // getUnsyncedHistory
+        assertSearches(table, "SELECT * FROM device_history WHERE is_synced = 0 ORDER BY timestamp");
+        // markAsSynced
+        assertSearches(table, "UPDATE device_history SET is_synced = 1, sync_timestamp = ? WHERE history_id IN (?, ?)");
+        // deleteOldHistory
+        assertSearches(table, "DELETE FROM device_history WHERE timestamp < ?");
+        // deleteSyncedHistoryBatch
+        assertSearches(table, "DELETE FROM device_history WHERE history_id IN (SELECT history_id FROM device_history " +
+                "WHERE is_synced = 1 AND timestamp < ? ORDER BY timestamp LIMIT ?)");
+        // getActionCount
+        assertSearches(table, "SELECT COUNT(*) FROM device_history WHERE device_id = ? AND action = ? AND timestamp >= ?");
+    }
+    
+    @Test
+    public void sensorReadingDaoQueriesUseIndices() {
+        String table = "sensor_readings";
+        
+        // getReadings / getReadingsSync
+        assertSearches(table, "SELECT * FROM sensor_readings WHERE device_id = ? AND ts >= ? AND ts <= ? ORDER BY ts");
+        // getLatestReading
+        assertSearches(table, "SELECT * FROM sensor_readings WHERE device_id = ? ORDER BY ts DESC LIMIT 1");
+        // getAverageValue / getMinValue / getMaxValue / getReadingCount
+        assertSearches(table, "SELECT AVG(value) FROM sensor_readings WHERE device_id = ? AND ts >= ?");
+        assertSearches(table, "SELECT MIN(value) FROM sensor_readings WHERE device_id = ? AND ts >= ?");
+        assertSearches(table, "SELECT MAX(value) FROM sensor_readings WHERE device_id = ? AND ts >= ?");
+        assertSearches(table, "SELECT COUNT(*) FROM sensor_readings WHERE device_id = ? AND ts >= ?");
+        
+        // deleteOldReadingsBatch recorre por reading_id a propósito: las lecturas se insertan
+        // en orden de tiempo, así que las viejas van primero y el LIMIT corta el recorrido
+        assertScansWithoutSort(table, "DELETE FROM sensor_readings WHERE reading_id IN (SELECT reading_id FROM sensor_readings " +
+                "WHERE ts < ? ORDER BY reading_id LIMIT ?)");
+        
+        // accumulateRollup
+        assertSearches("sensor_rollups", "UPDATE sensor_rollups SET min_value = MIN(min_value, ?), max_value = MAX(max_value, ?), " +
+                "sum_value = sum_value + ?, value_count = value_count + 1 " +
+                "WHERE device_id = ? AND bucket_size = ? AND bucket_start = ?");
+    }
+    
+    @Test
+    public void sensorRollupDaoQueriesUseIndices() {
+        String table = "sensor_rollups";
+        
+        // getDeviceRollups
+        assertSearches(table, "SELECT bucket_start, min_value, max_value, sum_value, value_count FROM sensor_rollups " +
+                "WHERE device_id = ? AND bucket_size = ? AND bucket_start >= ? " +
+                "ORDER BY bucket_start");
+        // getCombinedRollups
+        assertSearches(table, "SELECT bucket_start, MIN(min_value) AS min_value, MAX(max_value) AS max_value, " +
+                "SUM(sum_value) AS sum_value, SUM(value_count) AS value_count FROM sensor_rollups " +
+                "WHERE bucket_size = ? AND bucket_start >= ? " +
+                "GROUP BY bucket_start ORDER BY bucket_start");
+        // deleteOldRollups
+        assertSearches(table, "DELETE FROM sensor_rollups WHERE bucket_size = ? AND bucket_start < ?");
+        // deleteOldRollupsBatch
+        assertSearches(table, "DELETE FROM sensor_rollups WHERE rowid IN (SELECT rowid FROM sensor_rollups " +
+                "WHERE bucket_size = ? AND bucket_start < ? LIMIT ?)");
+    }
+    
+    @Test
+    public void deviceDaoKeyedQueriesUseIndices() {
+        String table = "devices";
+        
+        // Las consultas sobre todos los dispositivos (getAllDevices, getUnsyncedDevices...)
+        // recorren la tabla por diseño; aquí se cubren las que buscan por clave
+        
+        // getDevice / getDeviceSync
+        assertSearches(table, "SELECT * FROM devices WHERE device_id = ?");
+        // getDevicesByIdsSync
+        assertSearches(table, "SELECT * FROM devices WHERE device_id IN (?, ?, ?)");
+        // getDevicesByRoom / getDevicesByRoomSync
+        assertSearches(table, "SELECT * FROM devices WHERE room_id = ? ORDER BY name");
+        // getDevicesByType
+        assertSearches(table, "SELECT * FROM devices WHERE device_type = ? ORDER BY name");
+        // isDeviceOn
+        assertSearches(table, "SELECT is_on FROM devices WHERE device_id = ?");
+        // markAllAsSynced
+        assertSearches(table, "UPDATE devices SET is_synced = 1, last_sync = ? WHERE device_id IN (?, ?)");
+        // updateDeviceStateIfNewer
+        assertSearches(table, "UPDATE devices SET is_on = ?, last_state_change = ?, updated_at = MAX(updated_at, ?), is_synced = 0 " +
+                "WHERE device_id = ? AND last_state_change <= ?");
+        // flipDeviceState
+        assertSearches(table, "UPDATE devices SET is_on = NOT is_on, last_state_change = ?, updated_at = ?, is_synced = 0 " +
+                "WHERE device_id = ?");
+        // updateDeviceTemperature
+        assertSearches(table, "UPDATE devices SET temperature = ?, updated_at = ? WHERE device_id = ?");
+        // getActiveDeviceCountByType
+        assertSearches(table, "SELECT COUNT(*) FROM devices WHERE device_type = ? AND is_on = 1");
+        // deleteDevicesByRoom
+        assertSearches(table, "DELETE FROM devices WHERE room_id = ?");
+    }
+    
+    /**
+     * Falla si el plan recorre la tabla completa o no busca en ella por índice
+     * Los parámetros quedan sin enlazar (NULL), lo que no altera el plan elegido
+     */
+    private void assertSearches(String table, String sql) {
+        List<String> plan = explain(sql);
+        Pattern scan = Pattern.compile("SCAN (TABLE )?" + table + "\\b");
+        Pattern search = Pattern.compile("SEARCH (TABLE )?" + table + "\\b");
+        
+        boolean searched = false;
+        for (String step : plan) {
+            assertFalse("Recorrido completo en '" + sql + "': " + plan, scan.matcher(step).find());
+            searched |= search.matcher(step).find();
+        }
+        assertTrue("Sin búsqueda por índice en '" + sql + "': " + plan, searched);
+    }
+    
+    /**
+     * Para los recorridos intencionados: deben seguir el orden de la clave primaria
+     * sin ordenar en un B-tree temporal, para que el LIMIT corte el recorrido
+     */
+    private void assertScansWithoutSort(String table, String sql) {
+        List<String> plan = explain(sql);
+        for (String step : plan) {
+            assertFalse("Ordenación temporal en '" + sql + "': " + plan, step.contains("TEMP B-TREE"));
+        }
+        assertTrue("Plan inesperado para '" + sql + "': " + plan, plan.toString().contains(table));
+    }
+    
+    private List<String> explain(String sql) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql)) {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailColumn));
+            }
+        }
+        assertFalse("Plan vacío para '" + sql + "'", plan.isEmpty());
+        return plan;
+    }
+}
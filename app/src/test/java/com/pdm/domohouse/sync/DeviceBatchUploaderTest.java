@@ -0,0 +1,239 @@
+package com.pdm.domohouse.sync;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DatabaseReference;
+import com.pdm.domohouse.data.database.AppDatabase;
+import com.pdm.domohouse.data.database.entity.DeviceEntity;
+import com.pdm.domohouse.data.database.entity.RoomEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests para DeviceBatchUploader
+ * Firebase se sustituye por una referencia simulada que guarda cada escritura
+ * multi-ruta para confirmarla o hacerla fallar desde el test
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeviceBatchUploaderTest {
+    
+    private AppDatabase database;
+    private DeviceBatchUploader uploader;
+    private DatabaseReference devicesRef;
+    private final List<PendingWrite> writes = new ArrayList<>();
+    private final List<SyncBatchMetrics> metrics = new ArrayList<>();
+    
+    /**
+     * Escritura enviada a Firebase pendiente de confirmar
+     */
+    private static class PendingWrite {
+        final Map<String, Object> updates;
+        OnSuccessListener<? super Void> onSuccess;
+        OnFailureListener onFailure;
+        
+        PendingWrite(Map<String, Object> updates) {
+            this.updates = updates;
+        }
+        
+        void succeed() {
+            onSuccess.onSuccess(null);
+        }
+        
+        void fail() {
+            onFailure.onFailure(new Exception("Fallo de red simulado"));
+        }
+    }
+    
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        
+        devicesRef = mock(DatabaseReference.class);
+        when(devicesRef.updateChildren(anyMap())).thenAnswer(invocation -> {
+            PendingWrite write = new PendingWrite(invocation.getArgument(0));
+            Task<Void> task = mock(Task.class);
+            when(task.addOnSuccessListener(any(OnSuccessListener.class))).thenAnswer(call -> {
+                write.onSuccess = call.getArgument(0);
+                return task;
+            });
+            when(task.addOnFailureListener(any(OnFailureListener.class))).thenAnswer(call -> {
+                write.onFailure = call.getArgument(0);
+                return task;
+            });
+            writes.add(write);
+            return task;
+        });
+        
+        uploader = new DeviceBatchUploader(database.deviceDao(), devicesRef, Runnable::run, metrics::add);
+        
+        RoomEntity room = new RoomEntity();
+        room.setRoomId("batch_room");
+        room.setName("Habitación Lotes");
+        room.setRoomType("LIVING_ROOM");
+        database.roomDao().insert(room);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        database.close();
+    }
+    
+    @Test
+    public void testUploadSplitsDevicesIntoBatchesUnderTheLimit() {
+        // Given: más dispositivos pendientes de los que caben en dos lotes
+        insertUnsyncedDevices(450);
+        
+        // When
+        uploader.upload(database.deviceDao().getUnsyncedDevices());
+        
+        // Then: tres escrituras, ninguna por encima del límite y sin repetir dispositivos
+        assertEquals(3, writes.size());
+        Set<String> uploadedIds = new HashSet<>();
+        for (PendingWrite write : writes) {
+            assertTrue(write.updates.size() <= DeviceBatchUploader.BATCH_SIZE);
+            for (String key : write.updates.keySet()) {
+                assertTrue(uploadedIds.add(key));
+            }
+        }
+        assertEquals(DeviceBatchUploader.BATCH_SIZE, writes.get(0).updates.size());
+        assertEquals(DeviceBatchUploader.BATCH_SIZE, writes.get(1).updates.size());
+        assertEquals(50, writes.get(2).updates.size());
+        assertEquals(450, uploadedIds.size());
+        
+        // Nada se marca como sincronizado hasta que Firebase confirma
+        assertEquals(450, database.deviceDao().getUnsyncedDevices().size());
+        for (PendingWrite write : writes) {
+            write.succeed();
+        }
+        assertTrue(database.deviceDao().getUnsyncedDevices().isEmpty());
+        
+        assertEquals(3, metrics.size());
+        for (SyncBatchMetrics batch : metrics) {
+            assertTrue(batch.isSuccess());
+            assertEquals(SyncBatchMetrics.Direction.UPLOAD, batch.getDirection());
+            assertTrue(batch.getItemCount() <= DeviceBatchUploader.BATCH_SIZE);
+        }
+    }
+    
+    @Test
+    public void testFailedBatchIsReportedAndRetried() {
+        // Given: dos lotes en vuelo
+        insertUnsyncedDevices(250);
+        uploader.upload(database.deviceDao().getUnsyncedDevices());
+        assertEquals(2, writes.size());
+        
+        // When: el primero se confirma y el segundo falla
+        writes.get(0).succeed();
+        PendingWrite failed = writes.get(1);
+        failed.fail();
+        
+        // Then: el fallo se reporta con el tamaño de su lote
+        assertEquals(2, metrics.size());
+        assertTrue(metrics.get(0).isSuccess());
+        assertFalse(metrics.get(1).isSuccess());
+        assertEquals(50, metrics.get(1).getItemCount());
+        
+        // Solo el lote fallido sigue pendiente
+        List<DeviceEntity> pending = database.deviceDao().getUnsyncedDevices();
+        Set<String> pendingIds = new HashSet<>();
+        for (DeviceEntity device : pending) {
+            pendingIds.add(device.getDeviceId());
+        }
+        assertEquals(failed.updates.keySet(), pendingIds);
+        
+        // When: la siguiente sincronización reintenta lo pendiente
+        uploader.upload(pending);
+        
+        // Then: se reenvía exactamente el lote fallido y queda sincronizado
+        assertEquals(3, writes.size());
+        PendingWrite retry = writes.get(2);
+        assertEquals(failed.updates.keySet(), retry.updates.keySet());
+        retry.succeed();
+        assertTrue(database.deviceDao().getUnsyncedDevices().isEmpty());
+        assertTrue(metrics.get(2).isSuccess());
+    }
+    
+    @Test
+    public void testSecondUploadSendsOnlyChangedFields() {
+        // Given: un dispositivo ya subido y confirmado
+        insertUnsyncedDevices(1);
+        uploader.upload(database.deviceDao().getUnsyncedDevices());
+        writes.get(0).succeed();
+        assertTrue(writes.get(0).updates.containsKey("batch_device_0"));
+        
+        // When: solo cambia la intensidad
+        DeviceEntity device = database.deviceDao().getDeviceSync("batch_device_0");
+        device.setIntensity(60);
+        device.setUpdatedAt(device.getUpdatedAt() + 1000);
+        uploader.upload(Collections.singletonList(device));
+        
+        // Then: la segunda escritura lleva solo el campo cambiado y su updatedAt
+        assertEquals(2, writes.size());
+        Map<String, Object> delta = writes.get(1).updates;
+        assertEquals(new HashSet<>(Arrays.asList("batch_device_0/intensity", "batch_device_0/updatedAt")),
+                delta.keySet());
+        assertEquals(60, delta.get("batch_device_0/intensity"));
+        assertTrue(SyncBatchMetrics.estimatePayloadBytes(delta)
+                < SyncBatchMetrics.estimatePayloadBytes(writes.get(0).updates));
+    }
+    
+    @Test
+    public void testDeltaBaselineIsMemoryOnly() {
+        // Given: un dispositivo subido y confirmado por otro subidor (proceso anterior)
+        insertUnsyncedDevices(1);
+        uploader.upload(database.deviceDao().getUnsyncedDevices());
+        writes.get(0).succeed();
+        DeviceBatchUploader restarted = new DeviceBatchUploader(database.deviceDao(),
+                devicesRef, Runnable::run, metrics::add);
+        
+        // When: el subidor nuevo sube un cambio
+        DeviceEntity device = database.deviceDao().getDeviceSync("batch_device_0");
+        device.setIntensity(60);
+        restarted.upload(Collections.singletonList(device));
+        
+        // Then: sin base en memoria se reenvía el nodo completo
+        assertEquals(2, writes.size());
+        assertEquals(Collections.singleton("batch_device_0"), writes.get(1).updates.keySet());
+    }
+    
+    private void insertUnsyncedDevices(int count) {
+        for (int i = 0; i < count; i++) {
+            DeviceEntity device = new DeviceEntity();
+            device.setDeviceId("batch_device_" + i);
+            device.setRoomId("batch_room");
+            device.setName("Dispositivo " + i);
+            device.setDeviceType("LIGHT_SWITCH");
+            device.setSynced(false);
+            database.deviceDao().insert(device);
+        }
+    }
+}
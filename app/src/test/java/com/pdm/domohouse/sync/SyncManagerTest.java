@@ -21,7 +21,9 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -342,4 +344,37 @@ public class SyncManagerTest {
         // Esperar a que el observer se ejecute
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
+    
+    @Test
+    public void testBatchPayloadEstimationGrowsWithFields() {
+        // Un delta con un solo campo debe pesar menos que el nodo completo
+        Map<String, Object> fullNode = new HashMap<>();
+        fullNode.put("deviceId", "device_1");
+        fullNode.put("name", "Luz Sala");
+        fullNode.put("isOn", true);
+        fullNode.put("intensity", 80);
+        fullNode.put("updatedAt", 1700000000000L);
+        
+        Map<String, Object> delta = new HashMap<>();
+        delta.put("device_1/intensity", 80);
+        
+        long fullBytes = SyncBatchMetrics.estimatePayloadBytes(fullNode);
+        long deltaBytes = SyncBatchMetrics.estimatePayloadBytes(delta);
+        
+        assertTrue(deltaBytes > 0);
+        assertTrue(deltaBytes < fullBytes);
+        assertEquals(4, SyncBatchMetrics.estimatePayloadBytes(null));
+    }
+    
+    @Test
+    public void testHistoryRemoteKeysAreDeterministic() {
+        // Reintentar la misma entrada debe producir la misma clave remota
+        String first = DeviceHistoryUploader.remoteKey("install_a", 42L);
+        String retry = DeviceHistoryUploader.remoteKey("install_a", 42L);
+        String otherInstall = DeviceHistoryUploader.remoteKey("install_b", 42L);
+        
+        assertEquals(first, retry);
+        assertNotEquals(first, otherInstall);
+        assertFalse(first.contains("/"));
+    }
 }
\ No newline at end of file